@@ -0,0 +1,337 @@
+package org.nsomatrix;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+
+/**
+ * Throughput and latency of the launcher's network clients against a {@link StandInServer}: sign-in and
+ * token refresh, cloud storage listing, batch upload and download (cold, then served from the blob
+ * cache), resumable upload of a large file, bulk delete, the GitHub and Internet Archive mod catalogs,
+ * and the update check. Each suite runs once per network profile:
+ *
+ *   lan    no added latency or bandwidth limit
+ *   wan    40-60 ms latency, 4 MB/s per connection
+ *   flaky  5-15 ms latency, 5% of requests fail with 503, 2% of responses are cut off halfway
+ *
+ * System properties: bench.net.profiles (comma separated, default lan,wan,flaky), bench.net.rounds
+ * (samples per latency figure, default 20), bench.net.files and bench.net.file.kb (batch size, default
+ * 50 files of 64 KB), bench.net.large.mb (resumable upload, default 24), bench.net.mods (catalog size,
+ * default 200), bench.net.verbose (keep the clients' own logging, default false).
+ *
+ * The clients read their endpoints and ~/ paths once, so the server is started and user.home moved to
+ * a temporary directory before any of them is touched.
+ */
+public class NetworkBenchmark {
+    private static final PrintStream REPORT = System.out;
+    private static final String PASSWORD = "stand-in-password";
+
+    private final StandInServer server;
+    private final int rounds = Integer.getInteger("bench.net.rounds", 20);
+    private final int files = Integer.getInteger("bench.net.files", 50);
+    private final int fileKb = Integer.getInteger("bench.net.file.kb", 64);
+    private final int largeMb = Integer.getInteger("bench.net.large.mb", 24);
+    private final int mods = Integer.getInteger("bench.net.mods", 200);
+    private final File workDir;
+    private final Random random = new Random(7);
+
+    private NetworkBenchmark(StandInServer server, File workDir) {
+        this.server = server;
+        this.workDir = workDir;
+    }
+
+    public static void main(String[] args) throws Exception {
+        File home = Files.createTempDirectory("network-bench").toFile();
+        System.setProperty("user.home", home.getAbsolutePath());
+        if (!Boolean.getBoolean("bench.net.verbose")) {
+            PrintStream quiet = new PrintStream(new OutputStream() {
+                @Override
+                public void write(int b) {
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) {
+                }
+            });
+            System.setOut(quiet);
+            System.setErr(quiet);
+        }
+
+        StandInServer server = new StandInServer().start();
+        server.useForEndpoints();
+        NetworkBenchmark bench = new NetworkBenchmark(server, new File(home, "work"));
+        bench.seedCatalogs();
+        REPORT.printf("Stand-in server at %s, max heap %d MB%n", server.url(), Runtime.getRuntime().maxMemory() / (1024 * 1024));
+
+        for (String profile : System.getProperty("bench.net.profiles", "lan,wan,flaky").split(",")) {
+            bench.run(profile.trim());
+        }
+        REPORT.printf("%d requests served, %d faults injected%n", server.requestCount(), server.faultCount());
+        server.stop();
+        System.exit(0);
+    }
+
+    private void seedCatalogs() {
+        for (int i = 0; i < mods; i++) {
+            byte[] jar = randomBytes(8 * 1024 + random.nextInt(64 * 1024));
+            String name = String.format("mod-%04d.jar", i);
+            server.addRepoFile("cloudkore/matrix", "data/MODs/" + (i % 10) + "/" + name, jar);
+            server.addArchiveFile("nsomtxmods", name, jar);
+        }
+        server.addRepoFile("corestorage/NSOMatrix", "version.txt", "9.9.9".getBytes(StandardCharsets.UTF_8));
+        server.addReleaseAsset("corestorage/NSOMatrix", "v9.9.9", "NSOMatrixLauncher-9.9.9.jar", randomBytes(8 * 1024 * 1024));
+    }
+
+    private static boolean apply(String profile, StandInServer.Conditions conditions) {
+        switch (profile) {
+            case "lan":
+                return true;
+            case "wan":
+                conditions.latency(40, 20).bandwidth(4L * 1024 * 1024);
+                return true;
+            case "flaky":
+                conditions.latency(5, 10).errors(0.05, 503).resets(0.02);
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private void run(String profile) throws Exception {
+        // Signed in without faults, so every suite has a session to work with
+        StandInServer.Conditions conditions = server.conditions().reset();
+        String email = profile + "@bench.invalid";
+        server.addUser(email, PASSWORD);
+        SupabaseAuthService auth = new SupabaseAuthService();
+        SupabaseAuthService.AuthResponse signedIn = auth.signIn(email, PASSWORD)
+                .orElseThrow(() -> new IllegalStateException("Sign in failed"));
+        AuthSession session = new AuthSession(auth, signedIn, expired -> REPORT.println("  session expired"));
+        SupabaseStorageClient client = new SupabaseStorageClient();
+        client.setSession(session);
+        client.setUserId(session.getUserId());
+        if (!apply(profile, conditions)) {
+            REPORT.println("Unknown profile " + profile + ", skipped");
+            session.end();
+            return;
+        }
+        REPORT.printf("%n== %s: %s%n", profile, conditions);
+
+        File dir = new File(workDir, profile);
+        if (!dir.mkdirs() && !dir.isDirectory()) throw new IOException("Could not create " + dir);
+        try {
+            authSuite(auth, email);
+            storageSuite(client, dir);
+            catalogSuite();
+        } finally {
+            conditions.reset();
+            session.end();
+        }
+    }
+
+    private void authSuite(SupabaseAuthService auth, String email) throws Exception {
+        Latency signIn = new Latency("auth sign-in");
+        String[] refreshToken = {null};
+        for (int i = 0; i < rounds; i++) {
+            signIn.time(() -> {
+                Optional<SupabaseAuthService.AuthResponse> response = auth.signIn(email, PASSWORD);
+                if (!response.isPresent()) throw new IOException("rejected");
+                refreshToken[0] = response.get().refresh_token;
+            });
+        }
+        signIn.print();
+        Latency refresh = new Latency("auth token refresh");
+        for (int i = 0; i < rounds; i++) {
+            if (refreshToken[0] == null) {
+                // A refresh whose reply was lost still used up its token; start over untimed
+                Optional<SupabaseAuthService.AuthResponse> response = Optional.empty();
+                for (int attempt = 0; attempt < 5 && !response.isPresent(); attempt++) {
+                    try {
+                        response = auth.signIn(email, PASSWORD);
+                    } catch (IOException e) {
+                        // Injected fault, try again
+                    }
+                }
+                if (!response.isPresent()) break;
+                refreshToken[0] = response.get().refresh_token;
+            }
+            refresh.time(() -> {
+                String used = refreshToken[0];
+                refreshToken[0] = null;
+                Optional<SupabaseAuthService.AuthResponse> response = auth.refresh(used);
+                if (!response.isPresent()) throw new IOException("rejected");
+                refreshToken[0] = response.get().refresh_token;
+            });
+        }
+        refresh.print();
+    }
+
+    private void storageSuite(SupabaseStorageClient client, File dir) throws Exception {
+        File uploads = new File(dir, "up");
+        File downloads = new File(dir, "down");
+        uploads.mkdirs();
+        downloads.mkdirs();
+        Map<String, File> batch = new LinkedHashMap<>();
+        long batchBytes = 0;
+        for (int i = 0; i < files; i++) {
+            File file = new File(uploads, String.format("save-%03d.rs", i));
+            Files.write(file.toPath(), saveLikeBytes(fileKb * 1024));
+            batch.put(file.getName(), file);
+            batchBytes += file.length();
+        }
+
+        long started = System.nanoTime();
+        SupabaseStorageClient.BatchResult uploaded = client.uploadFiles(batch, null);
+        throughput("storage batch upload", batchBytes, files, uploaded.getFailed().size(), started);
+
+        Latency list = new Latency("storage list (" + files + " objects)");
+        for (int i = 0; i < rounds; i++) list.time(() -> client.listAllObjects(null));
+        list.print();
+
+        List<String> names = new ArrayList<>(batch.keySet());
+        started = System.nanoTime();
+        SupabaseStorageClient.BatchResult cold = client.downloadFiles(names, downloads, null);
+        throughput("storage batch download, cold", batchBytes, files, cold.getFailed().size(), started);
+        started = System.nanoTime();
+        SupabaseStorageClient.BatchResult warm = client.downloadFiles(names, downloads, null);
+        throughput("storage batch download, cached", batchBytes, files, warm.getFailed().size(), started);
+
+        File large = new File(uploads, "large.jar");
+        Files.write(large.toPath(), randomBytes(largeMb * 1024 * 1024));
+        started = System.nanoTime();
+        int failed = 0;
+        try {
+            client.uploadFile(large, "large.jar", null);
+        } catch (IOException e) {
+            failed = 1;
+        }
+        throughput("storage resumable upload", large.length(), 1, failed, started);
+        started = System.nanoTime();
+        failed = 0;
+        try {
+            client.downloadFile("large.jar", new File(downloads, "large.jar"), null);
+        } catch (IOException e) {
+            failed = 1;
+        }
+        throughput("storage large download", large.length(), 1, failed, started);
+
+        names.add("large.jar");
+        Latency delete = new Latency("storage bulk delete (" + names.size() + ")");
+        delete.time(() -> {
+            SupabaseStorageClient.BatchResult deleted = client.deleteFiles(names, null);
+            if (!deleted.getFailed().isEmpty()) throw new IOException(deleted.summary("Deleted"));
+        });
+        delete.print();
+    }
+
+    private void catalogSuite() throws Exception {
+        Latency github = new Latency("github catalog (" + mods + " mods)");
+        for (int i = 0; i < rounds; i++) {
+            github.time(() -> {
+                int[] count = {0};
+                new GitHubCatalogClient("cloudkore", "matrix", "data/MODs").fetchCatalog(mod -> count[0]++);
+                if (count[0] != mods) throw new IOException("listed " + count[0]);
+            });
+        }
+        github.print();
+
+        Latency archive = new Latency("archive catalog (" + mods + " mods)");
+        for (int i = 0; i < rounds; i++) {
+            archive.time(() -> {
+                int[] count = {0};
+                new InternetArchiveSource().list(mod -> count[0]++);
+                if (count[0] != mods) throw new IOException("listed " + count[0]);
+            });
+        }
+        archive.print();
+
+        Latency check = new Latency("update check");
+        for (int i = 0; i < rounds; i++) {
+            check.time(UpdateChecker::getLatestVersion);
+        }
+        check.print();
+
+        File jar = new File(workDir, "update.jar");
+        long started = System.nanoTime();
+        int failed = 0;
+        try {
+            UpdateChecker.downloadUpdate("9.9.9", jar);
+        } catch (IOException e) {
+            failed = 1;
+        }
+        throughput("update download", 8 * 1024 * 1024, 1, failed, started);
+    }
+
+    private static void throughput(String name, long bytes, int count, int failed, long startedNanos) {
+        double seconds = (System.nanoTime() - startedNanos) / 1e9;
+        REPORT.printf("  %-34s %8.1f MB/s %8.1f files/s %8.0f ms total%s%n", name,
+                bytes / seconds / (1024 * 1024), count / seconds, seconds * 1000,
+                failed > 0 ? ", " + failed + " failed" : "");
+    }
+
+    // Repetitive, text-like content, so compression has something to do, as with real save data
+    private byte[] saveLikeBytes(int size) {
+        byte[] data = new byte[size];
+        for (int i = 0; i < size; i++) data[i] = (byte) ('a' + (i / 7 + random.nextInt(3)) % 26);
+        return data;
+    }
+
+    private byte[] randomBytes(int size) {
+        byte[] data = new byte[size];
+        random.nextBytes(data);
+        return data;
+    }
+
+    private interface Call {
+        void run() throws Exception;
+    }
+
+    private static class Latency {
+        private final String name;
+        private final List<Long> samples = new ArrayList<>();
+        private int failures;
+        private String lastError;
+
+        Latency(String name) {
+            this.name = name;
+        }
+
+        void time(Call call) {
+            long started = System.nanoTime();
+            try {
+                call.run();
+                samples.add(System.nanoTime() - started);
+            } catch (Exception e) {
+                failures++;
+                lastError = e.getMessage();
+            }
+        }
+
+        void print() {
+            if (samples.isEmpty()) {
+                REPORT.printf("  %-34s all %d failed (%s)%n", name, failures, lastError);
+                return;
+            }
+            Collections.sort(samples);
+            long total = 0;
+            for (long sample : samples) total += sample;
+            REPORT.printf("  %-34s mean %7.1f  p50 %7.1f  p90 %7.1f  p99 %7.1f  max %7.1f ms%s%n", name,
+                    total / 1e6 / samples.size(), percentile(0.5), percentile(0.9), percentile(0.99),
+                    samples.get(samples.size() - 1) / 1e6, failures > 0 ? ", " + failures + " failed" : "");
+        }
+
+        private double percentile(double p) {
+            int index = (int) Math.ceil(p * samples.size()) - 1;
+            return samples.get(Math.max(0, Math.min(samples.size() - 1, index))) / 1e6;
+        }
+    }
+}
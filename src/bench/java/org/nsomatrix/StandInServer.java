@@ -0,0 +1,922 @@
+package org.nsomatrix;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An in-memory stand-in for the services the launcher talks to, on the JDK's built-in HTTP server, so
+ * network code can be benchmarked and load-tested offline. One server answers for all of them:
+ *
+ * <pre>
+ *   /auth/v1/...            Supabase auth: signup, password and refresh_token grants, logout
+ *   /storage/v1/...         Supabase storage: list, upload, tus resumable upload, sign, info, copy, delete
+ *   /github/repos/...       GitHub API: repository, git trees and contents
+ *   /raw/owner/repo/ref/... raw.githubusercontent.com
+ *   /web/.../releases/...   github.com release assets
+ *   /archive/...            Internet Archive metadata and downloads
+ * </pre>
+ *
+ * {@link #useForEndpoints()} points the launcher's endpoint properties at it; it has to run before the
+ * client classes are first used, since they read the properties once. Every response passes through
+ * the {@link Conditions}, which add latency, limit bandwidth and inject failed or cut-off responses.
+ */
+public class StandInServer {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final Conditions conditions = new Conditions();
+
+    // Supabase state
+    private final Map<String, User> usersByEmail = new ConcurrentHashMap<>();
+    private final Map<String, Session> sessionsByAccessToken = new ConcurrentHashMap<>();
+    private final Map<String, Session> sessionsByRefreshToken = new ConcurrentHashMap<>();
+    private final Map<String, Blob> objects = new ConcurrentHashMap<>();
+    private final Map<String, String> signedTokens = new ConcurrentHashMap<>();
+    private final Map<String, TusUpload> tusUploads = new ConcurrentHashMap<>();
+    private volatile long tokenLifetimeS = 3600;
+
+    // GitHub and Internet Archive state, keyed "owner/repo/path", "owner/repo/tag/asset" and "item/name"
+    private final Map<String, byte[]> repoFiles = new ConcurrentHashMap<>();
+    private final Map<String, byte[]> releaseAssets = new ConcurrentHashMap<>();
+    private final Map<String, byte[]> archiveFiles = new ConcurrentHashMap<>();
+    private volatile int rateLimit = 5000;
+    private final AtomicInteger rateRemaining = new AtomicInteger(5000);
+    private volatile int maxTreeEntries = 100000;
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong faults = new AtomicLong();
+
+    public StandInServer() throws IOException {
+        this(0);
+    }
+
+    public StandInServer(int port) throws IOException {
+        // Without it, small responses wait out delayed ACKs and every request costs ~40 ms
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+        server.createContext("/", this::handle);
+        executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "stand-in-server");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+    }
+
+    public StandInServer start() {
+        server.start();
+        return this;
+    }
+
+    public void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    public String url() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    /** Sets the launcher's endpoint properties to this server. */
+    public void useForEndpoints() {
+        System.setProperty("nsomatrix.supabase.url", url());
+        System.setProperty("nsomatrix.supabase.key", "stand-in-anon-key");
+        System.setProperty("nsomatrix.supabase.bucket", "user-uploads");
+        System.setProperty("nsomatrix.github.api", url() + "/github");
+        System.setProperty("nsomatrix.github.raw", url() + "/raw");
+        System.setProperty("nsomatrix.github.web", url() + "/web");
+        System.setProperty("nsomatrix.archive.url", url() + "/archive");
+    }
+
+    public Conditions conditions() {
+        return conditions;
+    }
+
+    public void addUser(String email, String password) {
+        usersByEmail.put(email, new User(UUID.randomUUID().toString(), email, password));
+    }
+
+    /** Lifetime of issued access tokens; short lifetimes exercise token renewal. */
+    public void setTokenLifetime(long seconds) {
+        tokenLifetimeS = seconds;
+    }
+
+    /** Adds a file to a GitHub repository, e.g. ("cloudkore/matrix", "data/MODs/game.jar", bytes). */
+    public void addRepoFile(String repo, String path, byte[] data) {
+        repoFiles.put(repo + "/" + path, data);
+    }
+
+    public void addReleaseAsset(String repo, String tag, String name, byte[] data) {
+        releaseAssets.put(repo + "/" + tag + "/" + name, data);
+    }
+
+    public void addArchiveFile(String item, String name, byte[] data) {
+        archiveFiles.put(item + "/" + name, data);
+    }
+
+    /** Requests GitHub grants per window; the window never resets while the server runs. */
+    public void setRateLimit(int limit) {
+        rateLimit = limit;
+        rateRemaining.set(limit);
+    }
+
+    /** Recursive trees with more entries than this are cut off and marked truncated, as GitHub does. */
+    public void setMaxTreeEntries(int max) {
+        maxTreeEntries = max;
+    }
+
+    public int objectCount() {
+        return objects.size();
+    }
+
+    public long requestCount() {
+        return requests.get();
+    }
+
+    public long faultCount() {
+        return faults.get();
+    }
+
+    /**
+     * Network conditions applied to every exchange: a delay before the response, a cap on how fast
+     * request and response bodies move, and a share of requests answered with an error status or cut
+     * off halfway through the body. Faults can also be queued to hit the next requests deterministically.
+     */
+    public static class Conditions {
+        private volatile long latencyMs;
+        private volatile long jitterMs;
+        private volatile long bytesPerSecond;
+        private volatile double errorRate;
+        private volatile int errorStatus = 503;
+        private volatile double resetRate;
+        private final AtomicInteger failNext = new AtomicInteger();
+        private volatile int failNextStatus = 503;
+        private final Random random = new Random(42);
+
+        public Conditions latency(long latencyMs, long jitterMs) {
+            this.latencyMs = latencyMs;
+            this.jitterMs = jitterMs;
+            return this;
+        }
+
+        /** Per exchange and direction; 0 for unlimited. */
+        public Conditions bandwidth(long bytesPerSecond) {
+            this.bytesPerSecond = bytesPerSecond;
+            return this;
+        }
+
+        public Conditions errors(double rate, int status) {
+            this.errorRate = rate;
+            this.errorStatus = status;
+            return this;
+        }
+
+        /** Share of responses whose connection is closed after half of the body. */
+        public Conditions resets(double rate) {
+            this.resetRate = rate;
+            return this;
+        }
+
+        public Conditions failNext(int count, int status) {
+            failNextStatus = status;
+            failNext.set(count);
+            return this;
+        }
+
+        public Conditions reset() {
+            latencyMs = 0;
+            jitterMs = 0;
+            bytesPerSecond = 0;
+            errorRate = 0;
+            resetRate = 0;
+            failNext.set(0);
+            return this;
+        }
+
+        @Override
+        public String toString() {
+            return "latency " + latencyMs + "-" + (latencyMs + jitterMs) + " ms, "
+                    + (bytesPerSecond > 0 ? bytesPerSecond / 1024 + " KB/s" : "unlimited bandwidth")
+                    + ", errors " + Math.round(errorRate * 100) + "%, resets " + Math.round(resetRate * 100) + "%";
+        }
+
+        private synchronized double nextDouble() {
+            return random.nextDouble();
+        }
+
+        private long delayMs() {
+            return latencyMs + (jitterMs > 0 ? (long) (nextDouble() * jitterMs) : 0);
+        }
+
+        // The status of an injected error response, or 0 to answer normally
+        private int injectedStatus() {
+            if (failNext.getAndUpdate(n -> Math.max(0, n - 1)) > 0) return failNextStatus;
+            return errorRate > 0 && nextDouble() < errorRate ? errorStatus : 0;
+        }
+
+        private boolean injectReset() {
+            return resetRate > 0 && nextDouble() < resetRate;
+        }
+    }
+
+    // ---- dispatch ----
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        Exchange ex = new Exchange(exchange);
+        try {
+            sleep(conditions.delayMs());
+            int injected = conditions.injectedStatus();
+            if (injected != 0) {
+                faults.incrementAndGet();
+                ex.drain();
+                ex.sendError(injected, "Injected failure");
+                return;
+            }
+            ex.cutOff = conditions.injectReset();
+            if (ex.cutOff) faults.incrementAndGet();
+            route(ex);
+        } catch (CutOff e) {
+            // Thrown on to the server, which drops the connection with the body unfinished
+            throw e;
+        } catch (HttpError e) {
+            ex.sendError(e.status, e.getMessage());
+        } catch (Exception e) {
+            if (!ex.sent) ex.sendError(500, String.valueOf(e));
+        }
+        exchange.close();
+    }
+
+    private void route(Exchange ex) throws IOException {
+        String path = ex.path;
+        if (path.startsWith("/auth/v1/")) auth(ex, path.substring("/auth/v1/".length()));
+        else if (path.startsWith("/storage/v1/upload/resumable")) tus(ex, path.substring("/storage/v1/upload/resumable".length()));
+        else if (path.startsWith("/storage/v1/object/")) storage(ex, path.substring("/storage/v1/object/".length()));
+        else if (path.startsWith("/github/repos/")) github(ex, path.substring("/github/repos/".length()));
+        else if (path.startsWith("/raw/")) raw(ex, path.substring("/raw/".length()));
+        else if (path.startsWith("/web/")) release(ex, path.substring("/web/".length()));
+        else if (path.startsWith("/archive/")) archive(ex, path.substring("/archive/".length()));
+        else throw new HttpError(404, "No route for " + path);
+    }
+
+    // ---- Supabase auth ----
+
+    private void auth(Exchange ex, String endpoint) throws IOException {
+        if (!"stand-in-anon-key".equals(ex.header("apikey"))) throw new HttpError(401, "Invalid API key");
+        if (endpoint.equals("logout")) {
+            Session session = sessionsByAccessToken.remove(bearer(ex));
+            if (session != null) sessionsByRefreshToken.remove(session.refreshToken);
+            ex.send(204, null, null);
+            return;
+        }
+        JsonNode body = MAPPER.readTree(ex.body());
+        if (endpoint.equals("signup")) {
+            String email = body.path("email").asText();
+            if (usersByEmail.putIfAbsent(email, new User(UUID.randomUUID().toString(), email, body.path("password").asText())) != null) {
+                throw new HttpError(422, "User already registered");
+            }
+            ex.sendJson(200, sessionJson(newSession(usersByEmail.get(email))));
+        } else if (endpoint.equals("token") && "password".equals(ex.query("grant_type"))) {
+            User user = usersByEmail.get(body.path("email").asText());
+            if (user == null || !user.password.equals(body.path("password").asText())) {
+                throw new HttpError(400, "Invalid login credentials");
+            }
+            ex.sendJson(200, sessionJson(newSession(user)));
+        } else if (endpoint.equals("token") && "refresh_token".equals(ex.query("grant_type"))) {
+            // Refresh tokens are single use, as with Supabase's rotation
+            Session old = sessionsByRefreshToken.remove(body.path("refresh_token").asText());
+            if (old == null) throw new HttpError(400, "Invalid Refresh Token");
+            ex.sendJson(200, sessionJson(newSession(old.user)));
+        } else {
+            throw new HttpError(404, "Unknown auth endpoint " + endpoint);
+        }
+    }
+
+    private Session newSession(User user) {
+        Session session = new Session(user, "at-" + UUID.randomUUID(), "rt-" + UUID.randomUUID(),
+                System.currentTimeMillis() / 1000 + tokenLifetimeS);
+        sessionsByAccessToken.put(session.accessToken, session);
+        sessionsByRefreshToken.put(session.refreshToken, session);
+        return session;
+    }
+
+    private ObjectNode sessionJson(Session session) {
+        ObjectNode json = MAPPER.createObjectNode();
+        json.put("access_token", session.accessToken);
+        json.put("refresh_token", session.refreshToken);
+        json.put("token_type", "bearer");
+        json.put("expires_in", session.expiresAt - System.currentTimeMillis() / 1000);
+        json.put("expires_at", session.expiresAt);
+        ObjectNode user = json.putObject("user");
+        user.put("id", session.user.id);
+        user.put("email", session.user.email);
+        user.put("confirmed_at", Instant.now().toString());
+        return json;
+    }
+
+    // The signed-in user of a storage request, after checking its token
+    private User authorize(Exchange ex) {
+        if (!"stand-in-anon-key".equals(ex.header("apikey"))) throw new HttpError(401, "Invalid API key");
+        Session session = sessionsByAccessToken.get(bearer(ex));
+        if (session == null) throw new HttpError(401, "invalid JWT");
+        if (session.expiresAt * 1000 < System.currentTimeMillis()) throw new HttpError(401, "jwt expired");
+        return session.user;
+    }
+
+    private static String bearer(Exchange ex) {
+        String authorization = ex.header("Authorization");
+        return authorization != null && authorization.startsWith("Bearer ") ? authorization.substring(7) : "";
+    }
+
+    // ---- Supabase storage ----
+
+    private void storage(Exchange ex, String rest) throws IOException {
+        if (rest.startsWith("sign/") && ex.method.equals("GET")) {
+            serveSigned(ex, rest.substring("sign/".length()));
+            return;
+        }
+        User user = authorize(ex);
+        if (rest.startsWith("list/")) {
+            list(ex, user, rest.substring("list/".length()));
+        } else if (rest.startsWith("sign/")) {
+            String key = owned(user, rest.substring("sign/".length()));
+            if (!objects.containsKey(key)) throw new HttpError(404, "Object not found");
+            String token = UUID.randomUUID().toString();
+            signedTokens.put(token, key);
+            ex.sendJson(200, MAPPER.createObjectNode().put("signedURL", "/object/sign/" + key + "?token=" + token));
+        } else if (rest.startsWith("info/")) {
+            Blob blob = objects.get(owned(user, rest.substring("info/".length())));
+            if (blob == null) throw new HttpError(404, "Object not found");
+            ObjectNode info = MAPPER.createObjectNode();
+            info.put("size", blob.data.length);
+            info.put("content_type", blob.mimeType);
+            info.put("etag", blob.etag);
+            info.put("last_modified", blob.updatedAt.toString());
+            info.set("metadata", blob.userMetadata);
+            ex.sendJson(200, info);
+        } else if (rest.equals("copy")) {
+            JsonNode body = MAPPER.readTree(ex.body());
+            String bucket = body.path("bucketId").asText();
+            Blob source = objects.get(owned(user, bucket + "/" + body.path("sourceKey").asText()));
+            if (source == null) throw new HttpError(404, "Object not found");
+            String destination = owned(user, bucket + "/" + body.path("destinationKey").asText());
+            objects.put(destination, new Blob(source.data, source.mimeType, source.userMetadata));
+            ex.sendJson(200, MAPPER.createObjectNode().put("Key", destination));
+        } else if (!rest.contains("/") && ex.method.equals("DELETE")) {
+            ArrayNode deleted = MAPPER.createArrayNode();
+            for (JsonNode prefix : MAPPER.readTree(ex.body()).path("prefixes")) {
+                String key = owned(user, rest + "/" + prefix.asText());
+                if (objects.remove(key) != null) deleted.addObject().put("name", prefix.asText()).put("bucket_id", rest);
+            }
+            ex.sendJson(200, deleted);
+        } else {
+            object(ex, user, rest);
+        }
+    }
+
+    private void object(Exchange ex, User user, String bucketPath) throws IOException {
+        String key = owned(user, bucketPath);
+        switch (ex.method) {
+            case "POST":
+            case "PUT": {
+                boolean upsert = "true".equals(ex.query("upsert")) || "true".equals(ex.header("x-upsert"));
+                if (!upsert && objects.containsKey(key)) throw new HttpError(409, "The resource already exists");
+                String mime = ex.header("Content-Type");
+                objects.put(key, new Blob(ex.body(), mime != null ? mime : "application/octet-stream",
+                        decodeMetadata(ex.header("x-metadata"))));
+                ex.sendJson(200, MAPPER.createObjectNode().put("Key", key));
+                break;
+            }
+            case "GET":
+                serveBlob(ex, objects.get(key));
+                break;
+            case "DELETE":
+                if (objects.remove(key) == null) throw new HttpError(404, "Object not found");
+                ex.sendJson(200, MAPPER.createObjectNode().put("message", "Successfully deleted"));
+                break;
+            default:
+                throw new HttpError(405, ex.method + " not allowed");
+        }
+    }
+
+    // Lists one folder level: files with metadata, and subfolders without an id
+    private void list(Exchange ex, User user, String bucket) throws IOException {
+        JsonNode body = MAPPER.readTree(ex.body());
+        String prefix = body.path("prefix").asText("");
+        owned(user, bucket + "/" + prefix);
+        int limit = body.path("limit").asInt(100);
+        int offset = body.path("offset").asInt(0);
+        String column = body.path("sortBy").path("column").asText("name");
+        boolean descending = "desc".equals(body.path("sortBy").path("order").asText());
+
+        String base = bucket + "/" + prefix;
+        Map<String, Blob> files = new TreeMap<>();
+        List<String> folders = new ArrayList<>();
+        for (Map.Entry<String, Blob> entry : objects.entrySet()) {
+            if (!entry.getKey().startsWith(base)) continue;
+            String name = entry.getKey().substring(base.length());
+            int slash = name.indexOf('/');
+            if (slash < 0) files.put(name, entry.getValue());
+            else if (!folders.contains(name.substring(0, slash))) folders.add(name.substring(0, slash));
+        }
+        List<ObjectNode> entries = new ArrayList<>();
+        for (String folder : folders) {
+            ObjectNode node = MAPPER.createObjectNode();
+            node.put("name", folder);
+            node.putNull("id");
+            node.putNull("updated_at");
+            node.putNull("metadata");
+            entries.add(node);
+        }
+        for (Map.Entry<String, Blob> file : files.entrySet()) {
+            Blob blob = file.getValue();
+            ObjectNode node = MAPPER.createObjectNode();
+            node.put("name", file.getKey());
+            node.put("id", blob.id);
+            node.put("updated_at", blob.updatedAt.toString());
+            ObjectNode metadata = node.putObject("metadata");
+            metadata.put("eTag", blob.etag);
+            metadata.put("size", blob.data.length);
+            metadata.put("mimetype", blob.mimeType);
+            metadata.put("lastModified", blob.updatedAt.toString());
+            entries.add(node);
+        }
+        Comparator<ObjectNode> order = column.equals("updated_at") || column.equals("created_at")
+                ? Comparator.comparing(node -> node.path("updated_at").asText(""))
+                : Comparator.comparing(node -> node.path("name").asText());
+        if (descending) order = order.reversed();
+        entries.sort(order);
+
+        ArrayNode page = MAPPER.createArrayNode();
+        for (int i = offset; i < entries.size() && i < offset + limit; i++) page.add(entries.get(i));
+        ex.sendJson(200, page);
+    }
+
+    private void serveSigned(Exchange ex, String bucketPath) throws IOException {
+        String key = signedTokens.get(String.valueOf(ex.query("token")));
+        if (key == null || !key.equals(bucketPath)) throw new HttpError(400, "Invalid signature");
+        serveBlob(ex, objects.get(key));
+    }
+
+    private void serveBlob(Exchange ex, Blob blob) throws IOException {
+        if (blob == null) throw new HttpError(404, "Object not found");
+        ex.exchange.getResponseHeaders().set("ETag", blob.etag);
+        if (blob.etag.equals(ex.header("If-None-Match"))) {
+            ex.send(304, null, null);
+            return;
+        }
+        ex.send(200, blob.mimeType, blob.data);
+    }
+
+    // The object key for a "bucket/path", which must lie in the user's folder
+    private static String owned(User user, String bucketPath) {
+        int slash = bucketPath.indexOf('/');
+        if (slash < 0 || !bucketPath.substring(slash + 1).startsWith(user.id + "/")) {
+            throw new HttpError(403, "Access denied to " + bucketPath);
+        }
+        return bucketPath;
+    }
+
+    private static JsonNode decodeMetadata(String header) throws IOException {
+        if (header == null || header.isEmpty()) return MAPPER.createObjectNode();
+        return MAPPER.readTree(Base64.getDecoder().decode(header));
+    }
+
+    // ---- tus resumable uploads ----
+
+    private void tus(Exchange ex, String rest) throws IOException {
+        User user = authorize(ex);
+        ex.exchange.getResponseHeaders().set("Tus-Resumable", "1.0.0");
+        if (rest.isEmpty() || rest.equals("/")) {
+            Map<String, String> metadata = new LinkedHashMap<>();
+            String encoded = ex.header("Upload-Metadata");
+            if (encoded != null && !encoded.isEmpty()) {
+                for (String pair : encoded.split(",")) {
+                    String[] parts = pair.trim().split(" ", 2);
+                    metadata.put(parts[0], parts.length > 1
+                            ? new String(Base64.getDecoder().decode(parts[1]), StandardCharsets.UTF_8) : "");
+                }
+            }
+            String key = owned(user, metadata.get("bucketName") + "/" + metadata.get("objectName"));
+            boolean upsert = "true".equals(ex.header("x-upsert"));
+            if (!upsert && objects.containsKey(key)) throw new HttpError(409, "The resource already exists");
+            long length = Long.parseLong(ex.header("Upload-Length"));
+            String id = UUID.randomUUID().toString();
+            tusUploads.put(id, new TusUpload(key, length, metadata));
+            ex.drain();
+            ex.exchange.getResponseHeaders().set("Location", "/storage/v1/upload/resumable/" + id);
+            ex.send(201, null, null);
+            return;
+        }
+        TusUpload upload = tusUploads.get(rest.substring(1));
+        if (upload == null) throw new HttpError(404, "Upload not found");
+        String method = "PATCH".equalsIgnoreCase(ex.header("X-HTTP-Method-Override")) ? "PATCH" : ex.method;
+        if (method.equals("HEAD")) {
+            ex.exchange.getResponseHeaders().set("Upload-Offset", String.valueOf(upload.data.size()));
+            ex.exchange.getResponseHeaders().set("Upload-Length", String.valueOf(upload.length));
+            ex.send(200, null, null);
+        } else if (method.equals("PATCH")) {
+            synchronized (upload) {
+                if (Long.parseLong(ex.header("Upload-Offset")) != upload.data.size()) {
+                    throw new HttpError(409, "Upload-Offset does not match");
+                }
+                byte[] chunk = ex.body();
+                upload.data.write(chunk, 0, (int) Math.min(chunk.length, upload.length - upload.data.size()));
+                if (upload.data.size() == upload.length) {
+                    String mime = upload.metadata.get("contentType");
+                    String userMetadata = upload.metadata.get("metadata");
+                    objects.put(upload.key, new Blob(upload.data.toByteArray(), mime != null ? mime : "application/octet-stream",
+                            userMetadata != null ? MAPPER.readTree(userMetadata) : MAPPER.createObjectNode()));
+                    tusUploads.remove(rest.substring(1));
+                }
+                ex.exchange.getResponseHeaders().set("Upload-Offset", String.valueOf(upload.data.size()));
+            }
+            ex.send(204, null, null);
+        } else {
+            throw new HttpError(405, method + " not allowed");
+        }
+    }
+
+    // ---- GitHub ----
+
+    private void github(Exchange ex, String rest) throws IOException {
+        int remaining = rateRemaining.updateAndGet(n -> Math.max(0, n - 1));
+        ex.exchange.getResponseHeaders().set("X-RateLimit-Limit", String.valueOf(rateLimit));
+        ex.exchange.getResponseHeaders().set("X-RateLimit-Remaining", String.valueOf(remaining));
+        ex.exchange.getResponseHeaders().set("X-RateLimit-Reset", String.valueOf(System.currentTimeMillis() / 1000 + 3600));
+        if (remaining == 0) throw new HttpError(403, "API rate limit exceeded");
+
+        String[] parts = rest.split("/", 3);
+        if (parts.length < 2) throw new HttpError(404, "Not Found");
+        String repo = parts[0] + "/" + parts[1];
+        String sub = parts.length > 2 ? parts[2] : "";
+        if (sub.isEmpty()) {
+            ex.sendJson(200, MAPPER.createObjectNode().put("full_name", repo).put("default_branch", "main"));
+        } else if (sub.startsWith("git/trees/")) {
+            String sha = sub.substring("git/trees/".length());
+            // Tree shas are "tree:<dir>"; the branch name stands for the root
+            String dir = sha.startsWith("tree:") ? sha.substring("tree:".length()) : "";
+            ex.sendJson(200, tree(repo, dir, "1".equals(ex.query("recursive"))));
+        } else if (sub.startsWith("contents")) {
+            String dir = sub.length() > "contents/".length() ? sub.substring("contents/".length()) : "";
+            ArrayNode listing = MAPPER.createArrayNode();
+            for (ObjectNode entry : treeEntries(repo, dir, false)) {
+                String path = (dir.isEmpty() ? "" : dir + "/") + entry.path("path").asText();
+                ObjectNode item = listing.addObject();
+                item.put("name", entry.path("path").asText());
+                item.put("path", path);
+                item.put("sha", entry.path("sha").asText());
+                item.put("size", entry.path("size").asLong(0));
+                boolean file = "blob".equals(entry.path("type").asText());
+                item.put("type", file ? "file" : "dir");
+                if (file) item.put("download_url", url() + "/raw/" + repo + "/main/" + path);
+                else item.putNull("download_url");
+            }
+            ex.sendJson(200, listing);
+        } else {
+            throw new HttpError(404, "Not Found");
+        }
+    }
+
+    private ObjectNode tree(String repo, String dir, boolean recursive) {
+        List<ObjectNode> entries = treeEntries(repo, dir, recursive);
+        ObjectNode tree = MAPPER.createObjectNode();
+        tree.put("sha", "tree:" + dir);
+        boolean truncated = recursive && entries.size() > maxTreeEntries;
+        ArrayNode array = tree.putArray("tree");
+        for (int i = 0; i < entries.size() && (!truncated || i < maxTreeEntries); i++) array.add(entries.get(i));
+        tree.put("truncated", truncated);
+        return tree;
+    }
+
+    // Entries below a directory of a repository, with paths relative to it
+    private List<ObjectNode> treeEntries(String repo, String dir, boolean recursive) {
+        String base = repo + "/" + (dir.isEmpty() ? "" : dir + "/");
+        Map<String, ObjectNode> entries = new TreeMap<>();
+        for (Map.Entry<String, byte[]> file : repoFiles.entrySet()) {
+            if (!file.getKey().startsWith(base)) continue;
+            String relative = file.getKey().substring(base.length());
+            String[] segments = relative.split("/");
+            String path = "";
+            for (int i = 0; i < segments.length - 1 && (recursive || i == 0); i++) {
+                path = path.isEmpty() ? segments[i] : path + "/" + segments[i];
+                ObjectNode subtree = MAPPER.createObjectNode();
+                subtree.put("path", path);
+                subtree.put("type", "tree");
+                subtree.put("sha", "tree:" + (dir.isEmpty() ? "" : dir + "/") + path);
+                entries.putIfAbsent(path, subtree);
+            }
+            if (segments.length == 1 || recursive) {
+                ObjectNode blob = MAPPER.createObjectNode();
+                blob.put("path", relative);
+                blob.put("type", "blob");
+                blob.put("sha", md5(file.getValue()));
+                blob.put("size", file.getValue().length);
+                entries.put(relative, blob);
+            }
+        }
+        return new ArrayList<>(entries.values());
+    }
+
+    // owner/repo/ref/path, where ref is a branch name or refs/heads/<branch>
+    private void raw(Exchange ex, String rest) throws IOException {
+        String[] parts = rest.split("/");
+        int pathStart = parts.length > 3 && parts[2].equals("refs") ? 5 : 3;
+        if (parts.length <= pathStart) throw new HttpError(404, "404: Not Found");
+        StringBuilder path = new StringBuilder();
+        for (int i = pathStart; i < parts.length; i++) path.append(i > pathStart ? "/" : "").append(parts[i]);
+        byte[] data = repoFiles.get(parts[0] + "/" + parts[1] + "/" + path);
+        if (data == null) throw new HttpError(404, "404: Not Found");
+        ex.send(200, "text/plain; charset=utf-8", data);
+    }
+
+    // owner/repo/releases/download/tag/asset
+    private void release(Exchange ex, String rest) throws IOException {
+        String[] parts = rest.split("/");
+        if (parts.length != 6 || !parts[2].equals("releases") || !parts[3].equals("download")) throw new HttpError(404, "Not Found");
+        byte[] data = releaseAssets.get(parts[0] + "/" + parts[1] + "/" + parts[4] + "/" + parts[5]);
+        if (data == null) throw new HttpError(404, "Not Found");
+        ex.send(200, "application/octet-stream", data);
+    }
+
+    // ---- Internet Archive ----
+
+    private void archive(Exchange ex, String rest) throws IOException {
+        if (rest.startsWith("metadata/")) {
+            String item = rest.substring("metadata/".length());
+            ObjectNode metadata = MAPPER.createObjectNode();
+            metadata.putObject("metadata").put("identifier", item);
+            ArrayNode files = metadata.putArray("files");
+            for (Map.Entry<String, byte[]> file : new TreeMap<>(archiveFiles).entrySet()) {
+                if (!file.getKey().startsWith(item + "/")) continue;
+                ObjectNode entry = files.addObject();
+                entry.put("name", file.getKey().substring(item.length() + 1));
+                // archive.org reports numbers as strings
+                entry.put("size", String.valueOf(file.getValue().length));
+                entry.put("md5", md5(file.getValue()));
+                entry.put("mtime", String.valueOf(System.currentTimeMillis() / 1000));
+            }
+            ex.sendJson(200, metadata);
+        } else if (rest.startsWith("download/")) {
+            byte[] data = archiveFiles.get(rest.substring("download/".length()));
+            if (data == null) throw new HttpError(404, "Not Found");
+            ex.send(200, "application/java-archive", data);
+        } else {
+            throw new HttpError(404, "Not Found");
+        }
+    }
+
+    // ---- plumbing ----
+
+    private static String md5(byte[] data) {
+        try {
+            StringBuilder hex = new StringBuilder();
+            for (byte b : MessageDigest.getInstance("MD5").digest(data)) hex.append(String.format("%02x", b));
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void sleep(long millis) {
+        if (millis <= 0) return;
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static class CutOff extends IOException {
+        CutOff() {
+            super("Injected connection reset");
+        }
+    }
+
+    private static class HttpError extends RuntimeException {
+        final int status;
+
+        HttpError(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    private class Exchange {
+        final HttpExchange exchange;
+        final String method;
+        final String path;
+        final Map<String, String> query = new LinkedHashMap<>();
+        boolean sent;
+        boolean cutOff;
+
+        Exchange(HttpExchange exchange) throws IOException {
+            this.exchange = exchange;
+            this.method = exchange.getRequestMethod();
+            this.path = exchange.getRequestURI().getPath();
+            String raw = exchange.getRequestURI().getRawQuery();
+            if (raw != null) {
+                for (String pair : raw.split("&")) {
+                    String[] parts = pair.split("=", 2);
+                    query.put(URLDecoder.decode(parts[0], "UTF-8"), parts.length > 1 ? URLDecoder.decode(parts[1], "UTF-8") : "");
+                }
+            }
+        }
+
+        String header(String name) {
+            return exchange.getRequestHeaders().getFirst(name);
+        }
+
+        String query(String name) {
+            return query.get(name);
+        }
+
+        byte[] body() throws IOException {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            try (InputStream in = throttled(exchange.getRequestBody())) {
+                byte[] buffer = new byte[64 * 1024];
+                int read;
+                while ((read = in.read(buffer)) != -1) out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        }
+
+        void drain() throws IOException {
+            body();
+        }
+
+        void sendJson(int status, JsonNode json) throws IOException {
+            send(status, "application/json", MAPPER.writeValueAsBytes(json));
+        }
+
+        void sendError(int status, String message) throws IOException {
+            if (sent) return;
+            ObjectNode error = MAPPER.createObjectNode();
+            error.put("statusCode", String.valueOf(status));
+            error.put("error", status == 401 ? "Unauthorized" : "Error");
+            error.put("message", message);
+            cutOff = false;
+            sendJson(status, error);
+        }
+
+        void send(int status, String contentType, byte[] body) throws IOException {
+            sent = true;
+            if (contentType != null) exchange.getResponseHeaders().set("Content-Type", contentType);
+            if (body == null || method.equals("HEAD")) {
+                exchange.sendResponseHeaders(status, -1);
+                return;
+            }
+            exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+            OutputStream out = throttled(exchange.getResponseBody());
+            if (cutOff) {
+                // Half of the declared length, then the connection is dropped
+                out.write(body, 0, body.length / 2);
+                out.flush();
+                throw new CutOff();
+            }
+            try {
+                out.write(body);
+            } finally {
+                out.close();
+            }
+        }
+
+        private InputStream throttled(InputStream in) {
+            long rate = conditions.bytesPerSecond;
+            if (rate <= 0) return in;
+            Throttle throttle = new Throttle(rate);
+            return new FilterInputStream(in) {
+                @Override
+                public int read(byte[] b, int off, int len) throws IOException {
+                    int read = super.read(b, off, (int) Math.min(len, Math.max(1, rate / 10)));
+                    if (read > 0) throttle.account(read);
+                    return read;
+                }
+            };
+        }
+
+        private OutputStream throttled(OutputStream out) {
+            long rate = conditions.bytesPerSecond;
+            if (rate <= 0) return out;
+            Throttle throttle = new Throttle(rate);
+            return new FilterOutputStream(out) {
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    int step = (int) Math.max(1, rate / 10);
+                    for (int at = off; at < off + len; at += step) {
+                        int n = Math.min(step, off + len - at);
+                        out.write(b, at, n);
+                        throttle.account(n);
+                    }
+                }
+            };
+        }
+    }
+
+    // Paces a stream to a byte rate by sleeping once it runs ahead
+    private static class Throttle {
+        private final long bytesPerSecond;
+        private final long started = System.nanoTime();
+        private long bytes;
+
+        Throttle(long bytesPerSecond) {
+            this.bytesPerSecond = bytesPerSecond;
+        }
+
+        void account(int count) {
+            bytes += count;
+            long dueNanos = bytes * 1_000_000_000L / bytesPerSecond;
+            long aheadMs = (dueNanos - (System.nanoTime() - started)) / 1_000_000;
+            sleep(aheadMs);
+        }
+    }
+
+    private static class User {
+        final String id;
+        final String email;
+        final String password;
+
+        User(String id, String email, String password) {
+            this.id = id;
+            this.email = email;
+            this.password = password;
+        }
+    }
+
+    private static class Session {
+        final User user;
+        final String accessToken;
+        final String refreshToken;
+        final long expiresAt;
+
+        Session(User user, String accessToken, String refreshToken, long expiresAt) {
+            this.user = user;
+            this.accessToken = accessToken;
+            this.refreshToken = refreshToken;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private static class Blob {
+        final String id = UUID.randomUUID().toString();
+        final byte[] data;
+        final String mimeType;
+        final JsonNode userMetadata;
+        final String etag;
+        final Instant updatedAt = Instant.now();
+
+        Blob(byte[] data, String mimeType, JsonNode userMetadata) {
+            this.data = data;
+            this.mimeType = mimeType;
+            this.userMetadata = userMetadata;
+            this.etag = "\"" + md5(data) + "\"";
+        }
+    }
+
+    private static class TusUpload {
+        final String key;
+        final long length;
+        final Map<String, String> metadata;
+        final ByteArrayOutputStream data = new ByteArrayOutputStream();
+
+        TusUpload(String key, long length, Map<String, String> metadata) {
+            this.key = key;
+            this.length = length;
+            this.metadata = metadata;
+        }
+    }
+}
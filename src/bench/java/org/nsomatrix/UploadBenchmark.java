@@ -0,0 +1,117 @@
+package org.nsomatrix;
+
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.net.InetSocketAddress;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Uploads a large file to a local sink server twice: once streamed from a FileChannel with a declared
+ * length (the way SupabaseStorageClient and TusUploader send files), and once through a body of
+ * unknown length, which HttpURLConnection buffers in full before sending. Prints throughput and the
+ * peak heap used by each. Run with a small heap, e.g. ./gradlew bench (64 MB), so buffering shows as
+ * an OutOfMemoryError.
+ *
+ * System properties: bench.upload.mb (file size, default 256), bench.upload.rounds (default 3).
+ */
+public class UploadBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        long sizeMb = Long.getLong("bench.upload.mb", 256);
+        int rounds = Integer.getInteger("bench.upload.rounds", 3);
+
+        AtomicLong received = new AtomicLong();
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/upload", exchange -> {
+            byte[] buffer = new byte[64 * 1024];
+            try (InputStream in = exchange.getRequestBody()) {
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    received.addAndGet(read);
+                }
+            }
+            exchange.sendResponseHeaders(204, -1);
+            exchange.close();
+        });
+        server.setExecutor(Executors.newFixedThreadPool(2));
+        server.start();
+        String url = "http://127.0.0.1:" + server.getAddress().getPort() + "/upload";
+
+        File file = File.createTempFile("upload-bench", ".bin");
+        file.deleteOnExit();
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(sizeMb * 1024 * 1024);
+        }
+        System.out.printf("Uploading a %d MB file to %s, max heap %d MB%n", sizeMb, url,
+                Runtime.getRuntime().maxMemory() / (1024 * 1024));
+
+        for (int round = 1; round <= rounds; round++) {
+            run("streamed", round, file, received, () -> HttpTransport.getDefault().request("POST", url)
+                    .attempts(1)
+                    .body("application/octet-stream", file.toPath(), 0, file.length())
+                    .execute()
+                    .close());
+        }
+        run("buffered", 1, file, received, () -> HttpTransport.getDefault().request("POST", url)
+                .attempts(1)
+                .body("application/octet-stream", out -> {
+                    try (FileInputStream in = new FileInputStream(file)) {
+                        byte[] buffer = new byte[8192];
+                        int read;
+                        while ((read = in.read(buffer)) != -1) {
+                            out.write(buffer, 0, read);
+                        }
+                    }
+                })
+                .execute()
+                .close());
+
+        server.stop(0);
+        System.exit(0);
+    }
+
+    private interface Upload {
+        void run() throws IOException;
+    }
+
+    private static void run(String name, int round, File file, AtomicLong received, Upload upload) {
+        System.gc();
+        received.set(0);
+        long heapBefore = usedHeap();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) pool.resetPeakUsage();
+        }
+        long started = System.nanoTime();
+        try {
+            upload.run();
+        } catch (OutOfMemoryError e) {
+            System.out.printf("%-9s round %d: ran out of heap after %d MB sent%n", name, round, received.get() / (1024 * 1024));
+            return;
+        } catch (IOException e) {
+            System.out.printf("%-9s round %d: failed: %s%n", name, round, e.getMessage());
+            return;
+        }
+        double seconds = (System.nanoTime() - started) / 1e9;
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) peak += pool.getPeakUsage().getUsed();
+        }
+        System.out.printf("%-9s round %d: %.1f MB/s, %d of %d MB received, peak heap %d MB (%d MB before)%n",
+                name, round, file.length() / seconds / (1024 * 1024), received.get() / (1024 * 1024),
+                file.length() / (1024 * 1024), peak / (1024 * 1024), heapBefore / (1024 * 1024));
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
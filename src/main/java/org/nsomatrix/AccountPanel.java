@@ -2,6 +2,7 @@ package org.nsomatrix;
 
 import javax.swing.*;
 import java.awt.*;
+import java.util.prefs.Preferences;
 
 public class AccountPanel extends JPanel {
 
@@ -10,10 +11,8 @@ public class AccountPanel extends JPanel {
     private final SupabaseLoginPanel loginPanel = new SupabaseLoginPanel();
     private final DashboardPanel dashboardPanel = new DashboardPanel();
 
-    private String accessToken;
-    private String refreshToken;
-    private String userEmail;
-    private String userId;
+    private final SupabaseAuthService authService = new SupabaseAuthService();
+    private AuthSession session;
 
     private final SupabaseStorageClient storageClient = new SupabaseStorageClient();
 
@@ -22,42 +21,57 @@ public class AccountPanel extends JPanel {
         add(loginPanel, "LOGIN");
         add(dashboardPanel, "DASHBOARD");
 
-        loginPanel.setLoginCallback(authResponse -> {
-            this.accessToken = authResponse.access_token;
-            this.refreshToken = authResponse.refresh_token;
-            this.userEmail = authResponse.user.email;
-            this.userId = authResponse.user.id;
+        loginPanel.setLoginCallback(this::startSession);
 
-            // Set tokens and user ID in storage client
-            storageClient.setAccessToken(accessToken);
-            storageClient.setUserId(userId);
+        SaveSync.getDefault().followPreference(Preferences.userNodeForPackage(UI.class));
 
-            dashboardPanel.setUserEmail(userEmail);
-            dashboardPanel.setStorageClient(storageClient);
+        // A session saved by the last run opens the dashboard at once; an expired access token is
+        // renewed in the background, and requests made before that are retried with the new one
+        SupabaseAuthService.AuthResponse saved = AuthSession.loadSaved();
+        if (saved != null) {
+            startSession(saved);
+        } else {
+            cardLayout.show(this, "LOGIN");
+        }
+    }
 
-            cardLayout.show(AccountPanel.this, "DASHBOARD");
-        });
+    private void startSession(SupabaseAuthService.AuthResponse authResponse) {
+        session = new AuthSession(authService, authResponse, expired -> SwingUtilities.invokeLater(() -> {
+            if (session == expired) endSession("Your session has expired. Please log in again.");
+        }));
+        String userId = session.getUserId();
 
-        cardLayout.show(this, "LOGIN");
+        storageClient.setSession(session);
+        storageClient.setUserId(userId);
+
+        dashboardPanel.setUserEmail(session.getEmail());
+        dashboardPanel.setStorageClient(storageClient);
+        SaveSync.getDefault().attach(storageClient, userId);
+        SaveSync.getDefault().requestSync();
+
+        cardLayout.show(this, "DASHBOARD");
     }
 
     public void logout() {
-        accessToken = null;
-        refreshToken = null;
-        userEmail = null;
-        userId = null;
-        storageClient.setAccessToken(null);
+        endSession("Logout successful!");
+    }
+
+    private void endSession(String status) {
+        if (session != null) session.end();
+        session = null;
+        SaveSync.getDefault().detach();
+        storageClient.setSession(null);
         storageClient.setUserId(null);
         dashboardPanel.clearState();
-        loginPanel.setStatus("Logout successful!");
+        loginPanel.setStatus(status);
         cardLayout.show(this, "LOGIN");
     }
 
     public boolean isLoggedIn() {
-        return accessToken != null;
+        return session != null;
     }
 
     public String getAccessToken() {
-        return accessToken;
+        return session != null ? session.getAccessToken() : null;
     }
 }
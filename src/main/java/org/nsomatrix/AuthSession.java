@@ -0,0 +1,172 @@
+package org.nsomatrix;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Optional;
+import java.util.concurrent.ScheduledFuture;
+
+/**
+ * The signed-in user's session. It is stored in ~/.matrix_launcher_session.json, readable only by the
+ * current user, so the launcher stays signed in across restarts, and its access token is renewed in the
+ * background with the refresh token shortly before it expires.
+ */
+public class AuthSession {
+    private static final File STORAGE_FILE = new File(System.getProperty("user.home"), ".matrix_launcher_session.json");
+    // How long before expiry the access token is renewed, and how often that is checked
+    private static final long REFRESH_MARGIN_MS = 5 * 60 * 1000;
+    private static final long CHECK_INTERVAL_MS = 30 * 1000;
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    public interface Listener {
+        /** Called from a background thread when the server rejects the refresh token. */
+        void onExpired(AuthSession session);
+    }
+
+    private final SupabaseAuthService authService;
+    private final Listener listener;
+    private final Object refreshLock = new Object();
+    private volatile SupabaseAuthService.AuthResponse current;
+    private volatile boolean ended;
+    private volatile ScheduledFuture<?> refresher;
+
+    /** Starts a session, saving it and renewing its access token until {@link #end()}. */
+    public AuthSession(SupabaseAuthService authService, SupabaseAuthService.AuthResponse response, Listener listener) {
+        this.authService = authService;
+        this.listener = listener;
+        this.current = response;
+        save(response);
+        // The first check runs at once, so a restored session that has expired is renewed right away
+        refresher = TaskScheduler.getDefault().scheduleWithFixedDelay(TaskScheduler.Pool.IO,
+                TaskScheduler.Priority.BACKGROUND, this::refreshIfDue, 0, CHECK_INTERVAL_MS);
+        if (ended) stopRefreshing();
+    }
+
+    /** The session saved by an earlier run, or null. */
+    public static SupabaseAuthService.AuthResponse loadSaved() {
+        if (!STORAGE_FILE.exists()) return null;
+        try {
+            SupabaseAuthService.AuthResponse saved = MAPPER.readValue(STORAGE_FILE, SupabaseAuthService.AuthResponse.class);
+            if (saved.refresh_token == null || saved.user == null || saved.user.id == null) return null;
+            return saved;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    public String getAccessToken() {
+        return current.access_token;
+    }
+
+    public String getUserId() {
+        return current.user.id;
+    }
+
+    public String getEmail() {
+        return current.user.email;
+    }
+
+    /**
+     * Called after the server refused {@code rejectedToken}. Renews the session unless another thread
+     * already did, and returns the access token to retry with, or null if there is none.
+     */
+    public String renew(String rejectedToken) {
+        synchronized (refreshLock) {
+            if (ended) return null;
+            if (!rejectedToken.equals(current.access_token)) return current.access_token;
+            try {
+                if (refresh()) return current.access_token;
+            } catch (IOException e) {
+                System.err.println("[AuthSession] Refresh failed: " + e.getMessage());
+                return null;
+            }
+        }
+        listener.onExpired(this);
+        return null;
+    }
+
+    /** Stops renewing the session and forgets it, locally and on the server. */
+    public void end() {
+        synchronized (refreshLock) {
+            ended = true;
+        }
+        stopRefreshing();
+        if (!STORAGE_FILE.delete() && STORAGE_FILE.exists()) {
+            System.err.println("[AuthSession] Could not delete " + STORAGE_FILE);
+        }
+        String token = current.access_token;
+        TaskScheduler.getDefault().submit(TaskScheduler.Pool.IO, TaskScheduler.Priority.BACKGROUND, () -> {
+            try {
+                authService.signOut(token);
+            } catch (IOException e) {
+                System.err.println("[AuthSession] Sign out failed: " + e.getMessage());
+            }
+        });
+    }
+
+    private void stopRefreshing() {
+        ScheduledFuture<?> scheduled = refresher;
+        if (scheduled != null) scheduled.cancel(false);
+    }
+
+    private void refreshIfDue() {
+        synchronized (refreshLock) {
+            if (ended || current.expires_at * 1000 - REFRESH_MARGIN_MS > System.currentTimeMillis()) return;
+            try {
+                if (refresh()) return;
+            } catch (IOException e) {
+                // Offline: keep the session and try again at the next check
+                System.err.println("[AuthSession] Refresh failed, will retry: " + e.getMessage());
+                return;
+            }
+        }
+        listener.onExpired(this);
+    }
+
+    // Exchanges the refresh token; false if the server rejected it, in which case the session has ended
+    // and the caller tells the listener once it has let go of refreshLock. Only one caller can see this,
+    // since every later one finds the session ended
+    private boolean refresh() throws IOException {
+        Optional<SupabaseAuthService.AuthResponse> renewed = authService.refresh(current.refresh_token);
+        if (!renewed.isPresent()) {
+            System.err.println("[AuthSession] Refresh token rejected, session ended");
+            ended = true;
+            stopRefreshing();
+            return false;
+        }
+        SupabaseAuthService.AuthResponse response = renewed.get();
+        if (response.user == null) response.user = current.user;
+        current = response;
+        save(response);
+        System.out.println("[AuthSession] Access token renewed");
+        return true;
+    }
+
+    // Written to a temporary file that only the owner can read, then moved over the old one
+    private static void save(SupabaseAuthService.AuthResponse response) {
+        Path target = STORAGE_FILE.toPath();
+        Path temp = new File(STORAGE_FILE.getPath() + ".tmp").toPath();
+        try {
+            Files.deleteIfExists(temp);
+            if (Files.getFileStore(target.getParent()).supportsFileAttributeView("posix")) {
+                Files.createFile(temp, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+            } else {
+                File file = Files.createFile(temp).toFile();
+                file.setReadable(false, false);
+                file.setWritable(false, false);
+                file.setReadable(true, true);
+                file.setWritable(true, true);
+            }
+            Files.write(temp, MAPPER.writeValueAsBytes(response));
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package org.nsomatrix;
+
+import javax.swing.*;
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * A SwingWorker replacement that runs on the {@link TaskScheduler} instead of SwingWorker's own shared
+ * thread pool. {@link #doInBackground} runs in the chosen pool, values passed to {@link #publish} reach
+ * {@link #process} on the EDT in batches, and {@link #done} runs on the EDT afterwards, where
+ * {@link #get} returns the result or throws its failure.
+ *
+ * When an owner component is given the task is cancelled if the owner's window is disposed, and
+ * {@code done()} is then skipped so no UI is touched on a closed window.
+ */
+public abstract class BackgroundTask<T, V> {
+    private final TaskScheduler.Pool pool;
+    private final TaskScheduler.Priority priority;
+    private final Component owner;
+    private final List<V> pending = new ArrayList<>();
+    private volatile TaskScheduler.Task<T> task;
+    private volatile RejectedExecutionException rejected;
+
+    protected BackgroundTask(TaskScheduler.Pool pool, TaskScheduler.Priority priority, Component owner) {
+        this.pool = pool;
+        this.priority = priority;
+        this.owner = owner;
+    }
+
+    protected abstract T doInBackground() throws Exception;
+
+    /** Receives values given to {@link #publish}, on the EDT. */
+    protected void process(List<V> chunks) {
+    }
+
+    /** Called on the EDT once {@link #doInBackground} has returned or thrown. */
+    protected void done() {
+    }
+
+    @SafeVarargs
+    protected final void publish(V... chunks) {
+        boolean schedule;
+        synchronized (pending) {
+            schedule = pending.isEmpty();
+            for (V chunk : chunks) pending.add(chunk);
+        }
+        if (schedule) {
+            SwingUtilities.invokeLater(() -> {
+                List<V> batch;
+                synchronized (pending) {
+                    batch = new ArrayList<>(pending);
+                    pending.clear();
+                }
+                if (!isCancelled()) process(batch);
+            });
+        }
+    }
+
+    public final void execute() {
+        try {
+            task = TaskScheduler.getDefault().submit(pool, priority, this::doInBackground);
+        } catch (RejectedExecutionException e) {
+            rejected = e;
+            SwingUtilities.invokeLater(this::done);
+            return;
+        }
+        if (owner != null) TaskScheduler.getDefault().cancelWith(owner, task);
+        task.onDone(() -> SwingUtilities.invokeLater(() -> {
+            if (!isCancelled()) done();
+        }));
+    }
+
+    public final T get() throws InterruptedException, ExecutionException {
+        if (rejected != null) throw new ExecutionException(rejected);
+        if (task == null) throw new IllegalStateException("Task was not executed");
+        return task.get();
+    }
+
+    public final boolean cancel() {
+        return task != null && task.cancel(true);
+    }
+
+    public final boolean isCancelled() {
+        return task != null && task.isCancelled();
+    }
+}
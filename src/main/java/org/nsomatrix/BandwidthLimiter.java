@@ -0,0 +1,218 @@
+package org.nsomatrix;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URL;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.prefs.Preferences;
+
+/**
+ * Token-bucket limits on download bandwidth, so bulk mod pulls and self-updates leave room for the
+ * emulators on a shared link. There is one bucket for all traffic and one per host, both refilled at
+ * the configured rate with about a second of burst. The global rate can be overridden for parts of the
+ * day by a schedule such as {@code 09:00-18:00=256;18:00-09:00=0} (KB/s, 0 meaning unlimited).
+ *
+ * Waiters are served by priority: a transfer only takes tokens while no higher-priority transfer is
+ * waiting for the same bucket, so an interactive download gets the bandwidth ahead of a bulk sync and
+ * the bulk sync picks up whatever is left over.
+ *
+ * Settings are read from the launcher preferences and picked up as soon as they change.
+ */
+public class BandwidthLimiter {
+    public static final String PREF_GLOBAL_LIMIT = "bandwidth_limit_kbps";
+    public static final String PREF_HOST_LIMIT = "bandwidth_host_limit_kbps";
+    public static final String PREF_SCHEDULE = "bandwidth_schedule";
+
+    private static final int CHUNK_BYTES = 16 * 1024;
+
+    public enum Priority { INTERACTIVE, NORMAL, BACKGROUND }
+
+    private static final BandwidthLimiter DEFAULT = new BandwidthLimiter(Preferences.userNodeForPackage(UI.class));
+
+    public static BandwidthLimiter getDefault() {
+        return DEFAULT;
+    }
+
+    private final Preferences prefs;
+    private final Bucket global = new Bucket();
+    private final Map<String, Bucket> hosts = new HashMap<>();
+
+    private volatile long globalBytesPerSecond;
+    private volatile long hostBytesPerSecond;
+    private volatile List<Window> schedule = new ArrayList<>();
+
+    BandwidthLimiter(Preferences prefs) {
+        this.prefs = prefs;
+        reload();
+        prefs.addPreferenceChangeListener(evt -> {
+            if (evt.getKey().startsWith("bandwidth_")) reload();
+        });
+    }
+
+    private void reload() {
+        globalBytesPerSecond = Math.max(0, prefs.getLong(PREF_GLOBAL_LIMIT, 0)) * 1024;
+        hostBytesPerSecond = Math.max(0, prefs.getLong(PREF_HOST_LIMIT, 0)) * 1024;
+        try {
+            schedule = parseSchedule(prefs.get(PREF_SCHEDULE, ""));
+        } catch (IllegalArgumentException e) {
+            System.err.println("[BandwidthLimiter] Ignoring invalid schedule: " + e.getMessage());
+            schedule = new ArrayList<>();
+        }
+    }
+
+    /** Wraps a response body so reading from it is paced by the limits for the URL's host. */
+    public InputStream throttle(InputStream in, String url, Priority priority) {
+        return new ThrottledInputStream(in, hostOf(url), priority);
+    }
+
+    /** Blocks until {@code bytes} may be transferred from {@code host}; bytes above one chunk are paced in chunks. */
+    public void acquire(String host, Priority priority, int bytes) throws InterruptedIOException {
+        long hostRate = hostBytesPerSecond;
+        Bucket hostBucket = null;
+        if (hostRate > 0) {
+            synchronized (hosts) {
+                hostBucket = hosts.computeIfAbsent(host, h -> new Bucket());
+            }
+        }
+        long globalRate = currentGlobalRate();
+        while (bytes > 0) {
+            int chunk = Math.min(bytes, CHUNK_BYTES);
+            if (hostBucket != null) hostBucket.take(chunk, hostRate, priority);
+            if (globalRate > 0) global.take(chunk, globalRate, priority);
+            bytes -= chunk;
+        }
+    }
+
+    // The scheduled limit for the current time of day, otherwise the plain global limit
+    private long currentGlobalRate() {
+        List<Window> windows = schedule;
+        if (!windows.isEmpty()) {
+            LocalTime now = LocalTime.now();
+            for (Window window : windows) {
+                if (window.contains(now)) return window.bytesPerSecond;
+            }
+        }
+        return globalBytesPerSecond;
+    }
+
+    /** Parses {@code HH:mm-HH:mm=KBps} entries separated by ';' or ','. Windows may wrap past midnight. */
+    public static List<Window> parseSchedule(String text) {
+        List<Window> windows = new ArrayList<>();
+        if (text == null) return windows;
+        for (String entry : text.split("[;,]")) {
+            entry = entry.trim();
+            if (entry.isEmpty()) continue;
+            int eq = entry.indexOf('=');
+            int dash = entry.indexOf('-');
+            if (eq < 0 || dash < 0 || dash > eq) {
+                throw new IllegalArgumentException("Expected HH:mm-HH:mm=KBps but got '" + entry + "'");
+            }
+            try {
+                LocalTime start = LocalTime.parse(entry.substring(0, dash).trim());
+                LocalTime end = LocalTime.parse(entry.substring(dash + 1, eq).trim());
+                long kbps = Long.parseLong(entry.substring(eq + 1).trim());
+                if (kbps < 0) throw new IllegalArgumentException("Negative limit in '" + entry + "'");
+                windows.add(new Window(start, end, kbps * 1024));
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Invalid schedule entry '" + entry + "'", e);
+            }
+        }
+        return windows;
+    }
+
+    private static String hostOf(String url) {
+        try {
+            return new URL(url).getHost();
+        } catch (IOException e) {
+            return url;
+        }
+    }
+
+    public static class Window {
+        final LocalTime start;
+        final LocalTime end;
+        final long bytesPerSecond;
+
+        Window(LocalTime start, LocalTime end, long bytesPerSecond) {
+            this.start = start;
+            this.end = end;
+            this.bytesPerSecond = bytesPerSecond;
+        }
+
+        boolean contains(LocalTime time) {
+            if (start.isBefore(end)) return !time.isBefore(start) && time.isBefore(end);
+            return !time.isBefore(start) || time.isBefore(end);
+        }
+    }
+
+    private static class Bucket {
+        private final int[] waiting = new int[Priority.values().length];
+        private double tokens;
+        private long refilledAt = System.nanoTime();
+
+        synchronized void take(int bytes, long bytesPerSecond, Priority priority) throws InterruptedIOException {
+            // About a second of burst, but never less than a chunk so every request can eventually be met
+            double capacity = Math.max(bytesPerSecond, CHUNK_BYTES);
+            waiting[priority.ordinal()]++;
+            try {
+                while (true) {
+                    long now = System.nanoTime();
+                    tokens = Math.min(capacity, tokens + (now - refilledAt) / 1e9 * bytesPerSecond);
+                    refilledAt = now;
+                    if (tokens >= bytes && !higherPriorityWaiting(priority)) {
+                        tokens -= bytes;
+                        notifyAll();
+                        return;
+                    }
+                    long waitMs = Math.max(1, (long) Math.ceil((bytes - tokens) * 1000.0 / bytesPerSecond));
+                    wait(waitMs);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for bandwidth");
+            } finally {
+                waiting[priority.ordinal()]--;
+                notifyAll();
+            }
+        }
+
+        private boolean higherPriorityWaiting(Priority priority) {
+            for (int i = 0; i < priority.ordinal(); i++) {
+                if (waiting[i] > 0) return true;
+            }
+            return false;
+        }
+    }
+
+    private class ThrottledInputStream extends FilterInputStream {
+        private final String host;
+        private final Priority priority;
+
+        ThrottledInputStream(InputStream in, String host, Priority priority) {
+            super(in);
+            this.host = host;
+            this.priority = priority;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) acquire(host, priority, 1);
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            // Small reads keep the pacing smooth instead of paying for a large buffer in one go
+            int read = super.read(b, off, Math.min(len, CHUNK_BYTES));
+            if (read > 0) acquire(host, priority, read);
+            return read;
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package org.nsomatrix;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Local copies of downloaded cloud storage objects in ~/.matrix_launcher_blob_cache, keyed by object
+ * path and etag. A download of an object that is cached is sent as a conditional request, and a 304
+ * reply is served from disk. The least recently used blobs are dropped once the cache grows past its
+ * size limit.
+ */
+public class BlobCache {
+    private static final File ROOT = new File(System.getProperty("user.home"), ".matrix_launcher_blob_cache");
+    private static final long DEFAULT_MAX_BYTES = 256L * 1024 * 1024;
+    private static final BlobCache DEFAULT = new BlobCache(ROOT, DEFAULT_MAX_BYTES);
+
+    private final File root;
+    private final File indexFile;
+    private final long maxBytes;
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final Map<String, Entry> entries = new HashMap<>();
+    private boolean loaded;
+
+    public BlobCache(File root, long maxBytes) {
+        this.root = root;
+        this.indexFile = new File(root, "index.json");
+        this.maxBytes = maxBytes;
+    }
+
+    public static BlobCache getDefault() {
+        return DEFAULT;
+    }
+
+    /** True if an object of this size is worth caching at all. */
+    public boolean accepts(long size) {
+        return size <= maxBytes / 4;
+    }
+
+    /** The cached copy of an object, whatever its etag, or null. */
+    public synchronized Entry lookup(String path) {
+        load();
+        Entry entry = entries.get(path);
+        if (entry == null) return null;
+        if (!new File(root, entry.blob).isFile()) {
+            entries.remove(path);
+            save();
+            return null;
+        }
+        entry.lastUsed = System.currentTimeMillis();
+        save();
+        return entry;
+    }
+
+    /** Copies a cached blob to {@code destination}, replacing it. */
+    public void copyTo(Entry entry, File destination) throws IOException {
+        Files.copy(new File(root, entry.blob).toPath(), destination.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /** Starts caching a new copy; nothing is visible until {@link Writer#commit}. */
+    public Writer begin() throws IOException {
+        if (!root.isDirectory() && !root.mkdirs()) throw new IOException("Could not create " + root);
+        return new Writer(File.createTempFile("blob", ".part", root));
+    }
+
+    public synchronized void remove(String path) {
+        load();
+        Entry entry = entries.remove(path);
+        if (entry != null) {
+            new File(root, entry.blob).delete();
+            save();
+        }
+    }
+
+    private synchronized void put(String path, String etag, File temp) throws IOException {
+        load();
+        String blob = UUID.randomUUID().toString();
+        Files.move(temp.toPath(), new File(root, blob).toPath(), StandardCopyOption.REPLACE_EXISTING);
+        Entry previous = entries.get(path);
+        if (previous != null) new File(root, previous.blob).delete();
+        Entry entry = new Entry();
+        entry.etag = etag;
+        entry.blob = blob;
+        entry.size = new File(root, blob).length();
+        entry.lastUsed = System.currentTimeMillis();
+        entries.put(path, entry);
+        evict();
+        save();
+    }
+
+    // Drops least recently used blobs until the cache fits its limit
+    private void evict() {
+        long total = 0;
+        for (Entry entry : entries.values()) total += entry.size;
+        if (total <= maxBytes) return;
+        List<Map.Entry<String, Entry>> byAge = new ArrayList<>(entries.entrySet());
+        byAge.sort((a, b) -> Long.compare(a.getValue().lastUsed, b.getValue().lastUsed));
+        for (Map.Entry<String, Entry> oldest : byAge) {
+            if (total <= maxBytes) break;
+            new File(root, oldest.getValue().blob).delete();
+            entries.remove(oldest.getKey());
+            total -= oldest.getValue().size;
+        }
+    }
+
+    private void load() {
+        if (loaded) return;
+        loaded = true;
+        if (!indexFile.exists()) return;
+        try {
+            entries.putAll(mapper.readValue(indexFile, new TypeReference<Map<String, Entry>>() {}));
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void save() {
+        if (!root.isDirectory() && !root.mkdirs()) return;
+        File temp = new File(indexFile.getPath() + ".tmp");
+        try {
+            mapper.writeValue(temp, entries);
+            Files.move(temp.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /** A new copy being written; either committed under a path and etag or aborted. */
+    public class Writer {
+        private final File temp;
+        private final OutputStream out;
+
+        private Writer(File temp) throws IOException {
+            this.temp = temp;
+            this.out = Files.newOutputStream(temp.toPath());
+        }
+
+        public OutputStream stream() {
+            return out;
+        }
+
+        public void commit(String path, String etag) throws IOException {
+            out.close();
+            put(path, etag, temp);
+        }
+
+        public void abort() {
+            try {
+                out.close();
+            } catch (IOException ignored) {
+                // Deleted below either way
+            }
+            temp.delete();
+        }
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class Entry {
+        public String etag;
+        public String blob;
+        public long size;
+        public long lastUsed;
+    }
+}
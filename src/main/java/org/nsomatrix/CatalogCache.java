@@ -0,0 +1,114 @@
+package org.nsomatrix;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * The last complete listing of every mod source, kept in ~/.matrix_launcher_catalog_cache.json so a source
+ * that is down or skipped by its circuit breaker can still be browsed.
+ */
+public class CatalogCache {
+    private static final File STORAGE_FILE = new File(System.getProperty("user.home"), ".matrix_launcher_catalog_cache.json");
+    private static final CatalogCache DEFAULT = new CatalogCache(STORAGE_FILE);
+
+    private final File file;
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final Map<String, Listing> listings = new HashMap<>();
+    private boolean loaded;
+
+    public CatalogCache(File file) {
+        this.file = file;
+    }
+
+    public static CatalogCache getDefault() {
+        return DEFAULT;
+    }
+
+    /** Replaces the cached listing of a source after it has been listed in full. */
+    public synchronized void put(String source, List<RemoteMod> mods) {
+        load();
+        Listing listing = new Listing();
+        listing.fetchedAt = System.currentTimeMillis();
+        for (RemoteMod mod : mods) {
+            CachedMod cached = new CachedMod();
+            cached.name = mod.name;
+            cached.url = mod.downloadUrl;
+            cached.size = mod.size;
+            cached.sha1 = mod.getSha1();
+            cached.md5 = mod.getMd5();
+            cached.gitBlobSha = mod.getGitBlobSha();
+            cached.mtime = mod.getLastModified();
+            listing.mods.add(cached);
+        }
+        listings.put(source, listing);
+        save();
+    }
+
+    /**
+     * Feeds the cached listing of a source to {@code sink}. Returns when it was fetched (epoch millis), or
+     * -1 if nothing is cached for the source.
+     */
+    public long replay(String source, Consumer<RemoteMod> sink) {
+        Listing listing;
+        synchronized (this) {
+            load();
+            listing = listings.get(source);
+        }
+        if (listing == null) return -1;
+        for (CachedMod cached : listing.mods) {
+            RemoteMod mod = new RemoteMod(cached.name, cached.url, cached.size, cached.sha1, cached.md5, cached.gitBlobSha);
+            mod.setLastModified(cached.mtime);
+            sink.accept(mod);
+        }
+        return listing.fetchedAt;
+    }
+
+    private void load() {
+        if (loaded) return;
+        loaded = true;
+        if (!file.exists()) return;
+        try {
+            listings.putAll(mapper.readValue(file, new TypeReference<Map<String, Listing>>() {}));
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void save() {
+        File temp = new File(file.getPath() + ".tmp");
+        try {
+            mapper.writeValue(temp, listings);
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class Listing {
+        public long fetchedAt;
+        public List<CachedMod> mods = new ArrayList<>();
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class CachedMod {
+        public String name;
+        public String url;
+        public long size = -1;
+        public String sha1;
+        public String md5;
+        public String gitBlobSha;
+        public long mtime = -1;
+    }
+}
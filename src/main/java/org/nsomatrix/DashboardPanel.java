@@ -4,22 +4,41 @@ import javax.swing.*;
 import javax.swing.border.EmptyBorder;
 import java.awt.*;
 import java.io.File;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
 
 public class DashboardPanel extends JPanel {
+    private static final int MAX_FAILURES_SHOWN = 10;
 
     private String userEmail;
     private SupabaseStorageClient storageClient;
 
     private JLabel userLabel;
-    private DefaultListModel<String> fileListModel = new DefaultListModel<>();
-    private JList<String> fileList;
+    // Sorted by name so a fresh listing can be merged in place
+    private DefaultListModel<StorageObject> fileListModel = new DefaultListModel<>();
+    private JList<StorageObject> fileList;
 
     private JButton uploadButton;
     private JButton downloadButton;
     private JButton deleteButton;
     private JButton refreshButton;
+    private JButton syncSavesButton;
     private JButton logoutButton; // Added logout button
+    private JProgressBar uploadProgress;
+    // Storage calls in flight, touched on the EDT only
+    private final Set<Future<?>> running = new HashSet<>();
+    private SupabaseStorageClient.StorageFuture<List<StorageObject>> listing;
 
     public DashboardPanel() {
         setLayout(new BorderLayout(10, 10));
@@ -29,6 +48,8 @@ public class DashboardPanel extends JPanel {
         add(userLabel, BorderLayout.NORTH);
 
         fileList = new JList<>(fileListModel);
+        fileList.setSelectionMode(ListSelectionModel.MULTIPLE_INTERVAL_SELECTION);
+        fileList.setCellRenderer(new StorageObjectRenderer());
         JScrollPane scrollPane = new JScrollPane(fileList);
         add(scrollPane, BorderLayout.CENTER);
 
@@ -37,18 +58,30 @@ public class DashboardPanel extends JPanel {
         downloadButton = new JButton("Download");
         deleteButton = new JButton("Delete");
         refreshButton = new JButton("Refresh");
+        syncSavesButton = new JButton("Sync Saves");
+        syncSavesButton.setToolTipText("Back up emulator save data and restore saves from other computers");
         logoutButton = new JButton("Logout"); // Initialized logout button
 
         buttonsPanel.add(uploadButton);
         buttonsPanel.add(downloadButton);
         buttonsPanel.add(deleteButton);
         buttonsPanel.add(refreshButton);
+        buttonsPanel.add(syncSavesButton);
         buttonsPanel.add(logoutButton); // Added logout button to panel
 
-        add(buttonsPanel, BorderLayout.SOUTH);
+        // Shown while uploads, downloads or deletes run; large uploads report progress per confirmed chunk
+        uploadProgress = new JProgressBar(0, 1000);
+        uploadProgress.setStringPainted(true);
+        uploadProgress.setVisible(false);
+
+        JPanel southPanel = new JPanel(new BorderLayout());
+        southPanel.add(buttonsPanel, BorderLayout.CENTER);
+        southPanel.add(uploadProgress, BorderLayout.SOUTH);
+        add(southPanel, BorderLayout.SOUTH);
 
         uploadButton.addActionListener(e -> onUpload());
         refreshButton.addActionListener(e -> fetchFileList());
+        syncSavesButton.addActionListener(e -> onSyncSaves());
         downloadButton.addActionListener(e -> onDownload());
         deleteButton.addActionListener(e -> onDelete());
         logoutButton.addActionListener(e -> onLogout()); // Added listener for logout
@@ -73,163 +106,304 @@ public class DashboardPanel extends JPanel {
     public void setStorageClient(SupabaseStorageClient storageClient) {
         this.storageClient = storageClient;
         fetchFileList();
+        resumePendingUploads();
     }
 
     public void clearState() {
         userLabel.setText("Logged out.");
+        for (Future<?> call : new ArrayList<>(running)) call.cancel(true);
+        running.clear();
+        uploadProgress.setVisible(false);
+        uploadButton.setEnabled(true);
+        downloadButton.setEnabled(true);
+        deleteButton.setEnabled(true);
         fileListModel.clear();
         storageClient = null;
     }
 
+    // Follows an async storage call: it is cancelled on logout or when the window closes, and its
+    // outcome is handed to the EDT unless it was cancelled
+    private <T> void track(SupabaseStorageClient.StorageFuture<T> call, BiConsumer<T, Throwable> onDone) {
+        running.add(call);
+        TaskScheduler.getDefault().cancelWith(this, call);
+        call.whenComplete((result, error) -> SwingUtilities.invokeLater(() -> {
+            running.remove(call);
+            if (!call.isCancelled()) onDone.accept(result, error);
+        }));
+    }
+
+    // Hands the latest progress to the EDT, keeping at most one update queued
+    private SupabaseStorageClient.BatchProgress progressOnEdt(String activity) {
+        AtomicReference<long[]> latest = new AtomicReference<>();
+        return (bytesDone, bytesTotal, filesDone, filesTotal) -> {
+            if (latest.getAndSet(new long[]{bytesDone, bytesTotal, filesDone, filesTotal}) == null) {
+                SwingUtilities.invokeLater(() -> showBatchProgress(activity, latest.getAndSet(null)));
+            }
+        };
+    }
+
+    // Shows the cached listing straight away, then merges in the server's listing when it arrives
     private void fetchFileList() {
         if (storageClient == null) return;
 
-        fileListModel.clear();
-
-        SwingWorker<List<String>, Void> worker = new SwingWorker<List<String>, Void>() {
-            @Override
-            protected List<String> doInBackground() throws Exception {
-                return storageClient.listFiles();
+        if (fileListModel.isEmpty()) {
+            List<StorageObject> cached = storageClient.cachedObjects();
+            if (cached != null) applyListing(cached);
+        }
+        boolean streamPages = fileListModel.isEmpty();
+
+        // A newer listing supersedes one still running
+        if (listing != null) listing.cancel(true);
+        listing = storageClient.listAllObjectsAsync(streamPages
+                ? object -> SwingUtilities.invokeLater(() -> fileListModel.addElement(object)) : null);
+        track(listing, (objects, error) -> {
+            if (error == null) {
+                applyListing(objects);
+            } else {
+                error.printStackTrace();
+                JOptionPane.showMessageDialog(DashboardPanel.this,
+                        "Failed to fetch file list:\n" + error.getMessage(),
+                        "Error",
+                        JOptionPane.ERROR_MESSAGE);
             }
+        });
+    }
 
-            @Override
-            protected void done() {
-                try {
-                    List<String> files = get();
-                    fileListModel.clear();
-                    if (files.isEmpty()) {
-                        fileListModel.addElement("<no files>");
-                    } else {
-                        files.forEach(fileListModel::addElement);
-                    }
-                } catch (Exception e) {
-                    e.printStackTrace();
-                    JOptionPane.showMessageDialog(DashboardPanel.this,
-                            "Failed to fetch file list:\n" + e.getMessage(),
-                            "Error",
-                            JOptionPane.ERROR_MESSAGE);
-                }
+    // Merges a listing into the model, touching only rows that changed so selection and scroll survive
+    private void applyListing(List<StorageObject> listing) {
+        List<StorageObject> fresh = new ArrayList<>(listing);
+        fresh.sort((a, b) -> a.name.compareTo(b.name));
+        int i = 0;
+        for (StorageObject object : fresh) {
+            while (i < fileListModel.size() && fileListModel.get(i).name.compareTo(object.name) < 0) {
+                fileListModel.remove(i);
             }
-        };
-        worker.execute();
+            if (i < fileListModel.size() && fileListModel.get(i).name.equals(object.name)) {
+                if (!fileListModel.get(i).sameAs(object)) fileListModel.set(i, object);
+            } else {
+                fileListModel.add(i, object);
+            }
+            i++;
+        }
+        if (i < fileListModel.size()) fileListModel.removeRange(i, fileListModel.size() - 1);
     }
 
     private void onUpload() {
         if (storageClient == null) return;
 
         JFileChooser chooser = new JFileChooser();
+        chooser.setMultiSelectionEnabled(true);
         int result = chooser.showOpenDialog(this);
         if (result == JFileChooser.APPROVE_OPTION) {
-            File selectedFile = chooser.getSelectedFile();
+            List<File> files = Arrays.asList(chooser.getSelectedFiles());
+            if (files.isEmpty()) return;
+            Map<String, File> uploads = new LinkedHashMap<>();
+            for (File file : files) uploads.put(file.getName(), file);
+            runBatch("Uploading", "Uploaded", uploadButton,
+                    progress -> storageClient.uploadFilesAsync(uploads, progress),
+                    "\nLarge uploads continue where they stopped when you upload the file again.");
+        }
+    }
+
+    private interface BatchCall {
+        SupabaseStorageClient.StorageFuture<SupabaseStorageClient.BatchResult> start(SupabaseStorageClient.BatchProgress progress);
+    }
 
-            SwingWorker<Void, Void> worker = new SwingWorker<Void, Void>() {
-                @Override
-                protected Void doInBackground() throws Exception {
-                    storageClient.uploadFile(selectedFile);
-                    return null;
+    // Runs a batch operation with the progress bar, then reports every file's outcome in one dialog
+    private void runBatch(String activity, String verb, JButton button, BatchCall call, String failureHint) {
+        button.setEnabled(false);
+        track(call.start(progressOnEdt(activity)), (result, error) -> {
+            uploadProgress.setVisible(false);
+            button.setEnabled(true);
+            if (error != null) {
+                error.printStackTrace();
+                JOptionPane.showMessageDialog(DashboardPanel.this,
+                        activity + " failed:\n" + error.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+            // The client has already applied the changes to its cached listing
+            List<StorageObject> cached = storageClient.cachedObjects();
+            if (cached != null) applyListing(cached);
+            fetchFileList();
+            Map<String, String> failed = result.getFailed();
+            if (failed.isEmpty()) {
+                JOptionPane.showMessageDialog(DashboardPanel.this,
+                        result.summary(verb), "Success", JOptionPane.INFORMATION_MESSAGE);
+            } else {
+                StringBuilder message = new StringBuilder(result.summary(verb)).append("\n\nFailed:");
+                int shown = 0;
+                for (Map.Entry<String, String> entry : failed.entrySet()) {
+                    if (shown++ == MAX_FAILURES_SHOWN) {
+                        message.append("\n... and ").append(failed.size() - MAX_FAILURES_SHOWN).append(" more");
+                        break;
+                    }
+                    message.append("\n").append(entry.getKey()).append(": ").append(entry.getValue());
                 }
+                if (failureHint != null) message.append("\n").append(failureHint);
+                JOptionPane.showMessageDialog(DashboardPanel.this,
+                        message.toString(), "Error", JOptionPane.ERROR_MESSAGE);
+            }
+        });
+    }
+
+    private void showBatchProgress(String activity, long[] progress) {
+        long bytesDone = progress[0];
+        long bytesTotal = progress[1];
+        int filesDone = (int) progress[2];
+        int filesTotal = (int) progress[3];
+        if (bytesTotal > 0) {
+            uploadProgress.setValue((int) (Math.min(bytesDone, bytesTotal) * 1000 / bytesTotal));
+            uploadProgress.setString(activity + " " + filesDone + " of " + filesTotal + " files: "
+                    + DownloadsDialog.formatBytes(bytesDone) + " of " + DownloadsDialog.formatBytes(bytesTotal));
+        } else {
+            uploadProgress.setValue(filesDone * 1000 / Math.max(1, filesTotal));
+            uploadProgress.setString(activity + " " + filesDone + " of " + filesTotal + " files");
+        }
+        uploadProgress.setVisible(true);
+    }
 
-                @Override
-                protected void done() {
-                    try {
-                        get();
+    // Finishes large uploads that a failure or the last session left unfinished
+    private void resumePendingUploads() {
+        SupabaseStorageClient.BatchProgress progress = progressOnEdt("Resuming unfinished upload");
+        track(storageClient.resumePendingUploadsAsync((uploaded, total) -> progress.onProgress(uploaded, total, 0, 1)),
+                (resumed, error) -> {
+                    uploadProgress.setVisible(false);
+                    if (error != null) {
+                        System.err.println("[Dashboard] Could not resume unfinished uploads: " + error.getMessage());
+                    } else if (resumed > 0) {
                         fetchFileList();
-                        JOptionPane.showMessageDialog(DashboardPanel.this,
-                                "Upload completed.", "Success", JOptionPane.INFORMATION_MESSAGE);
-                    } catch (Exception e) {
-                        e.printStackTrace();
-                        String errorMessage = "Upload failed: " + e.getMessage();
-                        if (e.getMessage() != null && e.getMessage().contains("File size exceeds the maximum allowed limit")) {
-                            errorMessage = "Upload failed: File size exceeds the maximum allowed limit of 10MB.";
-                        }
-                        JOptionPane.showMessageDialog(DashboardPanel.this,
-                                errorMessage, "Error", JOptionPane.ERROR_MESSAGE);
                     }
+                });
+    }
+
+    private void onSyncSaves() {
+        if (storageClient == null) return;
+
+        syncSavesButton.setEnabled(false);
+        BackgroundTask<SaveSync.Report, long[]> worker = new BackgroundTask<SaveSync.Report, long[]>(
+                TaskScheduler.Pool.IO, TaskScheduler.Priority.INTERACTIVE, this) {
+            @Override
+            protected SaveSync.Report doInBackground() throws Exception {
+                return SaveSync.getDefault().sync((bytesDone, bytesTotal, filesDone, filesTotal) ->
+                        publish(new long[]{bytesDone, bytesTotal, filesDone, filesTotal}));
+            }
+
+            @Override
+            protected void process(List<long[]> chunks) {
+                showBatchProgress("Syncing saves", chunks.get(chunks.size() - 1));
+            }
+
+            @Override
+            protected void done() {
+                uploadProgress.setVisible(false);
+                syncSavesButton.setEnabled(true);
+                try {
+                    SaveSync.Report report = get();
+                    StringBuilder message = new StringBuilder("Save sync finished: ").append(report).append('.');
+                    if (!report.conflicts.isEmpty()) {
+                        message.append("\n\nChanged here and in the cloud; this computer's copy was kept and the")
+                                .append("\ncloud copy saved under save-conflicts/:");
+                        for (String key : report.conflicts) message.append("\n").append(key);
+                    }
+                    for (Map.Entry<String, String> failure : report.failed.entrySet()) {
+                        message.append("\n").append(failure.getKey()).append(": ").append(failure.getValue());
+                    }
+                    JOptionPane.showMessageDialog(DashboardPanel.this, message.toString(), "Save Sync",
+                            report.failed.isEmpty() ? JOptionPane.INFORMATION_MESSAGE : JOptionPane.WARNING_MESSAGE);
+                } catch (Exception e) {
+                    e.printStackTrace();
+                    JOptionPane.showMessageDialog(DashboardPanel.this,
+                            "Save sync failed:\n" + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
                 }
-            };
-            worker.execute();
-        }
+            }
+        };
+        worker.execute();
     }
 
     private void onDownload() {
         if (storageClient == null) return;
 
-        String selected = fileList.getSelectedValue();
-        if (selected == null || selected.equals("<no files>")) {
-            JOptionPane.showMessageDialog(this,
-                    "Please select a file first.", "Warning", JOptionPane.WARNING_MESSAGE);
-            return;
-        }
+        List<String> selected = selectedFiles();
+        if (selected.isEmpty()) return;
 
         JFileChooser chooser = new JFileChooser();
-        chooser.setSelectedFile(new File(selected));
-        int result = chooser.showSaveDialog(this);
-        if (result == JFileChooser.APPROVE_OPTION) {
+        if (selected.size() == 1) {
+            chooser.setSelectedFile(new File(selected.get(0)));
+            if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) return;
             File saveFile = chooser.getSelectedFile();
-
-            SwingWorker<Void, Void> worker = new SwingWorker<Void, Void>() {
-                @Override
-                protected Void doInBackground() throws Exception {
-                    storageClient.downloadFile(selected, saveFile);
-                    return null;
-                }
-
-                @Override
-                protected void done() {
-                    try {
-                        get();
-                        JOptionPane.showMessageDialog(DashboardPanel.this,
-                                "Download completed.", "Success", JOptionPane.INFORMATION_MESSAGE);
-                    } catch (Exception e) {
-                        e.printStackTrace();
-                        JOptionPane.showMessageDialog(DashboardPanel.this,
-                                "Download failed:\n" + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
-                    }
-                }
-            };
-            worker.execute();
+            runBatch("Downloading", "Downloaded", downloadButton, progress -> storageClient.downloadFilesAsync(
+                    Collections.singletonMap(selected.get(0), saveFile), progress), null);
+            return;
         }
+
+        chooser.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
+        chooser.setDialogTitle("Download " + selected.size() + " files to");
+        if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) return;
+        File directory = chooser.getSelectedFile();
+        runBatch("Downloading", "Downloaded", downloadButton,
+                progress -> storageClient.downloadFilesAsync(selected, directory, progress), null);
     }
 
     private void onDelete() {
         if (storageClient == null) return;
 
-        String selected = fileList.getSelectedValue();
-        if (selected == null || selected.equals("<no files>")) {
-            JOptionPane.showMessageDialog(this,
-                    "Please select a file first.", "Warning", JOptionPane.WARNING_MESSAGE);
-            return;
-        }
+        List<String> selected = selectedFiles();
+        if (selected.isEmpty()) return;
 
+        String what = selected.size() == 1 ? "'" + selected.get(0) + "'" : selected.size() + " files";
         int confirm = JOptionPane.showConfirmDialog(this,
-                "Are you sure you want to delete '" + selected + "'",
+                "Are you sure you want to delete " + what + "?",
                 "Confirm Delete",
                 JOptionPane.YES_NO_OPTION);
 
         if (confirm == JOptionPane.YES_OPTION) {
-            SwingWorker<Void, Void> worker = new SwingWorker<Void, Void>() {
-                @Override
-                protected Void doInBackground() throws Exception {
-                    storageClient.deleteFile(selected);
-                    return null;
-                }
+            runBatch("Deleting", "Deleted", deleteButton,
+                    progress -> storageClient.deleteFilesAsync(selected, progress), null);
+        }
+    }
 
-                @Override
-                protected void done() {
-                    try {
-                        get();
-                        fetchFileList();
-                        JOptionPane.showMessageDialog(DashboardPanel.this,
-                                "Deleted successfully.", "Success", JOptionPane.INFORMATION_MESSAGE);
-                    } catch (Exception e) {
-                        e.printStackTrace();
-                        JOptionPane.showMessageDialog(DashboardPanel.this,
-                                "Delete failed:\n" + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
-                    }
-                }
-            };
-            worker.execute();
+    // The selected file names, or an empty list after telling the user to select something. Folders are
+    // only listing placeholders, not objects, so they are left out and the user is told so
+    private List<String> selectedFiles() {
+        List<String> selected = new ArrayList<>();
+        int folders = 0;
+        for (StorageObject object : fileList.getSelectedValuesList()) {
+            if (object.folder) {
+                folders++;
+            } else {
+                selected.add(object.name);
+            }
+        }
+        if (selected.isEmpty()) {
+            JOptionPane.showMessageDialog(this, folders > 0
+                            ? "Folders cannot be downloaded or deleted here. Please select a file."
+                            : "Please select a file first.",
+                    "Warning", JOptionPane.WARNING_MESSAGE);
+        } else if (folders > 0) {
+            JOptionPane.showMessageDialog(this, "Skipping " + folders + (folders == 1 ? " folder" : " folders")
+                    + " in the selection; only files are downloaded or deleted.", "Folders Skipped",
+                    JOptionPane.INFORMATION_MESSAGE);
         }
+        return selected;
     }
 
+    private static class StorageObjectRenderer extends DefaultListCellRenderer {
+        private final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm");
+
+        @Override
+        public Component getListCellRendererComponent(JList<?> list, Object value, int index,
+                                                      boolean isSelected, boolean cellHasFocus) {
+            super.getListCellRendererComponent(list, value, index, isSelected, cellHasFocus);
+            StorageObject object = (StorageObject) value;
+            StringBuilder text = new StringBuilder(object.name);
+            if (object.folder) {
+                text.append('/');
+                if (!isSelected) setForeground(UIManager.getColor("Label.disabledForeground"));
+            }
+            if (object.size >= 0) text.append("    ").append(DownloadsDialog.formatBytes(object.size));
+            if (object.updatedAt > 0) text.append("    ").append(dateFormat.format(new Date(object.updatedAt)));
+            setText(text.toString());
+            return this;
+        }
+    }
 }
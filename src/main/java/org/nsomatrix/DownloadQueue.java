@@ -0,0 +1,304 @@
+package org.nsomatrix;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Mod downloads waiting, running and finished, persisted to disk so a batch interrupted by closing the
+ * launcher carries on at the next start. Each running item records the mirror it is reading from, the
+ * bytes already in its .part file and the server's validator, so it resumes with a ranged request
+ * instead of starting over. Finished items stay in the list as download history.
+ *
+ * Waiting items start in priority order, so a single interactive download does not wait behind a bulk
+ * sync, and their transfers are paced by the {@link BandwidthLimiter} at the same priority.
+ */
+public class DownloadQueue {
+    private static final File STORAGE_FILE = new File(System.getProperty("user.home"), ".matrix_launcher_downloads.json");
+    private static final int MAX_CONCURRENT_DOWNLOADS = 2;
+    private static final long SAVE_INTERVAL_MS = 1000;
+    private static final int MAX_HISTORY = 200;
+
+    public enum Status { QUEUED, DOWNLOADING, COMPLETED, SKIPPED, FAILED }
+
+    public interface Listener {
+        /** Called from download threads whenever an item changes. */
+        void onQueueChanged();
+    }
+
+    private final ModDownloader downloader;
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final List<Item> items = new ArrayList<>();
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final TaskScheduler.Limiter workers = TaskScheduler.getDefault()
+            .limited(TaskScheduler.Pool.IO, TaskScheduler.Priority.NORMAL, MAX_CONCURRENT_DOWNLOADS);
+    private long lastSavedAt;
+
+    public DownloadQueue(ModDownloader downloader) {
+        this.downloader = downloader;
+        load();
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /** Counts of items per status, for a one-line summary. */
+    public synchronized Map<Status, Integer> getStatusCounts() {
+        Map<Status, Integer> counts = new java.util.EnumMap<>(Status.class);
+        for (Item item : items) counts.merge(item.status, 1, Integer::sum);
+        return counts;
+    }
+
+    /** Restarts whatever was queued or running when the launcher last exited. */
+    public void resumePending() {
+        List<Item> pending = new ArrayList<>();
+        synchronized (this) {
+            for (Item item : items) {
+                if (item.status == Status.QUEUED || item.status == Status.DOWNLOADING) {
+                    item.status = Status.QUEUED;
+                    pending.add(item);
+                }
+            }
+        }
+        if (!pending.isEmpty()) {
+            System.out.println("[DownloadQueue] Resuming " + pending.size() + " download(s)");
+        }
+        for (Item item : pending) {
+            schedule(item);
+        }
+    }
+
+    public boolean enqueue(RemoteMod mod, Path target) {
+        return enqueue(mod, target, BandwidthLimiter.Priority.NORMAL);
+    }
+
+    /** Queues the mod unless the same target is already waiting or downloading. Returns whether it was added. */
+    public boolean enqueue(RemoteMod mod, Path target, BandwidthLimiter.Priority priority) {
+        Item item;
+        synchronized (this) {
+            String targetPath = target.toAbsolutePath().toString();
+            for (Item existing : items) {
+                if (existing.target.equals(targetPath)
+                        && (existing.status == Status.QUEUED || existing.status == Status.DOWNLOADING)) {
+                    return false;
+                }
+            }
+            item = Item.of(mod, targetPath, priority);
+            items.add(item);
+            trimHistory();
+            save(true);
+        }
+        fireChanged();
+        schedule(item);
+        return true;
+    }
+
+    private void schedule(Item item) {
+        workers.submit(TaskScheduler.Priority.valueOf(item.priority.name()), () -> run(item));
+    }
+
+    public synchronized List<Item> getItems() {
+        List<Item> snapshot = new ArrayList<>();
+        for (Item item : items) snapshot.add(item.copy());
+        return snapshot;
+    }
+
+    public void clearHistory() {
+        synchronized (this) {
+            items.removeIf(item -> item.status != Status.QUEUED && item.status != Status.DOWNLOADING);
+            save(true);
+        }
+        fireChanged();
+    }
+
+    private void run(Item item) {
+        Path target = Paths.get(item.target);
+        RemoteMod mod = item.toRemoteMod();
+        synchronized (this) {
+            item.status = Status.DOWNLOADING;
+            item.startedAt = System.currentTimeMillis();
+            item.error = null;
+        }
+        fireChanged();
+
+        long sessionStart = System.currentTimeMillis();
+        long sessionStartBytes = item.bytesDone;
+        try {
+            if (Files.exists(target) && ModIntegrity.matchesCatalog(mod, target)) {
+                finish(item, Status.SKIPPED, null, 0);
+                return;
+            }
+            Files.createDirectories(target.getParent());
+            boolean hasPartial = Files.exists(ModDownloader.partialFileFor(target));
+            long transferred = downloader.download(mod, target,
+                    hasPartial ? item.resumeUrl : null, hasPartial ? item.validator : null, item.priority,
+                    (url, validator, bytesDone) -> progress(item, url, validator, bytesDone));
+            finish(item, Status.COMPLETED, null, transferred * 1000 / Math.max(1, System.currentTimeMillis() - sessionStart));
+        } catch (Exception e) {
+            e.printStackTrace();
+            long transferred = Math.max(0, item.bytesDone - sessionStartBytes);
+            finish(item, Status.FAILED, e.getMessage(), transferred * 1000 / Math.max(1, System.currentTimeMillis() - sessionStart));
+        }
+    }
+
+    private void progress(Item item, String url, String validator, long bytesDone) {
+        boolean saveNow;
+        synchronized (this) {
+            item.resumeUrl = url;
+            item.validator = validator;
+            item.bytesDone = bytesDone;
+            saveNow = System.currentTimeMillis() - lastSavedAt >= SAVE_INTERVAL_MS;
+            if (saveNow) save(false);
+        }
+        if (saveNow) fireChanged();
+    }
+
+    private void finish(Item item, Status status, String error, long bytesPerSecond) {
+        synchronized (this) {
+            item.status = status;
+            item.error = error;
+            item.finishedAt = System.currentTimeMillis();
+            item.bytesPerSecond = bytesPerSecond;
+            if (status == Status.COMPLETED) {
+                item.resumeUrl = null;
+                item.validator = null;
+            }
+            save(true);
+        }
+        fireChanged();
+    }
+
+    private void fireChanged() {
+        for (Listener listener : listeners) {
+            listener.onQueueChanged();
+        }
+    }
+
+    // Drops the oldest finished entries once the history grows past its cap
+    private void trimHistory() {
+        int finished = 0;
+        for (Item item : items) {
+            if (item.status != Status.QUEUED && item.status != Status.DOWNLOADING) finished++;
+        }
+        for (int i = 0; i < items.size() && finished > MAX_HISTORY; ) {
+            Status status = items.get(i).status;
+            if (status != Status.QUEUED && status != Status.DOWNLOADING) {
+                items.remove(i);
+                finished--;
+            } else {
+                i++;
+            }
+        }
+    }
+
+    private synchronized void load() {
+        if (!STORAGE_FILE.exists()) return;
+        try {
+            items.addAll(mapper.readValue(STORAGE_FILE, new TypeReference<List<Item>>() {}));
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // Caller holds the lock; written to a temp file first so a crash mid-save cannot lose the queue
+    private void save(boolean force) {
+        long now = System.currentTimeMillis();
+        if (!force && now - lastSavedAt < SAVE_INTERVAL_MS) return;
+        lastSavedAt = now;
+        File temp = new File(STORAGE_FILE.getPath() + ".tmp");
+        try {
+            mapper.writeValue(temp, items);
+            Files.move(temp.toPath(), STORAGE_FILE.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class Item {
+        public String id;
+        public String name;
+        public String target;
+        public Map<String, String> mirrors = new LinkedHashMap<>();
+        public long size = -1;
+        public String sha1;
+        public String md5;
+        public String gitBlobSha;
+        public Status status = Status.QUEUED;
+        public BandwidthLimiter.Priority priority = BandwidthLimiter.Priority.NORMAL;
+        public long bytesDone;
+        public String resumeUrl;
+        public String validator;
+        public long addedAt;
+        public long startedAt;
+        public long finishedAt;
+        public long bytesPerSecond;
+        public String error;
+
+        static Item of(RemoteMod mod, String target, BandwidthLimiter.Priority priority) {
+            Item item = new Item();
+            item.id = UUID.randomUUID().toString();
+            item.name = mod.name;
+            item.target = target;
+            item.mirrors.putAll(mod.getMirrors());
+            if (item.mirrors.isEmpty()) item.mirrors.put("direct", mod.downloadUrl);
+            item.size = mod.size;
+            item.sha1 = mod.getSha1();
+            item.md5 = mod.getMd5();
+            item.gitBlobSha = mod.getGitBlobSha();
+            item.priority = priority;
+            item.addedAt = System.currentTimeMillis();
+            return item;
+        }
+
+        RemoteMod toRemoteMod() {
+            String primary = mirrors.values().iterator().next();
+            RemoteMod mod = new RemoteMod(name, primary, size, sha1, md5, gitBlobSha);
+            for (Map.Entry<String, String> mirror : mirrors.entrySet()) {
+                mod.addMirror(mirror.getKey(), mirror.getValue());
+            }
+            return mod;
+        }
+
+        Item copy() {
+            Item copy = new Item();
+            copy.id = id;
+            copy.name = name;
+            copy.target = target;
+            copy.mirrors = new LinkedHashMap<>(mirrors);
+            copy.size = size;
+            copy.sha1 = sha1;
+            copy.md5 = md5;
+            copy.gitBlobSha = gitBlobSha;
+            copy.status = status;
+            copy.priority = priority;
+            copy.bytesDone = bytesDone;
+            copy.resumeUrl = resumeUrl;
+            copy.validator = validator;
+            copy.addedAt = addedAt;
+            copy.startedAt = startedAt;
+            copy.finishedAt = finishedAt;
+            copy.bytesPerSecond = bytesPerSecond;
+            copy.error = error;
+            return copy;
+        }
+    }
+}
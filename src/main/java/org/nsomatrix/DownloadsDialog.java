@@ -0,0 +1,123 @@
+package org.nsomatrix;
+
+import javax.swing.*;
+import javax.swing.border.EmptyBorder;
+import javax.swing.table.AbstractTableModel;
+import java.awt.*;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Shows the download queue: running and waiting items first, then the history of finished ones with
+ * the throughput each achieved.
+ */
+public class DownloadsDialog extends JDialog {
+    private final DownloadQueue queue;
+    private final DownloadsTableModel tableModel = new DownloadsTableModel();
+    private final DownloadQueue.Listener listener = () -> SwingUtilities.invokeLater(this::refresh);
+
+    public DownloadsDialog(Window owner, DownloadQueue queue) {
+        super(owner, "Downloads", ModalityType.MODELESS);
+        this.queue = queue;
+
+        JPanel content = new JPanel(new BorderLayout(10, 10));
+        content.setBorder(new EmptyBorder(10, 10, 10, 10));
+
+        JTable table = new JTable(tableModel);
+        table.setFillsViewportHeight(true);
+        table.getColumnModel().getColumn(0).setPreferredWidth(220);
+        content.add(new JScrollPane(table), BorderLayout.CENTER);
+
+        JPanel buttonsPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        JButton clearBtn = new JButton("Clear History");
+        clearBtn.addActionListener(e -> queue.clearHistory());
+        JButton closeBtn = new JButton("Close");
+        closeBtn.addActionListener(e -> dispose());
+        buttonsPanel.add(clearBtn);
+        buttonsPanel.add(closeBtn);
+        content.add(buttonsPanel, BorderLayout.SOUTH);
+
+        setContentPane(content);
+        setSize(720, 400);
+        setLocationRelativeTo(owner);
+
+        queue.addListener(listener);
+        refresh();
+    }
+
+    @Override
+    public void dispose() {
+        queue.removeListener(listener);
+        super.dispose();
+    }
+
+    private void refresh() {
+        List<DownloadQueue.Item> active = new ArrayList<>();
+        List<DownloadQueue.Item> finished = new ArrayList<>();
+        for (DownloadQueue.Item item : queue.getItems()) {
+            if (item.status == DownloadQueue.Status.QUEUED || item.status == DownloadQueue.Status.DOWNLOADING) {
+                active.add(item);
+            } else {
+                finished.add(item);
+            }
+        }
+        Collections.reverse(finished); // most recent first
+        active.addAll(finished);
+        tableModel.setItems(active);
+    }
+
+    static String formatBytes(long bytes) {
+        if (bytes < 0) return "?";
+        if (bytes < 1024) return bytes + " B";
+        if (bytes < 1024 * 1024) return String.format("%.1f KB", bytes / 1024.0);
+        return String.format("%.1f MB", bytes / (1024.0 * 1024.0));
+    }
+
+    private static class DownloadsTableModel extends AbstractTableModel {
+        private static final String[] COLUMNS = {"Mod", "Status", "Progress", "Throughput", "Finished"};
+        private final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm");
+        private List<DownloadQueue.Item> items = new ArrayList<>();
+
+        void setItems(List<DownloadQueue.Item> items) {
+            this.items = items;
+            fireTableDataChanged();
+        }
+
+        @Override
+        public int getRowCount() {
+            return items.size();
+        }
+
+        @Override
+        public int getColumnCount() {
+            return COLUMNS.length;
+        }
+
+        @Override
+        public String getColumnName(int column) {
+            return COLUMNS[column];
+        }
+
+        @Override
+        public Object getValueAt(int row, int column) {
+            DownloadQueue.Item item = items.get(row);
+            switch (column) {
+                case 0:
+                    return item.name;
+                case 1:
+                    return item.error != null ? item.status + ": " + item.error : item.status.toString();
+                case 2:
+                    return formatBytes(item.bytesDone) + " / " + formatBytes(item.size);
+                case 3:
+                    return item.bytesPerSecond > 0 ? formatBytes(item.bytesPerSecond) + "/s" : "";
+                case 4:
+                    return item.finishedAt > 0 ? dateFormat.format(new Date(item.finishedAt)) : "";
+                default:
+                    return "";
+            }
+        }
+    }
+}
@@ -16,11 +16,14 @@ import java.awt.event.MouseEvent;
 import java.io.*;
 import java.nio.charset.StandardCharsets;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 
 public class EmuRunPanel extends JPanel {
     private static final File STORAGE_FILE = new File(System.getProperty("user.home"), ".matrix_launcher_games.txt");
+    private final TaskScheduler.Limiter saveExecutor =
+            TaskScheduler.getDefault().limited(TaskScheduler.Pool.IO, TaskScheduler.Priority.NORMAL, 1);
 
     private final UI appUI;
     private final DefaultListModel<GameEntry> gamesListModel = new DefaultListModel<>();
@@ -284,26 +287,9 @@ public class EmuRunPanel extends JPanel {
         if (selectedEntry != null) {
             final String emulator = appUI.getSelectedEmulator();
 
-            // Disable launch button to prevent multiple click launches
-            launchBtn.setEnabled(false);
-            removeBtn.setEnabled(false);
-
-            // Launch in a background SwingWorker to avoid blocking EDT
-            SwingWorker<Void, Void> launcherWorker = new SwingWorker<Void, Void>() {
-                @Override
-                protected Void doInBackground() throws Exception {
-                    EmulatorLauncher.launch(emulator, selectedEntry.getFile());
-                    return null;
-                }
-
-                @Override
-                protected void done() {
-                    launchBtn.setEnabled(true);
-                    removeBtn.setEnabled(true);
-                    setMessage("Launching: " + selectedEntry.getFile().getName());
-                }
-            };
-            launcherWorker.execute();
+            // Only queues the launch; the emulator runs and is waited on in the scheduler's process pool
+            EmulatorLauncher.launch(emulator, selectedEntry.getFile());
+            setMessage("Launching: " + selectedEntry.getFile().getName());
 
             selectedEntry.setLastPlayedTimestamp(System.currentTimeMillis());
             saveGamesToStorage();
@@ -337,15 +323,17 @@ public class EmuRunPanel extends JPanel {
         return false;
     }
 
-    // Save game list info to disk asynchronously (simple async task)
+    // Save game list info to disk asynchronously; saves run one at a time so the newest list is written last
     private void saveGamesToStorage() {
-        // Run save in separate thread to avoid blocking EDT
-        new Thread(new Runnable() {
+        final List<GameEntry> entries = new ArrayList<>();
+        for (int i = 0; i < gamesListModel.size(); i++) {
+            entries.add(gamesListModel.get(i));
+        }
+        saveExecutor.submit(new Runnable() {
             @Override
             public void run() {
                 try (PrintWriter pw = new PrintWriter(new OutputStreamWriter(new FileOutputStream(STORAGE_FILE), StandardCharsets.UTF_8))) {
-                    for (int i = 0; i < gamesListModel.size(); i++) {
-                        GameEntry entry = gamesListModel.get(i);
+                    for (GameEntry entry : entries) {
                         try {
                             String path = entry.getFile().getCanonicalPath();
                             pw.println(path + "|" + entry.getLastPlayedTimestamp());
@@ -364,7 +352,7 @@ public class EmuRunPanel extends JPanel {
                     });
                 }
             }
-        }).start();
+        });
     }
 
     private void loadGamesFromStorage() {
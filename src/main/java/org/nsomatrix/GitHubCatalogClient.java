@@ -0,0 +1,284 @@
+package org.nsomatrix;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.prefs.Preferences;
+
+/**
+ * Lists the mod catalog from GitHub with the git trees API: one recursive call returns every file
+ * under the repository, with sizes, instead of one contents call per directory (which also stops at
+ * 1000 entries). When GitHub truncates the recursive tree, the mods directory is walked one tree at
+ * a time. Files are downloaded from the raw CDN, which does not count against the API rate limit.
+ *
+ * The client reads the X-RateLimit headers of every response and spaces out or postpones requests
+ * before the limit is hit. A personal access token in the "github_token" preference raises the limit.
+ */
+public class GitHubCatalogClient implements ModSource {
+    private static final String API_BASE = System.getProperty("nsomatrix.github.api", "https://api.github.com");
+    private static final String RAW_BASE = System.getProperty("nsomatrix.github.raw", "https://raw.githubusercontent.com");
+    // Requests kept in hand for other GitHub calls; below this we wait for the window to reset
+    private static final int RATE_LIMIT_RESERVE = 3;
+    // Start spacing requests out once fewer than this share of the window is left
+    private static final double THROTTLE_THRESHOLD = 0.2;
+    private static final long MAX_RATE_LIMIT_WAIT_MS = 60000;
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    // Rate limits apply per client IP or token, so the view of them is shared between instances
+    private static final Object RATE_LOCK = new Object();
+    private static int rateLimit = -1;
+    private static int rateRemaining = -1;
+    private static long rateResetAtMs;
+    private static long lastRequestAtMs;
+
+    private final String owner;
+    private final String repo;
+    private final String directory;
+    private final Preferences prefs = Preferences.userNodeForPackage(UI.class);
+    private String branch;
+
+    public GitHubCatalogClient(String owner, String repo, String directory) {
+        this.owner = owner;
+        this.repo = repo;
+        this.directory = directory.endsWith("/") ? directory.substring(0, directory.length() - 1) : directory;
+    }
+
+    @Override
+    public String getName() {
+        return "GitHub";
+    }
+
+    @Override
+    public void list(Consumer<RemoteMod> sink) throws IOException, InterruptedException {
+        fetchCatalog(sink);
+    }
+
+    /** Emits every .jar below the catalog directory. */
+    public void fetchCatalog(Consumer<RemoteMod> sink) throws IOException, InterruptedException {
+        String ref = getDefaultBranch();
+        Set<String> seen = new HashSet<>();
+        boolean truncated = readTree(ref, "", true, seen, sink, null);
+        if (truncated) {
+            System.out.println("[GitHubCatalog] Recursive tree truncated, walking " + directory + " directory by directory");
+            String sha = ref;
+            String prefix = "";
+            for (String segment : directory.split("/")) {
+                sha = findSubtree(sha, prefix, segment);
+                if (sha == null) return;
+                prefix = prefix + segment + "/";
+            }
+            walk(sha, prefix, seen, sink);
+        }
+    }
+
+    public String rawUrl(String ref, String path) {
+        StringBuilder url = new StringBuilder(RAW_BASE).append('/').append(owner).append('/').append(repo)
+                .append('/').append(ref);
+        for (String segment : path.split("/")) {
+            url.append('/').append(encodeSegment(segment));
+        }
+        return url.toString();
+    }
+
+    private String getDefaultBranch() throws IOException, InterruptedException {
+        if (branch != null) return branch;
+        try (HttpTransport.Response response = openApi("/repos/" + owner + "/" + repo);
+             JsonParser parser = JSON_FACTORY.createParser(response.getBody())) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) throw new IOException("Unexpected repository response");
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                parser.nextToken();
+                if ("default_branch".equals(field)) {
+                    branch = parser.getValueAsString();
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+        if (branch == null) throw new IOException("Repository " + owner + "/" + repo + " has no default branch");
+        return branch;
+    }
+
+    // Lists one tree non-recursively, recursing into subdirectories, for catalogs too big for a single call
+    private void walk(String sha, String prefix, Set<String> seen, Consumer<RemoteMod> sink)
+            throws IOException, InterruptedException {
+        List<String[]> subtrees = new ArrayList<>();
+        readTree(sha, prefix, false, seen, sink, subtrees);
+        for (String[] subtree : subtrees) {
+            walk(subtree[1], prefix + subtree[0] + "/", seen, sink);
+        }
+    }
+
+    private String findSubtree(String sha, String prefix, String name) throws IOException, InterruptedException {
+        List<String[]> subtrees = new ArrayList<>();
+        readTree(sha, prefix, false, new HashSet<>(), null, subtrees);
+        for (String[] subtree : subtrees) {
+            if (subtree[0].equals(name)) return subtree[1];
+        }
+        return null;
+    }
+
+    /**
+     * Streams one git tree. Blobs under the catalog directory go to {@code sink}; when {@code subtrees} is
+     * given, child trees are collected as {name, sha}. Returns whether GitHub truncated the listing.
+     */
+    private boolean readTree(String sha, String prefix, boolean recursive, Set<String> seen,
+                             Consumer<RemoteMod> sink, List<String[]> subtrees) throws IOException, InterruptedException {
+        String path = "/repos/" + owner + "/" + repo + "/git/trees/" + encodeSegment(sha) + (recursive ? "?recursive=1" : "");
+        boolean truncated = false;
+        try (HttpTransport.Response response = openApi(path);
+             JsonParser parser = JSON_FACTORY.createParser(response.getBody())) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) throw new IOException("Unexpected tree response");
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken value = parser.nextToken();
+                if ("truncated".equals(field)) {
+                    truncated = value == JsonToken.VALUE_TRUE;
+                } else if ("tree".equals(field) && value == JsonToken.START_ARRAY) {
+                    while (parser.nextToken() == JsonToken.START_OBJECT) {
+                        readEntry(parser, prefix, seen, sink, subtrees);
+                    }
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+        return truncated;
+    }
+
+    private void readEntry(JsonParser parser, String prefix, Set<String> seen,
+                           Consumer<RemoteMod> sink, List<String[]> subtrees) throws IOException {
+        String entryPath = null;
+        String type = null;
+        String sha = null;
+        long size = -1;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            switch (field) {
+                case "path": entryPath = parser.getValueAsString(); break;
+                case "type": type = parser.getValueAsString(); break;
+                case "sha": sha = parser.getValueAsString(); break;
+                case "size": size = parser.getValueAsLong(-1); break;
+                default: parser.skipChildren();
+            }
+        }
+        if (entryPath == null) return;
+        if ("tree".equals(type)) {
+            if (subtrees != null) subtrees.add(new String[]{entryPath, sha});
+            return;
+        }
+        String fullPath = prefix + entryPath;
+        if (sink == null || !"blob".equals(type) || !fullPath.startsWith(directory + "/")
+                || !fullPath.toLowerCase().endsWith(".jar") || !seen.add(fullPath)) {
+            return;
+        }
+        String name = fullPath.substring(fullPath.lastIndexOf('/') + 1);
+        sink.accept(new RemoteMod(name, rawUrl(branch, fullPath), size, null, null, sha));
+    }
+
+    private HttpTransport.Response openApi(String path) throws IOException, InterruptedException {
+        for (int attempt = 0; ; attempt++) {
+            awaitRateLimit();
+            HttpTransport.Request request = HttpTransport.getDefault().get(API_BASE + path)
+                    .header("Accept", "application/vnd.github+json")
+                    .header("X-GitHub-Api-Version", "2022-11-28");
+            String token = prefs.get("github_token", "").trim();
+            if (!token.isEmpty()) {
+                request.header("Authorization", "Bearer " + token);
+            }
+
+            HttpTransport.Response response = request.execute();
+            int status = response.getStatus();
+            updateRateLimit(response);
+            if (status == 200) return response;
+
+            boolean limited = status == 429 || (status == 403 && rateRemainingNow() == 0);
+            long waitMs = retryAfterMs(response);
+            response.close();
+            if (limited && attempt == 0) {
+                if (waitMs <= MAX_RATE_LIMIT_WAIT_MS) {
+                    System.out.println("[GitHubCatalog] Rate limited, retrying in " + waitMs + " ms");
+                    Thread.sleep(waitMs);
+                    continue;
+                }
+            }
+            if (limited) {
+                throw new IOException("GitHub API rate limit exhausted until " + new java.util.Date(rateResetAtMs)
+                        + (token.isEmpty() ? "; set a GitHub token in Settings to raise the limit" : ""));
+            }
+            throw new IOException("GitHub API returned HTTP " + status + " for " + path);
+        }
+    }
+
+    // Blocks until the next request fits within the rate limit, spreading requests out when it runs low
+    private static void awaitRateLimit() throws IOException, InterruptedException {
+        long waitMs;
+        synchronized (RATE_LOCK) {
+            long now = System.currentTimeMillis();
+            if (rateRemaining < 0 || now >= rateResetAtMs) {
+                waitMs = 0;
+            } else if (rateRemaining <= RATE_LIMIT_RESERVE) {
+                waitMs = rateResetAtMs - now;
+                if (waitMs > MAX_RATE_LIMIT_WAIT_MS) {
+                    throw new IOException("GitHub API rate limit nearly exhausted until " + new java.util.Date(rateResetAtMs));
+                }
+            } else if (rateLimit > 0 && rateRemaining < rateLimit * THROTTLE_THRESHOLD) {
+                long spacing = (rateResetAtMs - now) / (rateRemaining - RATE_LIMIT_RESERVE);
+                waitMs = Math.max(0, lastRequestAtMs + spacing - now);
+            } else {
+                waitMs = 0;
+            }
+            lastRequestAtMs = now + waitMs;
+        }
+        if (waitMs > 0) {
+            Thread.sleep(Math.min(waitMs, MAX_RATE_LIMIT_WAIT_MS));
+        }
+    }
+
+    private static void updateRateLimit(HttpTransport.Response response) {
+        String remaining = response.getHeader("X-RateLimit-Remaining");
+        if (remaining == null) return;
+        synchronized (RATE_LOCK) {
+            try {
+                rateRemaining = Integer.parseInt(remaining.trim());
+                rateLimit = (int) response.getHeaderLong("X-RateLimit-Limit", rateLimit);
+                long reset = response.getHeaderLong("X-RateLimit-Reset", 0);
+                if (reset > 0) rateResetAtMs = reset * 1000;
+            } catch (NumberFormatException ignored) {
+            }
+        }
+    }
+
+    private static int rateRemainingNow() {
+        synchronized (RATE_LOCK) {
+            return rateRemaining;
+        }
+    }
+
+    private static long retryAfterMs(HttpTransport.Response response) {
+        long retryAfter = response.getHeaderLong("Retry-After", -1);
+        if (retryAfter >= 0) return retryAfter * 1000;
+        synchronized (RATE_LOCK) {
+            return Math.max(1000, rateResetAtMs - System.currentTimeMillis());
+        }
+    }
+
+    private static String encodeSegment(String segment) {
+        try {
+            return URLEncoder.encode(segment, "UTF-8").replace("+", "%20");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package org.nsomatrix;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A mirror on the local network, such as a shop's cache server. The catalog is read from
+ * {@code <base>/index.json}; when the server has none, its directory listing (as produced by nginx,
+ * Apache or {@code python -m http.server}) is scanned for links to .jar files instead.
+ */
+public class HttpMirrorSource implements ModSource {
+    private static final Pattern JAR_LINK = Pattern.compile("href=\"([^\"?#]+\\.jar)\"", Pattern.CASE_INSENSITIVE);
+
+    private final URI base;
+
+    public HttpMirrorSource(String baseUrl) {
+        this.base = URI.create(baseUrl.endsWith("/") ? baseUrl : baseUrl + "/");
+    }
+
+    @Override
+    public String getName() {
+        String path = base.getPath();
+        return "Mirror " + base.getAuthority() + (path.length() > 1 ? path.substring(0, path.length() - 1) : "");
+    }
+
+    @Override
+    public void list(Consumer<RemoteMod> sink) throws IOException {
+        try (HttpTransport.Response response = HttpTransport.getDefault().get(base.resolve(ModIndex.FILE_NAME).toString())
+                .header("Accept", "application/json")
+                .execute()) {
+            if (response.getStatus() == 200) {
+                ModIndex.parse(response.getBody(), base, sink);
+                return;
+            }
+            if (response.getStatus() != 404) {
+                throw new IOException("HTTP " + response.getStatus() + " from " + base);
+            }
+        }
+        listDirectory(sink);
+    }
+
+    private void listDirectory(Consumer<RemoteMod> sink) throws IOException {
+        String html;
+        try (HttpTransport.Response response = HttpTransport.getDefault().get(base.toString()).execute()) {
+            response.requireSuccess();
+            html = response.getBodyAsString();
+        }
+        Set<String> seen = new HashSet<>();
+        Matcher matcher = JAR_LINK.matcher(html);
+        while (matcher.find()) {
+            URI url = base.resolve(matcher.group(1));
+            String path = url.getPath();
+            String name = path.substring(path.lastIndexOf('/') + 1);
+            // Skip parent-directory and off-site links
+            if (url.toString().startsWith(base.toString()) && seen.add(url.toString())) {
+                sink.accept(new RemoteMod(name, url.toString()));
+            }
+        }
+    }
+}
@@ -0,0 +1,456 @@
+package org.nsomatrix;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ConnectException;
+import java.net.HttpURLConnection;
+import java.net.NoRouteToHostException;
+import java.net.URL;
+import java.net.UnknownHostException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * The one place network requests are made from. Every request gets the same connect and read
+ * timeouts, asks for gzip and transparently decodes it, and is retried a bounded number of times with
+ * jittered exponential backoff when that is safe. Responses are always drained before being closed
+ * so the JDK can return the socket to its keep-alive pool.
+ *
+ * Per-host counters (requests, failures, retries, bytes, latency) are kept for diagnostics.
+ */
+public class HttpTransport {
+    public static final int DEFAULT_CONNECT_TIMEOUT_MS = 10000;
+    public static final int DEFAULT_READ_TIMEOUT_MS = 30000;
+    private static final int DEFAULT_MAX_ATTEMPTS = 3;
+    private static final long BACKOFF_BASE_MS = 300;
+    private static final long BACKOFF_CAP_MS = 5000;
+    // Left-over response bytes worth reading to keep a connection reusable; larger remainders are dropped
+    private static final int MAX_DRAIN_BYTES = 64 * 1024;
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    static {
+        // The JDK keeps up to http.maxConnections idle sockets per host (default 5); parallel mod
+        // downloads and catalog fetches need a few more
+        if (System.getProperty("http.maxConnections") == null) {
+            System.setProperty("http.maxConnections", "10");
+        }
+    }
+
+    private static final HttpTransport DEFAULT = new HttpTransport();
+
+    private final Map<String, HostMetrics> metrics = new ConcurrentHashMap<>();
+
+    public static HttpTransport getDefault() {
+        return DEFAULT;
+    }
+
+    public Request get(String url) {
+        return new Request(this, "GET", url);
+    }
+
+    public Request request(String method, String url) {
+        return new Request(this, method, url);
+    }
+
+    /** A snapshot of the per-host counters, sorted by host. */
+    public Map<String, HostMetrics> getHostMetrics() {
+        return new TreeMap<>(metrics);
+    }
+
+    private HostMetrics metricsFor(URL url) {
+        return metrics.computeIfAbsent(url.getHost().toLowerCase(), h -> new HostMetrics());
+    }
+
+    public interface BodyWriter {
+        /** Writes the request body; called again for each retry, so it must be repeatable. */
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    public static class Request {
+        private final HttpTransport transport;
+        private final String method;
+        private final String url;
+        private final Map<String, String> headers = new LinkedHashMap<>();
+        private int connectTimeoutMs = DEFAULT_CONNECT_TIMEOUT_MS;
+        private int readTimeoutMs = DEFAULT_READ_TIMEOUT_MS;
+        private int maxAttempts = DEFAULT_MAX_ATTEMPTS;
+        private boolean gzip = true;
+        private Boolean idempotent;
+        private BodyWriter body;
+        private long fixedLength = -1;
+        private boolean chunked;
+
+        private Request(HttpTransport transport, String method, String url) {
+            this.transport = transport;
+            this.method = method;
+            this.url = url;
+        }
+
+        public Request header(String name, String value) {
+            headers.put(name, value);
+            return this;
+        }
+
+        public String getHeader(String name) {
+            return headers.get(name);
+        }
+
+        public Request timeouts(int connectTimeoutMs, int readTimeoutMs) {
+            this.connectTimeoutMs = connectTimeoutMs;
+            this.readTimeoutMs = readTimeoutMs;
+            return this;
+        }
+
+        /** Total attempts including the first; 1 disables retries. */
+        public Request attempts(int maxAttempts) {
+            this.maxAttempts = Math.max(1, maxAttempts);
+            return this;
+        }
+
+        /** Whether to advertise gzip. Turn off for ranged or byte-exact transfers. */
+        public Request gzip(boolean gzip) {
+            this.gzip = gzip;
+            return this;
+        }
+
+        /**
+         * Marks the request as safe to repeat after the server may have seen it. Defaults to true for
+         * GET, HEAD, PUT and DELETE; other methods are only retried when the connection was never made.
+         */
+        public Request idempotent(boolean idempotent) {
+            this.idempotent = idempotent;
+            return this;
+        }
+
+        public Request body(String contentType, BodyWriter body) {
+            header("Content-Type", contentType);
+            this.body = body;
+            return this;
+        }
+
+        public Request body(String contentType, byte[] bytes) {
+            fixedLength = bytes.length;
+            return body(contentType, out -> out.write(bytes));
+        }
+
+        /**
+         * Streams {@code length} bytes of {@code file} from {@code position} as the body. The length is
+         * declared up front, so HttpURLConnection sends straight from the file instead of buffering it.
+         */
+        public Request body(String contentType, Path file, long position, long length) {
+            fixedLength = length;
+            return body(contentType, out -> {
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                    WritableByteChannel target = Channels.newChannel(out);
+                    long sent = 0;
+                    while (sent < length) {
+                        long n = channel.transferTo(position + sent, length - sent, target);
+                        if (n <= 0) throw new IOException("File shrank while being sent: " + file);
+                        sent += n;
+                    }
+                }
+            });
+        }
+
+        public Request jsonBody(String json) {
+            return body("application/json", json.getBytes(StandardCharsets.UTF_8));
+        }
+
+        /** Streams the body with a known length instead of letting HttpURLConnection buffer it. */
+        public Request fixedLength(long length) {
+            this.fixedLength = length;
+            return this;
+        }
+
+        /**
+         * Streams a body of unknown length in chunks instead of letting HttpURLConnection buffer it, e.g.
+         * one compressed on the fly.
+         */
+        public Request chunked() {
+            this.chunked = true;
+            return this;
+        }
+
+        public Response execute() throws IOException {
+            URL target = new URL(url);
+            HostMetrics hostMetrics = transport.metricsFor(target);
+            boolean repeatable = idempotent != null ? idempotent
+                    : method.equals("GET") || method.equals("HEAD") || method.equals("PUT") || method.equals("DELETE");
+
+            for (int attempt = 1; ; attempt++) {
+                long started = System.nanoTime();
+                hostMetrics.requests.incrementAndGet();
+                HttpURLConnection conn = null;
+                try {
+                    conn = open(target);
+                    int status = conn.getResponseCode();
+                    hostMetrics.recordLatency(System.nanoTime() - started);
+                    boolean retryableStatus = status >= 500 || status == 429;
+                    if (retryableStatus) hostMetrics.failures.incrementAndGet();
+                    if (retryableStatus && repeatable && attempt < maxAttempts) {
+                        Response discarded = new Response(conn, hostMetrics);
+                        long wait = backoff(attempt, discarded.getHeaderLong("Retry-After", -1));
+                        discarded.close();
+                        hostMetrics.retries.incrementAndGet();
+                        sleep(wait);
+                        continue;
+                    }
+                    return new Response(conn, hostMetrics);
+                } catch (IOException e) {
+                    hostMetrics.failures.incrementAndGet();
+                    if (conn != null) conn.disconnect();
+                    boolean neverConnected = e instanceof ConnectException || e instanceof UnknownHostException
+                            || e instanceof NoRouteToHostException;
+                    if (attempt >= maxAttempts || !(repeatable || neverConnected) || e instanceof UnknownHostException) {
+                        throw e;
+                    }
+                    hostMetrics.retries.incrementAndGet();
+                    System.err.println("[HttpTransport] " + method + " " + target.getHost() + " failed (" + e.getMessage()
+                            + "), retry " + attempt + "/" + (maxAttempts - 1));
+                    sleep(backoff(attempt, -1));
+                }
+            }
+        }
+
+        private HttpURLConnection open(URL target) throws IOException {
+            HttpURLConnection conn = (HttpURLConnection) target.openConnection();
+            conn.setRequestMethod(method);
+            conn.setConnectTimeout(connectTimeoutMs);
+            conn.setReadTimeout(readTimeoutMs);
+            if (gzip) conn.setRequestProperty("Accept-Encoding", "gzip");
+            for (Map.Entry<String, String> header : headers.entrySet()) {
+                conn.setRequestProperty(header.getKey(), header.getValue());
+            }
+            if (body != null) {
+                conn.setDoOutput(true);
+                if (fixedLength >= 0) {
+                    conn.setFixedLengthStreamingMode(fixedLength);
+                } else if (chunked) {
+                    conn.setChunkedStreamingMode(CHUNK_SIZE);
+                }
+                try (OutputStream out = conn.getOutputStream()) {
+                    body.writeTo(out);
+                }
+            }
+            return conn;
+        }
+
+        private static long backoff(int attempt, long retryAfterSeconds) {
+            if (retryAfterSeconds >= 0) {
+                return Math.min(retryAfterSeconds * 1000, BACKOFF_CAP_MS * 4);
+            }
+            long ceiling = Math.min(BACKOFF_CAP_MS, BACKOFF_BASE_MS << (attempt - 1));
+            return ThreadLocalRandom.current().nextLong(ceiling / 2, ceiling + 1);
+        }
+
+        private static void sleep(long millis) throws IOException {
+            try {
+                Thread.sleep(millis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting to retry", e);
+            }
+        }
+    }
+
+    public static class Response implements Closeable {
+        private final HttpURLConnection conn;
+        private final HostMetrics hostMetrics;
+        private final int status;
+        private InputStream body;
+
+        private Response(HttpURLConnection conn, HostMetrics hostMetrics) throws IOException {
+            this.conn = conn;
+            this.hostMetrics = hostMetrics;
+            this.status = conn.getResponseCode();
+        }
+
+        public int getStatus() {
+            return status;
+        }
+
+        public boolean isSuccess() {
+            return status >= 200 && status < 300;
+        }
+
+        public String getHeader(String name) {
+            return conn.getHeaderField(name);
+        }
+
+        public long getHeaderLong(String name, long defaultValue) {
+            return conn.getHeaderFieldLong(name, defaultValue);
+        }
+
+        /** An HTTP date header as epoch millis, or -1 when missing or unparseable. */
+        public long getHeaderDate(String name) {
+            return conn.getHeaderFieldDate(name, -1);
+        }
+
+        /** Length of the body as sent, or -1; meaningless for gzip-encoded responses. */
+        public long getContentLength() {
+            return conn.getContentLengthLong();
+        }
+
+        /** The (decoded) response body, or the error body for 4xx/5xx responses; never null. */
+        public InputStream getBody() throws IOException {
+            if (body == null) {
+                InputStream raw = isSuccess() || status < 400 ? conn.getInputStream() : conn.getErrorStream();
+                if (raw == null) raw = new java.io.ByteArrayInputStream(new byte[0]);
+                raw = new CountingInputStream(raw, hostMetrics.bytesIn);
+                if ("gzip".equalsIgnoreCase(conn.getContentEncoding())) {
+                    raw = new GZIPInputStream(raw);
+                }
+                body = raw;
+            }
+            return body;
+        }
+
+        public String getBodyAsString() throws IOException {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            InputStream in = getBody();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        }
+
+        /** Throws an IOException carrying the status and error body unless the response is 2xx. */
+        public Response requireSuccess() throws IOException {
+            if (!isSuccess()) {
+                String error;
+                try {
+                    error = getBodyAsString();
+                } catch (IOException e) {
+                    error = "Failed to read error stream";
+                } finally {
+                    close();
+                }
+                throw new HttpStatusException(status, error);
+            }
+            return this;
+        }
+
+        /** Aborts the exchange, closing the socket instead of returning it to the pool. */
+        public void disconnect() {
+            conn.disconnect();
+        }
+
+        /** Drains what is left of a short body so the connection can be reused, then releases it. */
+        @Override
+        public void close() {
+            try {
+                InputStream in = getBody();
+                byte[] buffer = new byte[8192];
+                int drained = 0;
+                int read;
+                while (drained < MAX_DRAIN_BYTES && (read = in.read(buffer)) != -1) {
+                    drained += read;
+                }
+                in.close();
+            } catch (IOException ignored) {
+                // Nothing to reuse; the JDK discards the connection
+            }
+        }
+    }
+
+    public static class HttpStatusException extends IOException {
+        private final int status;
+        private final String body;
+
+        public HttpStatusException(int status, String body) {
+            super("API request failed with status " + status + ". Body: " + body);
+            this.status = status;
+            this.body = body;
+        }
+
+        public int getStatus() {
+            return status;
+        }
+
+        public String getBody() {
+            return body;
+        }
+    }
+
+    public static class HostMetrics {
+        final AtomicLong requests = new AtomicLong();
+        final AtomicLong failures = new AtomicLong();
+        final AtomicLong retries = new AtomicLong();
+        final AtomicLong bytesIn = new AtomicLong();
+        final AtomicLong latencyNanosTotal = new AtomicLong();
+        final AtomicLong latencySamples = new AtomicLong();
+
+        void recordLatency(long nanos) {
+            latencyNanosTotal.addAndGet(nanos);
+            latencySamples.incrementAndGet();
+        }
+
+        public long getRequests() {
+            return requests.get();
+        }
+
+        public long getFailures() {
+            return failures.get();
+        }
+
+        public long getRetries() {
+            return retries.get();
+        }
+
+        public long getBytesIn() {
+            return bytesIn.get();
+        }
+
+        /** Mean time from sending a request to receiving its status line. */
+        public double getAverageLatencyMs() {
+            long samples = latencySamples.get();
+            return samples == 0 ? 0 : latencyNanosTotal.get() / 1e6 / samples;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("requests=%d failures=%d retries=%d bytesIn=%d avgLatency=%.1fms",
+                    getRequests(), getFailures(), getRetries(), getBytesIn(), getAverageLatencyMs());
+        }
+    }
+
+    private static class CountingInputStream extends FilterInputStream {
+        private final AtomicLong counter;
+
+        CountingInputStream(InputStream in, AtomicLong counter) {
+            super(in);
+            this.counter = counter;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) counter.incrementAndGet();
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read > 0) counter.addAndGet(read);
+            return read;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package org.nsomatrix;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.util.function.Consumer;
+
+/**
+ * The "nsomtxmods" Internet Archive item. Its metadata document lists every file with size, date and
+ * digests; it is streamed, skipping everything except the "files" array.
+ */
+public class InternetArchiveSource implements ModSource {
+    private static final String ARCHIVE_BASE = System.getProperty("nsomatrix.archive.url", "https://archive.org");
+    private static final String METADATA_URL = ARCHIVE_BASE + "/metadata/nsomtxmods";
+    private static final String DOWNLOAD_BASE = ARCHIVE_BASE + "/download/nsomtxmods/";
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    @Override
+    public String getName() {
+        return "Internet Archive";
+    }
+
+    @Override
+    public void list(Consumer<RemoteMod> sink) throws IOException {
+        try (HttpTransport.Response response = HttpTransport.getDefault().get(METADATA_URL)
+                .header("Accept", "application/json")
+                .execute()) {
+            if (response.getStatus() != 200) {
+                throw new IOException("HTTP " + response.getStatus());
+            }
+            try (JsonParser parser = JSON_FACTORY.createParser(response.getBody())) {
+                parseMetadata(parser, sink);
+            }
+        }
+    }
+
+    private static void parseMetadata(JsonParser parser, Consumer<RemoteMod> sink) throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            throw new IOException("Unexpected Internet Archive response: expected a JSON object");
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+            if (!"files".equals(field) || value != JsonToken.START_ARRAY) {
+                parser.skipChildren();
+                continue;
+            }
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                String name = null;
+                String sha1 = null;
+                String md5 = null;
+                long size = -1;
+                long mtime = -1;
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String fileField = parser.getCurrentName();
+                    parser.nextToken();
+                    if ("name".equals(fileField)) {
+                        name = parser.getValueAsString();
+                    } else if ("size".equals(fileField)) {
+                        size = parser.getValueAsLong(-1); // archive.org reports sizes as strings
+                    } else if ("sha1".equals(fileField)) {
+                        sha1 = parser.getValueAsString();
+                    } else if ("md5".equals(fileField)) {
+                        md5 = parser.getValueAsString();
+                    } else if ("mtime".equals(fileField)) {
+                        mtime = parser.getValueAsLong(-1); // seconds, also as a string
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+                if (name != null && name.toLowerCase().endsWith(".jar")) {
+                    RemoteMod mod = new RemoteMod(name, DOWNLOAD_BASE + name, size, sha1, md5, null);
+                    if (mtime > 0) mod.setLastModified(mtime * 1000);
+                    sink.accept(mod);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,344 @@
+package org.nsomatrix;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.DatagramPacket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.MulticastSocket;
+import java.net.NetworkInterface;
+import java.net.SocketException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.prefs.Preferences;
+import java.util.regex.Pattern;
+
+/**
+ * Shares the {@link ModStore} with other launchers on the LAN. Each launcher serves its verified objects
+ * over a small HTTP endpoint and announces the digests it holds over multicast; downloads ask peers that
+ * announced the wanted digest before going to the internet. The endpoint also serves an index.json, so
+ * a peer can be added as an {@link HttpMirrorSource}.
+ *
+ * Sharing is opt-in through the "lan_cache_enabled" preference. Several launchers on one host work over
+ * loopback: every instance gets its own HTTP port, and the multicast group, port and interface can be
+ * overridden with the nsomatrix.lan.group, nsomatrix.lan.port and nsomatrix.lan.interface properties.
+ */
+public class LanCache {
+    public static final String PREF_ENABLED = "lan_cache_enabled";
+
+    private static final String GROUP = System.getProperty("nsomatrix.lan.group", "239.255.77.77");
+    private static final int MULTICAST_PORT = Integer.getInteger("nsomatrix.lan.port", 47777);
+    private static final String INTERFACE = System.getProperty("nsomatrix.lan.interface");
+    private static final long ANNOUNCE_INTERVAL_MS = 30000;
+    // A peer that missed this many announcements is forgotten
+    private static final long PEER_EXPIRY_MS = ANNOUNCE_INTERVAL_MS * 3;
+    // Keeps each announcement well inside one UDP datagram
+    private static final int DIGESTS_PER_ANNOUNCEMENT = 150;
+    private static final Pattern DIGEST = Pattern.compile("[0-9a-f]{32,40}");
+
+    private static final LanCache DEFAULT = new LanCache(ModStore.getDefault());
+
+    public static LanCache getDefault() {
+        return DEFAULT;
+    }
+
+    private final ModStore store;
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final String instanceId = UUID.randomUUID().toString();
+    private final Map<String, Peer> peers = new ConcurrentHashMap<>();
+
+    private HttpServer server;
+    private MulticastSocket socket;
+    private InetAddress group;
+    private ScheduledFuture<?> announcements;
+    private Thread receiver;
+
+    public LanCache(ModStore store) {
+        this.store = store;
+        store.addListener(sha1 -> {
+            // Tell peers about a new object right away instead of at the next full announcement
+            if (isRunning()) announce(digestsOf(sha1));
+        });
+    }
+
+    /** Starts or stops sharing to match the preference, now and whenever it changes. */
+    public void followPreference(Preferences prefs) {
+        applyPreference(prefs);
+        prefs.addPreferenceChangeListener(evt -> {
+            if (PREF_ENABLED.equals(evt.getKey())) applyPreference(prefs);
+        });
+    }
+
+    private void applyPreference(Preferences prefs) {
+        if (prefs.getBoolean(PREF_ENABLED, false)) {
+            try {
+                start();
+            } catch (IOException e) {
+                System.err.println("[LanCache] Could not start: " + e.getMessage());
+                stop();
+            }
+        } else {
+            stop();
+        }
+    }
+
+    public synchronized boolean isRunning() {
+        return server != null;
+    }
+
+    public synchronized void start() throws IOException {
+        if (server != null) return;
+
+        server = HttpServer.create(new InetSocketAddress(0), 0);
+        server.createContext("/objects/", this::serveObject);
+        server.createContext("/" + ModIndex.FILE_NAME, this::serveIndex);
+        server.setExecutor(TaskScheduler.getDefault().limited(TaskScheduler.Pool.IO, TaskScheduler.Priority.NORMAL, 2));
+        server.start();
+
+        group = InetAddress.getByName(GROUP);
+        socket = new MulticastSocket(MULTICAST_PORT);
+        if (INTERFACE != null) socket.setNetworkInterface(NetworkInterface.getByName(INTERFACE));
+        socket.setLoopbackMode(false); // false enables loopback, so instances on one host see each other
+        socket.setTimeToLive(1);
+        socket.joinGroup(group);
+
+        receiver = new Thread(this::receiveLoop, "lan-cache-multicast");
+        receiver.setDaemon(true);
+        receiver.start();
+
+        announcements = TaskScheduler.getDefault().scheduleWithFixedDelay(TaskScheduler.Pool.IO,
+                TaskScheduler.Priority.BACKGROUND, this::announceAll, 0, ANNOUNCE_INTERVAL_MS);
+        // Ask launchers that are already running to announce now rather than at their next interval
+        TaskScheduler.getDefault().submit(TaskScheduler.Pool.IO, TaskScheduler.Priority.BACKGROUND,
+                () -> send(new ArrayList<>(), true));
+        System.out.println("[LanCache] Serving on port " + server.getAddress().getPort() + ", announcing to " + GROUP + ":" + MULTICAST_PORT);
+    }
+
+    public synchronized void stop() {
+        if (announcements != null) announcements.cancel(false);
+        if (socket != null) socket.close(); // also ends the receiver thread
+        if (server != null) server.stop(0);
+        announcements = null;
+        socket = null;
+        server = null;
+        receiver = null;
+        peers.clear();
+    }
+
+    /** URLs of peers holding the mod under any of its catalog digests. Empty when sharing is off. */
+    public List<String> findPeers(RemoteMod mod) {
+        List<String> urls = new ArrayList<>();
+        Set<String> peersSeen = new java.util.HashSet<>();
+        for (String digest : new String[]{mod.getSha1(), mod.getMd5(), mod.getGitBlobSha()}) {
+            for (String url : findPeers(digest)) {
+                // One URL per peer, even if it announced several of the mod's digests
+                if (peersSeen.add(url.substring(0, url.indexOf("/objects/")))) urls.add(url);
+            }
+        }
+        return urls;
+    }
+
+    /** Peer URLs that announced the digest, most recently heard from first. Empty when sharing is off. */
+    public List<String> findPeers(String digest) {
+        List<String> urls = new ArrayList<>();
+        if (digest == null || !isRunning()) return urls;
+        long now = System.currentTimeMillis();
+        List<Peer> candidates = new ArrayList<>();
+        for (Iterator<Peer> it = peers.values().iterator(); it.hasNext(); ) {
+            Peer peer = it.next();
+            if (now - peer.lastSeen > PEER_EXPIRY_MS) {
+                it.remove();
+            } else if (peer.digests.contains(digest)) {
+                candidates.add(peer);
+            }
+        }
+        candidates.sort((a, b) -> Long.compare(b.lastSeen, a.lastSeen));
+        for (Peer peer : candidates) {
+            urls.add("http://" + hostForUrl(peer.address) + ":" + peer.port + "/objects/" + digest);
+        }
+        return urls;
+    }
+
+    private void announceAll() {
+        List<String> digests = new ArrayList<>();
+        for (String[] object : store.listDigests()) {
+            for (String digest : object) {
+                if (digest != null) digests.add(digest);
+            }
+        }
+        if (digests.isEmpty()) {
+            announce(digests); // still lets peers know this launcher exists
+            return;
+        }
+        for (int i = 0; i < digests.size(); i += DIGESTS_PER_ANNOUNCEMENT) {
+            announce(digests.subList(i, Math.min(digests.size(), i + DIGESTS_PER_ANNOUNCEMENT)));
+        }
+    }
+
+    private List<String> digestsOf(String sha1) {
+        List<String> digests = new ArrayList<>();
+        digests.add(sha1);
+        ModStore.StoredMod stored = store.describe(sha1);
+        if (stored != null) {
+            if (stored.md5 != null) digests.add(stored.md5);
+            if (stored.gitBlobSha != null) digests.add(stored.gitBlobSha);
+        }
+        return digests;
+    }
+
+    private void announce(List<String> digests) {
+        send(digests, false);
+    }
+
+    private void send(List<String> digests, boolean query) {
+        MulticastSocket current;
+        int httpPort;
+        synchronized (this) {
+            if (socket == null) return;
+            current = socket;
+            httpPort = server.getAddress().getPort();
+        }
+        try {
+            Announcement announcement = new Announcement();
+            announcement.id = instanceId;
+            announcement.port = httpPort;
+            announcement.digests = new ArrayList<>(digests);
+            announcement.query = query;
+            byte[] bytes = mapper.writeValueAsBytes(announcement);
+            current.send(new DatagramPacket(bytes, bytes.length, group, MULTICAST_PORT));
+        } catch (IOException e) {
+            System.err.println("[LanCache] Announcement failed: " + e.getMessage());
+        }
+    }
+
+    private void receiveLoop() {
+        byte[] buffer = new byte[65507];
+        MulticastSocket current;
+        synchronized (this) {
+            current = socket;
+        }
+        while (current != null && !current.isClosed()) {
+            DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+            try {
+                current.receive(packet);
+                Announcement announcement = mapper.readValue(packet.getData(), packet.getOffset(), packet.getLength(), Announcement.class);
+                if (announcement.id == null || instanceId.equals(announcement.id) || announcement.port <= 0) continue;
+                Peer peer = peers.computeIfAbsent(announcement.id, id -> new Peer());
+                peer.address = packet.getAddress();
+                peer.port = announcement.port;
+                peer.lastSeen = System.currentTimeMillis();
+                if (announcement.digests != null) {
+                    for (String digest : announcement.digests) {
+                        if (digest != null && DIGEST.matcher(digest).matches()) peer.digests.add(digest);
+                    }
+                }
+                if (announcement.query && isRunning()) {
+                    TaskScheduler.getDefault().submit(TaskScheduler.Pool.IO, TaskScheduler.Priority.BACKGROUND, this::announceAll);
+                }
+            } catch (SocketException e) {
+                return; // socket closed by stop()
+            } catch (IOException | RuntimeException e) {
+                // Anything on the LAN can send to the group; a malformed packet must not end the loop
+                System.err.println("[LanCache] Ignoring bad announcement: " + e);
+            }
+        }
+    }
+
+    private void serveObject(HttpExchange exchange) throws IOException {
+        try {
+            String digest = exchange.getRequestURI().getPath().substring("/objects/".length());
+            Path object = DIGEST.matcher(digest).matches() ? store.findByDigest(digest) : null;
+            if (object == null || !"GET".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(object == null ? 404 : 405, -1);
+                return;
+            }
+            long size = Files.size(object);
+            long offset = parseRangeStart(exchange.getRequestHeaders().getFirst("Range"), size);
+            // Objects are immutable, so their SHA-1 is a strong validator for resumed transfers
+            exchange.getResponseHeaders().add("ETag", "\"" + object.getFileName() + "\"");
+            exchange.getResponseHeaders().add("Content-Type", "application/java-archive");
+            if (offset > 0) {
+                exchange.getResponseHeaders().add("Content-Range", "bytes " + offset + "-" + (size - 1) + "/" + size);
+                exchange.sendResponseHeaders(206, size - offset);
+            } else {
+                exchange.sendResponseHeaders(200, size);
+            }
+            try (InputStream in = Files.newInputStream(object); OutputStream out = exchange.getResponseBody()) {
+                if (offset > 0) in.skip(offset);
+                byte[] buffer = new byte[64 * 1024];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, read);
+                }
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void serveIndex(HttpExchange exchange) throws IOException {
+        try {
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, 0);
+            try (ModIndex.Writer index = ModIndex.writer(exchange.getResponseBody())) {
+                for (String[] digests : store.listDigests()) {
+                    ModStore.StoredMod stored = store.describe(digests[0]);
+                    if (stored == null) continue;
+                    String name = stored.lastExportedName();
+                    index.add(name != null ? name : digests[0] + ".jar", stored.size, digests[0], stored.md5, -1,
+                            "objects/" + digests[0]);
+                }
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    // Only "bytes=N-" is supported, which is what resumed downloads send
+    private static long parseRangeStart(String range, long size) {
+        if (range == null || !range.startsWith("bytes=") || !range.endsWith("-")) return 0;
+        try {
+            long start = Long.parseLong(range.substring(6, range.length() - 1));
+            return start > 0 && start < size ? start : 0;
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static String hostForUrl(InetAddress address) {
+        String host = address.getHostAddress();
+        int scope = host.indexOf('%');
+        if (scope >= 0) host = host.substring(0, scope);
+        return host.contains(":") ? "[" + host + "]" : host;
+    }
+
+    private static class Peer {
+        volatile InetAddress address;
+        volatile int port;
+        volatile long lastSeen;
+        final Set<String> digests = ConcurrentHashMap.newKeySet();
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class Announcement {
+        public String id;
+        public int port;
+        public List<String> digests;
+        // Set by a launcher that just started, asking everyone to announce
+        public boolean query;
+    }
+}
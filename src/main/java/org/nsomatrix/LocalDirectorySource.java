@@ -0,0 +1,72 @@
+package org.nsomatrix;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystemNotFoundException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.function.Consumer;
+
+/**
+ * Mods in a folder, typically a share mounted from a shop's file server. If the folder has an
+ * index.json it is used as the catalog (with its digests); otherwise the folder's .jar files are listed
+ * with whatever SHA-1 the {@link VerifiedHashStore} already knows for them.
+ */
+public class LocalDirectorySource implements ModSource {
+    private final Path directory;
+
+    public LocalDirectorySource(Path directory) {
+        this.directory = directory;
+    }
+
+    @Override
+    public String getName() {
+        return "Folder " + directory.toAbsolutePath();
+    }
+
+    @Override
+    public void list(Consumer<RemoteMod> sink) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            throw new IOException("Not a folder: " + directory.toAbsolutePath());
+        }
+        Path index = directory.resolve(ModIndex.FILE_NAME);
+        if (Files.isRegularFile(index)) {
+            try (InputStream in = Files.newInputStream(index)) {
+                ModIndex.parse(in, directory.toUri(), sink);
+            }
+            return;
+        }
+
+        VerifiedHashStore verified = VerifiedHashStore.getDefault();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*.{jar,JAR}")) {
+            for (Path file : files) {
+                if (!Files.isRegularFile(file)) continue;
+                RemoteMod mod = new RemoteMod(file.getFileName().toString(), file.toUri().toString(),
+                        Files.size(file), verified.getTrustedSha1(file), null, null);
+                mod.setLastModified(Files.getLastModifiedTime(file).toMillis());
+                sink.accept(mod);
+            }
+        }
+    }
+
+    @Override
+    public InputStream fetch(RemoteMod mod) throws IOException {
+        String url = mod.getMirrors().getOrDefault(getName(), mod.downloadUrl);
+        Path file;
+        try {
+            file = Paths.get(URI.create(url));
+        } catch (IllegalArgumentException | FileSystemNotFoundException e) {
+            // Covers malformed URIs, non-file: schemes and invalid paths (InvalidPathException)
+            throw new IOException("Not a local file: " + url, e);
+        }
+        return Files.newInputStream(file);
+    }
+
+    @Override
+    public boolean isLocal() {
+        return true;
+    }
+}
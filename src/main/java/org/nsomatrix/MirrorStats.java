@@ -0,0 +1,49 @@
+package org.nsomatrix;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.prefs.Preferences;
+
+/**
+ * Remembers how fast each mirror host has been, as an exponentially weighted average of observed
+ * throughput. Values live in the app Preferences so the fastest mirror is tried first after a restart.
+ */
+public class MirrorStats {
+    private static final double SMOOTHING = 0.3;
+    // Samples smaller than this are mostly connection setup and say little about throughput
+    private static final long MIN_SAMPLE_BYTES = 16 * 1024;
+
+    private final Preferences prefs = Preferences.userNodeForPackage(UI.class).node("mirror_stats");
+
+    /** Average bytes per second seen from the URL's host, or -1 if it has never been measured. */
+    public double getBytesPerSecond(String url) {
+        String host = hostOf(url);
+        return host == null ? -1 : prefs.getDouble(host, -1);
+    }
+
+    public synchronized void record(String url, long bytes, long millis) {
+        String host = hostOf(url);
+        if (host == null || bytes < MIN_SAMPLE_BYTES || millis <= 0) return;
+        double sample = bytes * 1000.0 / millis;
+        double previous = prefs.getDouble(host, -1);
+        prefs.putDouble(host, previous < 0 ? sample : previous + SMOOTHING * (sample - previous));
+    }
+
+    /** Orders URLs from fastest to slowest known host; unmeasured hosts keep their order after measured ones. */
+    public List<String> rank(Collection<String> urls) {
+        List<String> ranked = new ArrayList<>(urls);
+        ranked.sort((a, b) -> Double.compare(getBytesPerSecond(b), getBytesPerSecond(a)));
+        return ranked;
+    }
+
+    private static String hostOf(String url) {
+        try {
+            return new URL(url).getHost().toLowerCase();
+        } catch (MalformedURLException e) {
+            return null;
+        }
+    }
+}
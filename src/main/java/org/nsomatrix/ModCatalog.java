@@ -0,0 +1,187 @@
+package org.nsomatrix;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Fetches several mod catalogs in parallel and merges them into one deduplicated list. Mods are
+ * reported as soon as any source produces them; a mod found again in another source is not reported
+ * twice but gains that source as an extra mirror.
+ *
+ * Every source goes through its {@link SourceHealth} circuit breaker. A source whose circuit is open is
+ * not contacted at all, and one that fails or times out is replaced by its last complete listing from
+ * the {@link CatalogCache}, if there is one.
+ */
+public class ModCatalog {
+
+    public interface Listener {
+        /** Called for every distinct mod, from the fetching threads. */
+        void onMod(RemoteMod mod);
+
+        /** Called once per source; {@code error} is null when the source finished normally. */
+        void onSourceFinished(String source, int count, Exception error);
+
+        /**
+         * Called before {@link #onSourceFinished} when a source was skipped or failed and its cached listing
+         * was used instead; {@code cachedAt} is -1 when there was nothing cached.
+         */
+        default void onSourceDegraded(String source, long cachedAt, Exception cause) {
+        }
+    }
+
+    private final List<ModSource> sources;
+    private final long perSourceTimeoutMs;
+    private final CatalogCache cache;
+
+    // Lowercased name -> mods with that name, plus a hash index for renamed copies
+    private final Map<String, List<RemoteMod>> byName = new HashMap<>();
+    private final Map<String, RemoteMod> bySha1 = new HashMap<>();
+
+    public ModCatalog(List<? extends ModSource> sources, long perSourceTimeoutMs) {
+        this(sources, perSourceTimeoutMs, CatalogCache.getDefault());
+    }
+
+    public ModCatalog(List<? extends ModSource> sources, long perSourceTimeoutMs, CatalogCache cache) {
+        this.sources = new ArrayList<>(sources);
+        this.perSourceTimeoutMs = perSourceTimeoutMs;
+        this.cache = cache;
+    }
+
+    /**
+     * Queries every source at once and blocks until each has finished or run out of time.
+     * Returns the number of distinct mods found.
+     */
+    public int fetchAll(Listener listener) throws InterruptedException {
+        synchronized (this) {
+            byName.clear();
+            bySha1.clear();
+        }
+
+        Map<ModSource, Future<List<RemoteMod>>> running = new LinkedHashMap<>();
+        Map<ModSource, AtomicBoolean> cancelFlags = new HashMap<>();
+        // Sources whose outcome was recorded on their health; the rest release their probe below
+        Set<ModSource> recorded = new HashSet<>();
+        try {
+            long started = System.currentTimeMillis();
+            for (ModSource source : sources) {
+                SourceHealth health = SourceHealth.forSource(source.getName());
+                if (!health.allowRequest()) {
+                    fallBackToCache(source.getName(), new SourceUnavailableException(source.getName()
+                            + " skipped after repeated failures"), listener);
+                    continue;
+                }
+                final AtomicBoolean cancelled = new AtomicBoolean();
+                cancelFlags.put(source, cancelled);
+                running.put(source, TaskScheduler.getDefault().submit(TaskScheduler.Pool.IO, TaskScheduler.Priority.INTERACTIVE, () -> {
+                    List<RemoteMod> listed = new ArrayList<>();
+                    source.list(mod -> {
+                        // Stops a parser that is still streaming after its source was given up on
+                        if (cancelled.get()) throw new CancellationException(source.getName() + " timed out");
+                        listed.add(mod);
+                        merge(source.getName(), mod, listener);
+                    });
+                    return listed;
+                }));
+            }
+
+            long deadline = started + perSourceTimeoutMs;
+            for (Map.Entry<ModSource, Future<List<RemoteMod>>> entry : running.entrySet()) {
+                String name = entry.getKey().getName();
+                SourceHealth health = SourceHealth.forSource(name);
+                long remaining = Math.max(0, deadline - System.currentTimeMillis());
+                try {
+                    List<RemoteMod> listed = entry.getValue().get(remaining, TimeUnit.MILLISECONDS);
+                    health.recordSuccess(System.currentTimeMillis() - started);
+                    recorded.add(entry.getKey());
+                    cache.put(name, listed);
+                    listener.onSourceFinished(name, listed.size(), null);
+                } catch (TimeoutException e) {
+                    cancelFlags.get(entry.getKey()).set(true);
+                    entry.getValue().cancel(true);
+                    TimeoutException timeout = new TimeoutException(name + " did not answer within "
+                            + perSourceTimeoutMs + " ms");
+                    health.recordFailure(System.currentTimeMillis() - started, timeout);
+                    recorded.add(entry.getKey());
+                    fallBackToCache(name, timeout, listener);
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    Exception error = cause instanceof Exception ? (Exception) cause : e;
+                    health.recordFailure(System.currentTimeMillis() - started, error);
+                    recorded.add(entry.getKey());
+                    fallBackToCache(name, error, listener);
+                } catch (CancellationException e) {
+                    // Cancelled from outside; says nothing about the source
+                    fallBackToCache(name, e, listener);
+                }
+            }
+        } finally {
+            // Only does anything when this fetch was interrupted part-way
+            for (Map.Entry<ModSource, Future<List<RemoteMod>>> entry : running.entrySet()) {
+                entry.getValue().cancel(true);
+                if (!recorded.contains(entry.getKey())) SourceHealth.forSource(entry.getKey().getName()).releaseProbe();
+            }
+        }
+
+        synchronized (this) {
+            int distinct = 0;
+            for (List<RemoteMod> mods : byName.values()) distinct += mods.size();
+            return distinct;
+        }
+    }
+
+    // Mods the source managed to stream before failing are already merged; duplicates only add a mirror
+    private void fallBackToCache(String source, Exception cause, Listener listener) {
+        final int[] count = new int[1];
+        long cachedAt = cache.replay(source, mod -> {
+            count[0]++;
+            merge(source, mod, listener);
+        });
+        listener.onSourceDegraded(source, cachedAt, cause);
+        listener.onSourceFinished(source, count[0], cause);
+    }
+
+    private void merge(String source, RemoteMod mod, Listener listener) {
+        synchronized (this) {
+            RemoteMod existing = mod.getSha1() != null ? bySha1.get(mod.getSha1()) : null;
+            List<RemoteMod> sameName = byName.computeIfAbsent(mod.name.toLowerCase(Locale.ROOT), k -> new ArrayList<>());
+            if (existing == null) {
+                for (RemoteMod candidate : sameName) {
+                    if (candidate.isSameContent(mod)) {
+                        existing = candidate;
+                        break;
+                    }
+                }
+            }
+            if (existing != null) {
+                existing.addMirror(source, mod.downloadUrl);
+                existing.adoptDigests(mod);
+                if (existing.getSha1() != null) bySha1.putIfAbsent(existing.getSha1(), existing);
+                return;
+            }
+            mod.addMirror(source, mod.downloadUrl);
+            sameName.add(mod);
+            if (mod.getSha1() != null) bySha1.put(mod.getSha1(), mod);
+        }
+        listener.onMod(mod);
+    }
+
+    /** Reported for a source that was not contacted because its circuit breaker is open. */
+    public static class SourceUnavailableException extends IOException {
+        public SourceUnavailableException(String message) {
+            super(message);
+        }
+    }
+}
@@ -0,0 +1,363 @@
+package org.nsomatrix;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Downloads a mod from whichever of its mirrors answers fastest. The historically fastest mirror is
+ * started first; if it has not delivered the first {@value #PROBE_BYTES} bytes in about the time its
+ * history predicts, the other mirrors are started too (a hedged request). The first mirror to deliver
+ * that prefix keeps going and the rest are disconnected.
+ *
+ * Content is hashed while it is written and checked against the digests the catalog advertised.
+ * Verified files go into the {@link ModStore} and the target is linked to them, so a mod already in the
+ * store is never downloaded again. Launchers on the LAN that announced the mod through the
+ * {@link LanCache} are asked before any internet mirror.
+ */
+public class ModDownloader {
+    private static final int PROBE_BYTES = 256 * 1024;
+    private static final int MAX_MIRRORS = 3;
+    private static final int MAX_ATTEMPTS = 3;
+    // Extra time granted to the preferred mirror before hedging, on top of its expected probe time
+    private static final long HEDGE_GRACE_MS = 300;
+    // Peers are on the LAN: give up on one quickly and move on
+    private static final int PEER_CONNECT_TIMEOUT_MS = 1000;
+    private static final int PEER_READ_TIMEOUT_MS = 10000;
+
+    private final MirrorStats stats = new MirrorStats();
+    private final ModStore store = ModStore.getDefault();
+    // Sources whose mirrors are read through the source itself rather than over HTTP, by name
+    private final Map<String, ModSource> localSources = new ConcurrentHashMap<>();
+
+    /** Receives transfer progress; the URL and validator identify the mirror so the transfer can be resumed. */
+    public interface Progress {
+        void onProgress(String url, String validator, long bytesDone);
+    }
+
+    /** Lets mirrors listed by a local source (a folder) be copied from it instead of being downloaded. */
+    public void registerSource(ModSource source) {
+        if (source.isLocal()) localSources.put(source.getName(), source);
+    }
+
+    public long download(RemoteMod mod, Path target) throws IOException, InterruptedException {
+        return download(mod, target, null, null, BandwidthLimiter.Priority.INTERACTIVE, null);
+    }
+
+    /**
+     * Downloads the mod to {@code target}, replacing it atomically once complete and verified against the
+     * catalog's digests. A mirror that serves bad content is dropped and the download retried from the
+     * remaining ones. Returns the bytes transferred, 0 when the mod was already in the store.
+     * Reads are paced by the {@link BandwidthLimiter} at the given priority.
+     *
+     * When {@code resumeUrl} and {@code validator} describe an earlier transfer whose .part file is still on
+     * disk, that transfer is continued with a ranged request guarded by If-Range before anything is raced.
+     */
+    public long download(RemoteMod mod, Path target, String resumeUrl, String validator,
+                         BandwidthLimiter.Priority priority, Progress progress)
+            throws IOException, InterruptedException {
+        Path partial = partialFileFor(target);
+        Path stored = store.find(mod);
+        if (stored != null) {
+            store.export(stored, target);
+            Files.deleteIfExists(partial);
+            System.out.println("[ModDownloader] " + mod.name + " taken from the local store");
+            return 0;
+        }
+        if (resumeUrl != null && validator != null && Files.exists(partial) && Files.size(partial) > 0) {
+            try {
+                return resume(mod, target, partial, resumeUrl, validator, priority, progress);
+            } catch (ModIntegrity.IntegrityException e) {
+                System.err.println("[ModDownloader] Resumed file failed verification, starting over: " + e.getMessage());
+            } catch (IOException e) {
+                System.err.println("[ModDownloader] Could not resume " + mod.name + ", starting over: " + e.getMessage());
+            }
+        }
+
+        for (String peerUrl : LanCache.getDefault().findPeers(mod)) {
+            Long copied = copyFromPeer(mod, target, partial, peerUrl, progress);
+            if (copied != null) return copied;
+        }
+
+        Map<String, String> allMirrors = mod.getMirrors();
+        if (allMirrors.isEmpty()) allMirrors.put("direct", mod.downloadUrl);
+        List<String> mirrors = new ArrayList<>();
+        for (Map.Entry<String, String> mirror : allMirrors.entrySet()) {
+            ModSource local = localSources.get(mirror.getKey());
+            if (local != null) {
+                Long copied = copyFromLocal(mod, target, partial, local, mirror.getValue(), progress);
+                if (copied != null) return copied;
+            } else if (mirror.getValue().startsWith("http")) {
+                mirrors.add(mirror.getValue());
+            }
+        }
+        mirrors = stats.rank(mirrors);
+
+        IOException lastError = null;
+        for (int attempt = 0; attempt < MAX_ATTEMPTS && !mirrors.isEmpty(); attempt++) {
+            Racer winner = race(mirrors.size() > MAX_MIRRORS ? mirrors.subList(0, MAX_MIRRORS) : mirrors, priority);
+            try (InputStream in = winner.in) {
+                ModIntegrity.Verifier verifier = new ModIntegrity.Verifier(mod);
+                long written = commit(mod, target, partial, verifier, winner.probe, winner.probeLength,
+                        winner.finished ? null : in, false, winner.url, winner.validator, progress);
+                stats.record(winner.url, written, System.currentTimeMillis() - winner.startedAt);
+                return written;
+            } catch (ModIntegrity.IntegrityException e) {
+                System.err.println("[ModDownloader] Rejected download from " + winner.url + ": " + e.getMessage());
+                mirrors.remove(winner.url);
+                lastError = e;
+            }
+        }
+        throw lastError != null ? lastError : new IOException("No mirror available for " + mod.name);
+    }
+
+    // Returns the bytes copied, or null if the local copy is unreadable or not the expected content
+    private Long copyFromLocal(RemoteMod mod, Path target, Path partial, ModSource source, String url, Progress progress) {
+        try (InputStream in = source.fetch(mod)) {
+            long copied = commit(mod, target, partial, new ModIntegrity.Verifier(mod), null, 0, in, false, url, null, progress);
+            System.out.println("[ModDownloader] " + mod.name + " copied from " + source.getName());
+            return copied;
+        } catch (IOException e) {
+            System.err.println("[ModDownloader] Could not use " + source.getName() + " for " + mod.name + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    // Returns the bytes transferred, or null if the peer failed or served the wrong content
+    private Long copyFromPeer(RemoteMod mod, Path target, Path partial, String url, Progress progress) {
+        long startedAt = System.currentTimeMillis();
+        try (HttpTransport.Response response = HttpTransport.getDefault().get(url)
+                .gzip(false)
+                .attempts(1)
+                .timeouts(PEER_CONNECT_TIMEOUT_MS, PEER_READ_TIMEOUT_MS)
+                .execute()) {
+            response.requireSuccess();
+            long copied = commit(mod, target, partial, new ModIntegrity.Verifier(mod), null, 0, response.getBody(),
+                    false, url, validatorOf(response), progress);
+            stats.record(url, copied, System.currentTimeMillis() - startedAt);
+            System.out.println("[ModDownloader] " + mod.name + " fetched from LAN peer " + url);
+            return copied;
+        } catch (IOException e) {
+            System.err.println("[ModDownloader] LAN peer " + url + " failed for " + mod.name + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    public static Path partialFileFor(Path target) {
+        return target.resolveSibling(target.getFileName() + ".part");
+    }
+
+    private long resume(RemoteMod mod, Path target, Path partial, String url, String validator,
+                        BandwidthLimiter.Priority priority, Progress progress) throws IOException {
+        long offset = Files.size(partial);
+        long startedAt = System.currentTimeMillis();
+        try (HttpTransport.Response response = HttpTransport.getDefault().get(url)
+                .gzip(false)
+                .header("Range", "bytes=" + offset + "-")
+                .header("If-Range", validator)
+                .execute()) {
+            ModIntegrity.Verifier verifier = new ModIntegrity.Verifier(mod);
+            InputStream body = BandwidthLimiter.getDefault().throttle(response.getBody(), url, priority);
+            long written;
+            if (response.getStatus() == 206) {
+                // Hash what is already on disk so the final digest covers the whole file
+                try (InputStream existing = Files.newInputStream(partial)) {
+                    byte[] buffer = new byte[64 * 1024];
+                    int read;
+                    while ((read = existing.read(buffer)) != -1) {
+                        verifier.update(buffer, 0, read);
+                    }
+                }
+                System.out.println("[ModDownloader] Resuming " + mod.name + " at byte " + offset);
+                written = commit(mod, target, partial, verifier, null, 0, body, true, url, validator, progress);
+            } else if (response.getStatus() == 200) {
+                // If-Range did not match: the file changed on the server and this is the whole new version
+                written = commit(mod, target, partial, verifier, null, 0, body, false, url,
+                        validatorOf(response), progress);
+            } else {
+                throw new IOException("HTTP " + response.getStatus() + " resuming from " + url);
+            }
+            stats.record(url, written, System.currentTimeMillis() - startedAt);
+            return written;
+        }
+    }
+
+    /**
+     * Writes the prefix and the rest of {@code in} (if any) to the .part file, verifies the digests, moves
+     * the result into the store and links {@code target} to it. Returns the bytes written by this call. The .part file is kept on network
+     * errors so the transfer can be resumed, and deleted when the content fails verification.
+     */
+    private long commit(RemoteMod mod, Path target, Path partial, ModIntegrity.Verifier verifier,
+                        byte[] prefix, int prefixLength, InputStream in, boolean append,
+                        String url, String validator, Progress progress) throws IOException {
+        long done = append ? Files.size(partial) : 0;
+        long written = 0;
+        String sha1;
+        OutputStream file = append
+                ? Files.newOutputStream(partial, StandardOpenOption.APPEND)
+                : Files.newOutputStream(partial);
+        try (OutputStream out = verifier.wrap(file)) {
+            if (prefixLength > 0) {
+                out.write(prefix, 0, prefixLength);
+                written += prefixLength;
+                if (progress != null) progress.onProgress(url, validator, done + written);
+            }
+            if (in != null) {
+                byte[] buffer = new byte[64 * 1024];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, read);
+                    written += read;
+                    if (progress != null) progress.onProgress(url, validator, done + written);
+                }
+            }
+            out.flush();
+        }
+        try {
+            sha1 = verifier.verify();
+        } catch (ModIntegrity.IntegrityException e) {
+            Files.deleteIfExists(partial);
+            throw e;
+        }
+        store.export(store.add(partial, sha1, mod), target);
+        return written;
+    }
+
+    // A strong ETag or Last-Modified that If-Range can use to make sure a resumed range is from the same file
+    private static String validatorOf(HttpTransport.Response response) {
+        String etag = response.getHeader("ETag");
+        if (etag != null && !etag.startsWith("W/")) return etag;
+        return response.getHeader("Last-Modified");
+    }
+
+    private Racer race(List<String> mirrors, BandwidthLimiter.Priority priority) throws IOException, InterruptedException {
+        CompletionService<Racer> completion = new ExecutorCompletionService<>(TaskScheduler.getDefault()
+                .executor(TaskScheduler.Pool.IO, TaskScheduler.Priority.valueOf(priority.name())));
+        List<Racer> racers = new ArrayList<>();
+        Racer winner = null;
+        IOException lastError = null;
+        try {
+            Racer first = new Racer(mirrors.get(0), priority);
+            racers.add(first);
+            first.task = completion.submit(first::probe);
+
+            int pending = 1;
+            long hedgeDelay = hedgeDelayFor(first.url);
+            // With nothing known about the preferred mirror, race everything from the start
+            boolean hedged = mirrors.size() == 1 || hedgeDelay <= 0;
+            if (hedged) pending += startRacers(mirrors.subList(1, mirrors.size()), priority, racers, completion);
+
+            while (winner == null && pending > 0) {
+                Future<Racer> done = hedged ? completion.take() : completion.poll(hedgeDelay, TimeUnit.MILLISECONDS);
+                if (done != null) {
+                    pending--;
+                    try {
+                        winner = done.get();
+                        continue;
+                    } catch (ExecutionException e) {
+                        Throwable cause = e.getCause();
+                        System.err.println("[ModDownloader] Mirror failed: " + cause.getMessage());
+                        lastError = cause instanceof IOException ? (IOException) cause : new IOException(cause);
+                    }
+                }
+                if (!hedged) {
+                    // Preferred mirror is slower than its history or failed: start the others too
+                    hedged = true;
+                    pending += startRacers(mirrors.subList(1, mirrors.size()), priority, racers, completion);
+                }
+            }
+        } finally {
+            for (Racer racer : racers) {
+                if (racer != winner) {
+                    racer.cancel();
+                    if (racer.task != null) racer.task.cancel(true);
+                }
+            }
+        }
+        if (winner == null) {
+            throw lastError != null ? lastError : new IOException("No mirror available");
+        }
+        return winner;
+    }
+
+    private int startRacers(List<String> urls, BandwidthLimiter.Priority priority, List<Racer> racers,
+                            CompletionService<Racer> completion) {
+        for (String url : urls) {
+            Racer racer = new Racer(url, priority);
+            racers.add(racer);
+            racer.task = completion.submit(racer::probe);
+        }
+        return urls.size();
+    }
+
+    private long hedgeDelayFor(String url) {
+        double bytesPerSecond = stats.getBytesPerSecond(url);
+        if (bytesPerSecond <= 0) return 0;
+        return (long) (PROBE_BYTES * 1000.0 / bytesPerSecond * 1.5) + HEDGE_GRACE_MS;
+    }
+
+    // One mirror attempt: connects and reads the first PROBE_BYTES into memory
+    private class Racer {
+        final String url;
+        final BandwidthLimiter.Priority priority;
+        final byte[] probe = new byte[PROBE_BYTES];
+        volatile int probeLength;
+        volatile Future<Racer> task;
+        volatile boolean cancelled;
+        boolean finished;
+        long startedAt;
+        String validator;
+        volatile HttpTransport.Response response;
+        InputStream in;
+
+        Racer(String url, BandwidthLimiter.Priority priority) {
+            this.url = url;
+            this.priority = priority;
+        }
+
+        Racer probe() throws IOException {
+            startedAt = System.currentTimeMillis();
+            // No retries: the other mirrors are the fallback. JARs are already compressed, so skip gzip.
+            response = HttpTransport.getDefault().get(url).gzip(false).attempts(1).execute();
+            if (response.getStatus() != 200) {
+                response.close();
+                throw new IOException("HTTP " + response.getStatus() + " from " + url);
+            }
+            if (cancelled) {
+                response.disconnect();
+                throw new IOException("Cancelled");
+            }
+            validator = validatorOf(response);
+            in = BandwidthLimiter.getDefault().throttle(response.getBody(), url, priority);
+            while (probeLength < PROBE_BYTES) {
+                if (cancelled) throw new IOException("Cancelled");
+                int read = in.read(probe, probeLength, PROBE_BYTES - probeLength);
+                if (read == -1) {
+                    finished = true;
+                    break;
+                }
+                probeLength += read;
+            }
+            return this;
+        }
+
+        void cancel() {
+            cancelled = true;
+            stats.record(url, probeLength, System.currentTimeMillis() - startedAt);
+            HttpTransport.Response current = response;
+            if (current != null) current.disconnect();
+        }
+    }
+}
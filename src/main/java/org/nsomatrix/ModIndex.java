@@ -0,0 +1,101 @@
+package org.nsomatrix;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.function.Consumer;
+
+/**
+ * The index.json format shared by local folders and LAN mirrors: a JSON array of
+ * {@code {"name", "size", "sha1", "md5", "mtime", "url"}} objects, where everything but the name is
+ * optional, mtime is in epoch millis and url, when present, may be relative to the index.
+ */
+public final class ModIndex {
+    public static final String FILE_NAME = "index.json";
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private ModIndex() {
+    }
+
+    /** Streams the index, resolving each mod's URL against {@code base} (which should end in '/'). */
+    public static void parse(InputStream in, URI base, Consumer<RemoteMod> sink) throws IOException {
+        try (JsonParser parser = JSON_FACTORY.createParser(in)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new IOException("Mod index must be a JSON array");
+            }
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                String name = null;
+                String url = null;
+                String sha1 = null;
+                String md5 = null;
+                long size = -1;
+                long mtime = -1;
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String field = parser.getCurrentName();
+                    parser.nextToken();
+                    switch (field) {
+                        case "name": name = parser.getValueAsString(); break;
+                        case "url": url = parser.getValueAsString(); break;
+                        case "sha1": sha1 = parser.getValueAsString(); break;
+                        case "md5": md5 = parser.getValueAsString(); break;
+                        case "size": size = parser.getValueAsLong(-1); break;
+                        case "mtime": mtime = parser.getValueAsLong(-1); break;
+                        default: parser.skipChildren();
+                    }
+                }
+                if (name == null || !name.toLowerCase().endsWith(".jar")) continue;
+                String resolved = base.resolve(url != null ? url : encodePath(name)).toString();
+                RemoteMod mod = new RemoteMod(name, resolved, size, sha1, md5, null);
+                if (mtime > 0) mod.setLastModified(mtime);
+                sink.accept(mod);
+            }
+        }
+    }
+
+    /** Starts writing an index; call {@link Writer#add} per mod and close it when done. */
+    public static Writer writer(OutputStream out) throws IOException {
+        return new Writer(out);
+    }
+
+    public static class Writer implements AutoCloseable {
+        private final JsonGenerator generator;
+
+        private Writer(OutputStream out) throws IOException {
+            generator = JSON_FACTORY.createGenerator(out, JsonEncoding.UTF8);
+            generator.writeStartArray();
+        }
+
+        public void add(String name, long size, String sha1, String md5, long mtime, String url) throws IOException {
+            generator.writeStartObject();
+            generator.writeStringField("name", name);
+            if (url != null) generator.writeStringField("url", url);
+            if (size >= 0) generator.writeNumberField("size", size);
+            if (sha1 != null) generator.writeStringField("sha1", sha1);
+            if (md5 != null) generator.writeStringField("md5", md5);
+            if (mtime > 0) generator.writeNumberField("mtime", mtime);
+            generator.writeEndObject();
+        }
+
+        @Override
+        public void close() throws IOException {
+            generator.writeEndArray();
+            generator.close();
+        }
+    }
+
+    static String encodePath(String name) {
+        try {
+            return new URI(null, null, name, null).getRawPath();
+        } catch (java.net.URISyntaxException e) {
+            throw new IllegalArgumentException("Bad file name " + name, e);
+        }
+    }
+}
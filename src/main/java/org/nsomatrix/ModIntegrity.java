@@ -0,0 +1,150 @@
+package org.nsomatrix;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Checks downloaded mods against the digests their catalog advertised. Hashes are computed on the
+ * bytes as they are written, so verifying a download costs no second pass over the file.
+ */
+public class ModIntegrity {
+
+    public static class IntegrityException extends IOException {
+        public IntegrityException(String message) {
+            super(message);
+        }
+    }
+
+    /** Hashes everything written through {@link #wrap} and compares it with the mod's expected digests. */
+    public static class Verifier {
+        private final RemoteMod mod;
+        private final MessageDigest sha1 = newDigest("SHA-1");
+        private final MessageDigest md5;
+        private final MessageDigest gitBlob;
+        private long bytes;
+
+        public Verifier(RemoteMod mod) {
+            this.mod = mod;
+            // SHA-1 is always computed since it keys the verified-hash records; the others only when promised
+            this.md5 = mod.getSha1() == null && mod.getMd5() != null ? newDigest("MD5") : null;
+            if (mod.getSha1() == null && mod.getMd5() == null && mod.getGitBlobSha() != null && mod.size >= 0) {
+                gitBlob = newDigest("SHA-1");
+                gitBlob.update(("blob " + mod.size + "\0").getBytes(StandardCharsets.US_ASCII));
+            } else {
+                gitBlob = null;
+            }
+        }
+
+        public OutputStream wrap(OutputStream out) {
+            return new FilterOutputStream(out) {
+                @Override
+                public void write(int b) throws IOException {
+                    write(new byte[]{(byte) b}, 0, 1);
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    update(b, off, len);
+                    out.write(b, off, len);
+                }
+            };
+        }
+
+        public void update(byte[] b, int off, int len) {
+            sha1.update(b, off, len);
+            if (md5 != null) md5.update(b, off, len);
+            if (gitBlob != null) gitBlob.update(b, off, len);
+            bytes += len;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        /** Checks size and digests; returns the SHA-1 of the content. Call once, after the last write. */
+        public String verify() throws IntegrityException {
+            String actualSha1 = hex(sha1.digest());
+            if (mod.size >= 0 && bytes != mod.size) {
+                throw new IntegrityException(mod.name + ": expected " + mod.size + " bytes but received " + bytes);
+            }
+            if (mod.getSha1() != null && !mod.getSha1().equals(actualSha1)) {
+                throw new IntegrityException(mod.name + ": SHA-1 mismatch");
+            }
+            if (md5 != null && !mod.getMd5().equals(hex(md5.digest()))) {
+                throw new IntegrityException(mod.name + ": MD5 mismatch");
+            }
+            if (gitBlob != null && !mod.getGitBlobSha().equals(hex(gitBlob.digest()))) {
+                throw new IntegrityException(mod.name + ": git blob hash mismatch");
+            }
+            return actualSha1;
+        }
+    }
+
+    /**
+     * Whether an existing file can stand in for the mod. A file verified before is trusted without being
+     * read again when the mod lists a SHA-1, the digest the store records; otherwise it is hashed against
+     * every digest the mod lists and recorded. Mods without advertised digests always match; a file that
+     * cannot be read never does.
+     */
+    public static boolean matchesCatalog(RemoteMod mod, Path file) {
+        if (!mod.hasExpectedDigest()) return true;
+        try {
+            VerifiedHashStore verified = VerifiedHashStore.getDefault();
+            String trustedSha1 = mod.getSha1() != null ? verified.getTrustedSha1(file) : null;
+            if (trustedSha1 != null) {
+                return mod.getSha1().equals(trustedSha1) && (mod.size < 0 || Files.size(file) == mod.size);
+            }
+            Verifier verifier = new Verifier(mod);
+            try (InputStream in = Files.newInputStream(file)) {
+                byte[] buffer = new byte[64 * 1024];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    verifier.update(buffer, 0, read);
+                }
+            }
+            verified.record(file, verifier.verify());
+            return true;
+        } catch (IntegrityException e) {
+            System.err.println("[ModIntegrity] Existing file does not match catalog: " + e.getMessage());
+            return false;
+        } catch (IOException e) {
+            System.err.println("[ModIntegrity] Could not check existing " + file + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    public static String sha1Of(Path file) throws IOException {
+        MessageDigest digest = newDigest("SHA-1");
+        try (InputStream in = Files.newInputStream(file)) {
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return hex(digest.digest());
+    }
+
+    static String hex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+
+    private static MessageDigest newDigest(String algorithm) {
+        try {
+            return MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(algorithm + " not available", e);
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package org.nsomatrix;
+
+import javax.imageio.ImageIO;
+import javax.swing.*;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+
+/**
+ * Fills in size, date and MIDlet details for catalog entries as they scroll into view. Size and date come
+ * from the catalog when it has them and from a HEAD request otherwise; the MIDlet name, vendor and icon
+ * are read from the JAR's manifest with range requests (or from disk for mods in a local folder), so
+ * nothing is downloaded in full. Only the rows
+ * last reported as visible are fetched, and results are kept in a bounded in-memory cache.
+ */
+public class ModMetadataFetcher {
+    public static final int ICON_SIZE = 24;
+    private static final int MAX_WORKERS = 2;
+    private static final int MAX_CACHED = 1000;
+
+    public interface Listener {
+        /** Called from a fetch thread once the mod's metadata is available. */
+        void onMetadata(RemoteMod mod);
+    }
+
+    public static class Metadata {
+        public long size = -1;
+        public long lastModified = -1;
+        public String midletName;
+        public String vendor;
+        public String version;
+        public Icon icon;
+    }
+
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final Map<String, Metadata> cache = Collections.synchronizedMap(new LinkedHashMap<String, Metadata>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Metadata> eldest) {
+            return size() > MAX_CACHED;
+        }
+    });
+    // Keyed by download URL; guarded by this
+    private final Set<String> queued = new HashSet<>();
+    private Set<String> wanted = new HashSet<>();
+    private final TaskScheduler.Limiter workers = TaskScheduler.getDefault()
+            .limited(TaskScheduler.Pool.IO, TaskScheduler.Priority.BACKGROUND, MAX_WORKERS);
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    /** Returns the cached metadata, or null if it has not been fetched yet. */
+    public Metadata get(RemoteMod mod) {
+        return cache.get(mod.downloadUrl);
+    }
+
+    /**
+     * Makes {@code visible} the set of rows worth fetching. Anything queued for rows that have since
+     * scrolled out of view is skipped when its turn comes.
+     */
+    public synchronized void request(List<RemoteMod> visible) {
+        Set<String> nowWanted = new HashSet<>();
+        for (RemoteMod mod : visible) {
+            nowWanted.add(mod.downloadUrl);
+        }
+        wanted = nowWanted;
+        for (RemoteMod mod : visible) {
+            if (cache.containsKey(mod.downloadUrl) || !queued.add(mod.downloadUrl)) continue;
+            workers.execute(() -> fetchIfWanted(mod));
+        }
+    }
+
+    private void fetchIfWanted(RemoteMod mod) {
+        synchronized (this) {
+            if (!wanted.contains(mod.downloadUrl)) {
+                queued.remove(mod.downloadUrl);
+                return;
+            }
+        }
+        try {
+            cache.put(mod.downloadUrl, fetch(mod));
+        } finally {
+            // Even after an unexpected failure, so the row can ask again
+            synchronized (this) {
+                queued.remove(mod.downloadUrl);
+            }
+        }
+        for (Listener listener : listeners) {
+            listener.onMetadata(mod);
+        }
+    }
+
+    private Metadata fetch(RemoteMod mod) {
+        Metadata metadata = new Metadata();
+        metadata.size = mod.size;
+        metadata.lastModified = mod.getLastModified();
+        if (mod.downloadUrl.startsWith("file:")) {
+            readLocal(mod, metadata);
+            return metadata;
+        }
+        if (metadata.size < 0 || metadata.lastModified < 0) {
+            try (HttpTransport.Response response = HttpTransport.getDefault().request("HEAD", mod.downloadUrl)
+                    .gzip(false)
+                    .attempts(1)
+                    .execute()) {
+                if (response.isSuccess()) {
+                    if (metadata.size < 0) metadata.size = response.getContentLength();
+                    if (metadata.lastModified < 0) metadata.lastModified = response.getHeaderDate("Last-Modified");
+                }
+            } catch (IOException e) {
+                System.err.println("[ModMetadata] HEAD failed for " + mod.name + ": " + e.getMessage());
+            }
+        }
+
+        try {
+            readManifest(new RemoteJarReader(mod.downloadUrl)::read, metadata);
+        } catch (IOException e) {
+            System.err.println("[ModMetadata] No manifest for " + mod.name + ": " + e.getMessage());
+        }
+        return metadata;
+    }
+
+    // Mods listed from a local folder are read straight from disk
+    private static void readLocal(RemoteMod mod, Metadata metadata) {
+        File file = new File(URI.create(mod.downloadUrl));
+        if (metadata.size < 0) metadata.size = file.length();
+        if (metadata.lastModified < 0) metadata.lastModified = file.lastModified();
+        try (JarFile jar = new JarFile(file)) {
+            readManifest(name -> {
+                JarEntry entry = jar.getJarEntry(name);
+                if (entry == null) return null;
+                try (InputStream in = jar.getInputStream(entry)) {
+                    ByteArrayOutputStream out = new ByteArrayOutputStream();
+                    byte[] buffer = new byte[8192];
+                    int read;
+                    while ((read = in.read(buffer)) != -1) {
+                        out.write(buffer, 0, read);
+                    }
+                    return out.toByteArray();
+                }
+            }, metadata);
+        } catch (IOException e) {
+            System.err.println("[ModMetadata] No manifest for " + mod.name + ": " + e.getMessage());
+        }
+    }
+
+    private interface EntryReader {
+        byte[] read(String name) throws IOException;
+    }
+
+    private static void readManifest(EntryReader jar, Metadata metadata) throws IOException {
+        byte[] manifestBytes = jar.read("META-INF/MANIFEST.MF");
+        if (manifestBytes == null) return;
+        Attributes attributes = new Manifest(new ByteArrayInputStream(manifestBytes)).getMainAttributes();
+        metadata.midletName = attributes.getValue("MIDlet-Name");
+        metadata.vendor = attributes.getValue("MIDlet-Vendor");
+        metadata.version = attributes.getValue("MIDlet-Version");
+        String iconPath = iconPathOf(attributes);
+        if (iconPath != null) {
+            byte[] iconBytes = jar.read(iconPath);
+            if (iconBytes != null) metadata.icon = toIcon(iconBytes);
+        }
+    }
+
+    // MIDlet-Icon, or the icon of the first MIDlet ("MIDlet-1: Name, /icon.png, com.example.Main")
+    private static String iconPathOf(Attributes attributes) {
+        String icon = attributes.getValue("MIDlet-Icon");
+        if (icon == null || icon.trim().isEmpty()) {
+            String first = attributes.getValue("MIDlet-1");
+            if (first != null) {
+                String[] parts = first.split(",");
+                if (parts.length >= 2) icon = parts[1];
+            }
+        }
+        if (icon == null) return null;
+        icon = icon.trim();
+        if (icon.startsWith("/")) icon = icon.substring(1);
+        return icon.isEmpty() ? null : icon;
+    }
+
+    private static Icon toIcon(byte[] bytes) throws IOException {
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(bytes));
+        if (image == null) return null;
+        if (image.getWidth() == ICON_SIZE && image.getHeight() == ICON_SIZE) return new ImageIcon(image);
+        BufferedImage scaled = new BufferedImage(ICON_SIZE, ICON_SIZE, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = scaled.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g.drawImage(image, 0, 0, ICON_SIZE, ICON_SIZE, null);
+        g.dispose();
+        return new ImageIcon(scaled);
+    }
+}
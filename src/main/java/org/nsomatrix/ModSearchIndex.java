@@ -0,0 +1,195 @@
+package org.nsomatrix;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * In-memory search index over mod names. Every name is lowercased once and its 1-, 2- and 3-character
+ * grams are recorded in posting lists, so a query term is answered by intersecting postings instead of
+ * scanning every name. Queries are split on whitespace and every term must appear in the name.
+ *
+ * Not thread-safe: all calls are expected to come from a single search thread.
+ */
+public class ModSearchIndex {
+    private static final int MAX_GRAM = 3;
+
+    private final List<RemoteMod> mods = new ArrayList<>();
+    private final List<String> normalizedNames = new ArrayList<>();
+    private final Map<String, IntList> postings = new HashMap<>();
+    private int epoch;
+
+    public void addAll(Collection<RemoteMod> batch) {
+        for (RemoteMod mod : batch) {
+            int id = mods.size();
+            String normalized = normalize(mod.name);
+            mods.add(mod);
+            normalizedNames.add(normalized);
+            for (int n = 1; n <= MAX_GRAM; n++) {
+                for (int i = 0; i + n <= normalized.length(); i++) {
+                    IntList list = postings.computeIfAbsent(normalized.substring(i, i + n), k -> new IntList());
+                    // A name can contain the same gram several times; ids arrive in order so only the tail can repeat
+                    if (list.size == 0 || list.get(list.size - 1) != id) {
+                        list.add(id);
+                    }
+                }
+            }
+        }
+    }
+
+    public void clear() {
+        mods.clear();
+        normalizedNames.clear();
+        postings.clear();
+        epoch++;
+    }
+
+    public int size() {
+        return mods.size();
+    }
+
+    /**
+     * Runs a query. When {@code previous} came from this index and the new query only narrows it
+     * (every earlier term is contained in some new term), the earlier hits are refined rather than
+     * searching from scratch.
+     */
+    public Result search(String query, Result previous) {
+        String[] terms = parseQuery(query);
+        if (terms.length == 0) {
+            int[] all = new int[mods.size()];
+            for (int i = 0; i < all.length; i++) all[i] = i;
+            return new Result(terms, all);
+        }
+
+        int[] candidates;
+        if (previous != null && previous.epoch == epoch && narrows(previous.terms, terms)) {
+            candidates = withNewIds(previous.ids, previous.indexSize);
+        } else {
+            candidates = null;
+            for (String term : terms) {
+                int[] termCandidates = candidatesFor(term);
+                candidates = candidates == null ? termCandidates : intersect(candidates, termCandidates);
+                if (candidates.length == 0) break;
+            }
+        }
+
+        IntList hits = new IntList();
+        for (int id : candidates) {
+            if (matches(normalizedNames.get(id), terms)) hits.add(id);
+        }
+        return new Result(terms, hits.toArray());
+    }
+
+    private int[] candidatesFor(String term) {
+        if (term.length() <= MAX_GRAM) {
+            IntList exact = postings.get(term);
+            return exact == null ? new int[0] : exact.toArray();
+        }
+        int[] candidates = null;
+        for (int i = 0; i + MAX_GRAM <= term.length(); i++) {
+            IntList list = postings.get(term.substring(i, i + MAX_GRAM));
+            if (list == null) return new int[0];
+            candidates = candidates == null ? list.toArray() : intersect(candidates, list.toArray());
+            if (candidates.length == 0) break;
+        }
+        return candidates;
+    }
+
+    // Previous hits plus anything indexed after the previous search ran (the catalog may still be streaming in)
+    private int[] withNewIds(int[] ids, int indexSizeAtSearch) {
+        int added = mods.size() - indexSizeAtSearch;
+        if (added <= 0) return ids;
+        int[] merged = Arrays.copyOf(ids, ids.length + added);
+        for (int i = 0; i < added; i++) merged[ids.length + i] = indexSizeAtSearch + i;
+        return merged;
+    }
+
+    private static boolean narrows(String[] previousTerms, String[] terms) {
+        if (previousTerms.length == 0) return true;
+        for (String previousTerm : previousTerms) {
+            boolean covered = false;
+            for (String term : terms) {
+                if (term.contains(previousTerm)) {
+                    covered = true;
+                    break;
+                }
+            }
+            if (!covered) return false;
+        }
+        return true;
+    }
+
+    private static boolean matches(String name, String[] terms) {
+        for (String term : terms) {
+            if (!name.contains(term)) return false;
+        }
+        return true;
+    }
+
+    private static int[] intersect(int[] a, int[] b) {
+        int[] out = new int[Math.min(a.length, b.length)];
+        int i = 0, j = 0, k = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) i++;
+            else if (a[i] > b[j]) j++;
+            else {
+                out[k++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(out, k);
+    }
+
+    private static String normalize(String text) {
+        return text == null ? "" : text.toLowerCase(Locale.ROOT);
+    }
+
+    private static String[] parseQuery(String query) {
+        String normalized = normalize(query).trim();
+        return normalized.isEmpty() ? new String[0] : normalized.split("\\s+");
+    }
+
+    public class Result {
+        private final String[] terms;
+        private final int[] ids;
+        private final int epoch;
+        private final int indexSize;
+
+        private Result(String[] terms, int[] ids) {
+            this.terms = terms;
+            this.ids = ids;
+            this.epoch = ModSearchIndex.this.epoch;
+            this.indexSize = mods.size();
+        }
+
+        /** Materializes the hits in catalog order. Must be called on the search thread. */
+        public List<RemoteMod> getMods() {
+            List<RemoteMod> result = new ArrayList<>(ids.length);
+            for (int id : ids) result.add(mods.get(id));
+            return result;
+        }
+    }
+
+    private static class IntList {
+        private int[] values = new int[4];
+        private int size;
+
+        void add(int value) {
+            if (size == values.length) values = Arrays.copyOf(values, size * 2);
+            values[size++] = value;
+        }
+
+        int get(int index) {
+            return values[index];
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package org.nsomatrix;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.function.Consumer;
+
+/**
+ * A place mods can be listed and fetched from: a public catalog, a folder on disk or a mirror on the
+ * local network. Every mod a source lists carries that source's download URL as a mirror under
+ * {@link #getName()}.
+ */
+public interface ModSource {
+    String getName();
+
+    /** Streams the source's catalog, handing each mod to the sink as soon as it is known. */
+    void list(Consumer<RemoteMod> sink) throws Exception;
+
+    /** Opens the mod's content as served by this source. */
+    default InputStream fetch(RemoteMod mod) throws IOException {
+        String url = mod.getMirrors().getOrDefault(getName(), mod.downloadUrl);
+        return HttpTransport.getDefault().get(url).gzip(false).execute().requireSuccess().getBody();
+    }
+
+    /** Whether {@link #fetch} reads local storage, which is always preferred over downloading. */
+    default boolean isLocal() {
+        return false;
+    }
+}
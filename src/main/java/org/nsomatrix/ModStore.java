@@ -0,0 +1,276 @@
+package org.nsomatrix;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Keeps one copy of every downloaded mod, named by its SHA-1, under ~/.matrix_launcher_store. The files
+ * users see in their download folders are hard links to these objects (or copies where the file system
+ * cannot link), so the same JAR under another name or in another folder costs no network and no disk,
+ * and switching the download folder only creates links.
+ *
+ * The index remembers the catalog digests each object was verified against, so a mod can be found by
+ * whichever digest its catalog advertises, and where each object has been exported.
+ */
+public class ModStore {
+    private static final File ROOT = new File(System.getProperty("user.home"), ".matrix_launcher_store");
+    private static final ModStore DEFAULT = new ModStore(ROOT.toPath());
+
+    private final Path objectsDir;
+    private final File indexFile;
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final Map<String, StoredMod> objects = new HashMap<>();
+    // md5 / git blob sha -> sha1
+    private final Map<String, String> aliases = new HashMap<>();
+    private final List<Consumer<String>> listeners = new CopyOnWriteArrayList<>();
+    private boolean loaded;
+
+    public ModStore(Path root) {
+        this.objectsDir = root.resolve("objects");
+        this.indexFile = root.resolve("index.json").toFile();
+    }
+
+    public static ModStore getDefault() {
+        return DEFAULT;
+    }
+
+    /** Registers a callback that receives the SHA-1 of every object added to the store. */
+    public void addListener(Consumer<String> listener) {
+        listeners.add(listener);
+    }
+
+    /** Returns the SHA-1 of every stored object together with its MD5 and git blob id where known. */
+    public synchronized List<String[]> listDigests() {
+        load();
+        List<String[]> digests = new ArrayList<>();
+        for (Map.Entry<String, StoredMod> entry : objects.entrySet()) {
+            digests.add(new String[]{entry.getKey(), entry.getValue().md5, entry.getValue().gitBlobSha});
+        }
+        return digests;
+    }
+
+    /** A stored object's size and the file name it was last exported under, or null if it is not stored. */
+    public synchronized StoredMod describe(String sha1) {
+        load();
+        return objects.get(sha1);
+    }
+
+    /**
+     * Returns the intact object for a SHA-1, MD5 or git blob id, or null. Used to serve objects to other
+     * launchers, so a damaged object is dropped rather than handed out.
+     */
+    public synchronized Path findByDigest(String digest) {
+        load();
+        String sha1 = objects.containsKey(digest) ? digest : aliases.get(digest);
+        if (sha1 == null) return null;
+        Path object = objectPath(sha1);
+        if (!isIntact(object, sha1)) {
+            System.err.println("[ModStore] Dropping damaged object " + sha1);
+            remove(sha1);
+            return null;
+        }
+        return object;
+    }
+
+    /** Returns the stored object matching one of the mod's catalog digests, or null if it is not stored. */
+    public synchronized Path find(RemoteMod mod) {
+        load();
+        String sha1 = mod.getSha1();
+        if (sha1 == null && mod.getMd5() != null) sha1 = aliases.get(mod.getMd5());
+        if (sha1 == null && mod.getGitBlobSha() != null) sha1 = aliases.get(mod.getGitBlobSha());
+        if (sha1 == null || !objects.containsKey(sha1)) return null;
+        Path object = objectPath(sha1);
+        if (!isIntact(object, sha1)) {
+            System.err.println("[ModStore] Dropping damaged object " + sha1);
+            remove(sha1);
+            return null;
+        }
+        return object;
+    }
+
+    /**
+     * Moves a verified file into the store under its SHA-1 and records the mod's catalog digests for it.
+     * If the object already exists the file is simply deleted. Returns the object's path.
+     */
+    public synchronized Path add(Path file, String sha1, RemoteMod mod) throws IOException {
+        load();
+        Files.createDirectories(objectsDir);
+        Path object = objectPath(sha1);
+        boolean added = !(objects.containsKey(sha1) && isIntact(object, sha1));
+        if (!added) {
+            Files.deleteIfExists(file);
+        } else {
+            Files.move(file, object, StandardCopyOption.REPLACE_EXISTING);
+            VerifiedHashStore.getDefault().record(object, sha1);
+        }
+        StoredMod stored = objects.computeIfAbsent(sha1, k -> new StoredMod());
+        stored.size = Files.size(object);
+        if (mod.getMd5() != null) {
+            stored.md5 = mod.getMd5();
+            aliases.put(mod.getMd5(), sha1);
+        }
+        if (mod.getGitBlobSha() != null) {
+            stored.gitBlobSha = mod.getGitBlobSha();
+            aliases.put(mod.getGitBlobSha(), sha1);
+        }
+        save();
+        if (added) {
+            for (Consumer<String> listener : listeners) listener.accept(sha1);
+        }
+        return object;
+    }
+
+    /**
+     * Makes {@code target} a hard link to the stored object, falling back to a copy when linking is not
+     * possible (different volume, FAT file systems). An existing target is replaced atomically.
+     */
+    public synchronized void export(Path object, Path target) throws IOException {
+        load();
+        String sha1 = object.getFileName().toString();
+        if (Files.exists(target) && Files.isSameFile(object, target)) {
+            recordExport(sha1, target);
+            return;
+        }
+        Files.createDirectories(target.toAbsolutePath().getParent());
+        Path temp = target.resolveSibling(target.getFileName() + ".link");
+        Files.deleteIfExists(temp);
+        try {
+            Files.createLink(temp, object);
+        } catch (FileSystemException | UnsupportedOperationException e) {
+            System.out.println("[ModStore] Hard link not possible for " + target + ", copying instead");
+            Files.copy(object, temp, StandardCopyOption.REPLACE_EXISTING);
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        VerifiedHashStore.getDefault().record(target, sha1);
+        recordExport(sha1, target);
+    }
+
+    /**
+     * Re-creates in {@code toDir} every stored mod still present in {@code fromDir}, e.g. after the download
+     * folder has been changed. Returns the number of mods exported.
+     */
+    public int exportAll(Path fromDir, Path toDir) {
+        List<Map.Entry<String, Path>> pending = new ArrayList<>();
+        synchronized (this) {
+            load();
+            Path from = fromDir.toAbsolutePath().normalize();
+            for (Map.Entry<String, StoredMod> entry : objects.entrySet()) {
+                for (String exported : entry.getValue().exports) {
+                    Path path = Paths.get(exported);
+                    if (from.equals(path.getParent()) && Files.exists(path)) {
+                        pending.add(new java.util.AbstractMap.SimpleEntry<>(entry.getKey(), path.getFileName()));
+                    }
+                }
+            }
+        }
+        int exported = 0;
+        for (Map.Entry<String, Path> entry : pending) {
+            Path object = objectPath(entry.getKey());
+            try {
+                if (!isIntact(object, entry.getKey())) continue;
+                export(object, toDir.resolve(entry.getValue()));
+                exported++;
+            } catch (IOException e) {
+                System.err.println("[ModStore] Could not export " + entry.getValue() + ": " + e.getMessage());
+            }
+        }
+        return exported;
+    }
+
+    private void recordExport(String sha1, Path target) {
+        StoredMod stored = objects.get(sha1);
+        if (stored != null && stored.exports.add(target.toAbsolutePath().normalize().toString())) {
+            save();
+        }
+    }
+
+    // An exported hard link edited in place changes the object too, so re-check it unless it is untouched
+    private boolean isIntact(Path object, String sha1) {
+        if (!Files.exists(object)) return false;
+        if (sha1.equals(VerifiedHashStore.getDefault().getTrustedSha1(object))) return true;
+        try {
+            String actual = ModIntegrity.sha1Of(object);
+            VerifiedHashStore.getDefault().record(object, actual);
+            return sha1.equals(actual);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    private void remove(String sha1) {
+        StoredMod stored = objects.remove(sha1);
+        if (stored != null) {
+            if (stored.md5 != null) aliases.remove(stored.md5);
+            if (stored.gitBlobSha != null) aliases.remove(stored.gitBlobSha);
+        }
+        try {
+            Files.deleteIfExists(objectPath(sha1));
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        save();
+    }
+
+    private Path objectPath(String sha1) {
+        return objectsDir.resolve(sha1);
+    }
+
+    private void load() {
+        if (loaded) return;
+        loaded = true;
+        if (!indexFile.exists()) return;
+        try {
+            objects.putAll(mapper.readValue(indexFile, new TypeReference<Map<String, StoredMod>>() {}));
+            for (Map.Entry<String, StoredMod> entry : objects.entrySet()) {
+                if (entry.getValue().md5 != null) aliases.put(entry.getValue().md5, entry.getKey());
+                if (entry.getValue().gitBlobSha != null) aliases.put(entry.getValue().gitBlobSha, entry.getKey());
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void save() {
+        File temp = new File(indexFile.getPath() + ".tmp");
+        try {
+            Files.createDirectories(indexFile.toPath().getParent());
+            mapper.writeValue(temp, objects);
+            Files.move(temp.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class StoredMod {
+        public long size;
+        public String md5;
+        public String gitBlobSha;
+        public Set<String> exports = new LinkedHashSet<>();
+
+        /** The file name this object was most recently exported under, or null. */
+        public String lastExportedName() {
+            String last = null;
+            for (String exported : exports) last = exported;
+            return last == null ? null : Paths.get(last).getFileName().toString();
+        }
+    }
+}
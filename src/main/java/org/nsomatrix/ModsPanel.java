@@ -4,31 +4,39 @@ import javax.swing.*;
 import javax.swing.border.EmptyBorder;
 import javax.swing.event.DocumentEvent;
 import javax.swing.event.DocumentListener;
+import javax.swing.event.ListDataListener;
 import java.awt.*;
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.InputStream;
 import java.io.IOException;
 import java.net.URI;
 import java.net.HttpURLConnection;
 import java.net.URL;
+import java.text.SimpleDateFormat;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
-import java.util.concurrent.Executors;
+import java.util.Set;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 
 import java.util.prefs.Preferences;
 
 
 
 public class ModsPanel extends JPanel {
-    private final DefaultListModel<RemoteMod> remoteModsModel = new DefaultListModel<>();
+    private final ModListModel remoteModsModel = new ModListModel();
+    private final ModMetadataFetcher metadataFetcher = new ModMetadataFetcher();
+    // Reserves the icon's space so rows keep their height when icons arrive
+    private static final Icon BLANK_ICON = new ImageIcon(new java.awt.image.BufferedImage(
+            ModMetadataFetcher.ICON_SIZE, ModMetadataFetcher.ICON_SIZE, java.awt.image.BufferedImage.TYPE_INT_ARGB));
     private final JList<RemoteMod> modsList;
 
     private final JButton fetchModsBtn;
@@ -46,10 +54,31 @@ public class ModsPanel extends JPanel {
     private final Preferences prefs = Preferences.userNodeForPackage(UI.class);
     private Path downloadDir;
 
-    private final List<RemoteMod> allMods = new ArrayList<>();
-
-    private final String GITHUB_API_URL = "https://api.github.com/repos/cloudkore/matrix/contents/data/MODs";
-    private final String INTERNET_ARCHIVE_METADATA_URL = "https://archive.org/metadata/nsomtxmods";
+    // Searches run one at a time in the CPU pool and own the index, keyed off a debounced timer
+    private static final int FILTER_DEBOUNCE_MS = 150;
+    private final ModSearchIndex searchIndex = new ModSearchIndex();
+    private final ModDownloader modDownloader = new ModDownloader();
+    private final DownloadQueue downloadQueue = new DownloadQueue(modDownloader);
+    private List<ModSource> modSources = new ArrayList<>();
+    private final TaskScheduler.Limiter searchExecutor =
+            TaskScheduler.getDefault().limited(TaskScheduler.Pool.CPU, TaskScheduler.Priority.INTERACTIVE, 1);
+    // One catalog fetch at a time, so repeated clicks cannot stack up blocked threads
+    private final TaskScheduler.Limiter fetchExecutor =
+            TaskScheduler.getDefault().limited(TaskScheduler.Pool.IO, TaskScheduler.Priority.INTERACTIVE, 1);
+    private Future<?> runningFetch;
+    private final AtomicLong filterGeneration = new AtomicLong();
+    private final Timer filterTimer;
+    private ModSearchIndex.Result lastSearchResult; // only touched on the search thread
+    private int fetchedSoFar;
+
+    private static final String SOURCE_ALL = "All Sources";
+    private static final long SOURCE_TIMEOUT_MS = 30000;
+    // Extra sources from Settings: local folders and LAN mirror URLs, one per line
+    static final String PREF_LOCAL_SOURCES = "mod_sources_local";
+    static final String PREF_MIRROR_SOURCES = "mod_sources_mirrors";
+    // Parsed mods are handed to the EDT in chunks so the list fills while the response is still downloading
+    private static final int PUBLISH_BATCH_SIZE = 50;
+    private static final long PUBLISH_INTERVAL_MS = 150;
 
     public ModsPanel() {
         setLayout(new BorderLayout(10, 10));
@@ -76,18 +105,36 @@ public class ModsPanel extends JPanel {
         titleLabel.setHorizontalAlignment(SwingConstants.CENTER);
         add(titleLabel, BorderLayout.NORTH);
 
+        filterTimer = new Timer(FILTER_DEBOUNCE_MS, e -> filterMods());
+        filterTimer.setRepeats(false);
+
         searchField = new JTextField(30);
         searchField.setToolTipText("Search mods...");
         searchField.getDocument().addDocumentListener(new DocumentListener() {
-            public void insertUpdate(DocumentEvent e) { filterMods(); }
-            public void removeUpdate(DocumentEvent e) { filterMods(); }
-            public void changedUpdate(DocumentEvent e) { filterMods(); }
+            public void insertUpdate(DocumentEvent e) { filterTimer.restart(); }
+            public void removeUpdate(DocumentEvent e) { filterTimer.restart(); }
+            public void changedUpdate(DocumentEvent e) { filterTimer.restart(); }
         });
 
         JPanel topPanel = new JPanel(new BorderLayout(5, 5));
         JPanel sourcePanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
         sourcePanel.add(new JLabel("Source:"));
-        sourceSelector = new JComboBox<>(new String[]{"GitHub", "Internet Archive"});
+        sourceSelector = new JComboBox<>();
+        sourceSelector.setRenderer(new DefaultListCellRenderer() {
+            public Component getListCellRendererComponent(JList<?> list, Object value,
+                                                          int index, boolean isSelected, boolean cellHasFocus) {
+                super.getListCellRendererComponent(list, value, index, isSelected, cellHasFocus);
+                if (value != null && !SOURCE_ALL.equals(value)) {
+                    SourceHealth health = SourceHealth.forSource((String) value);
+                    if (health.isDegraded(SOURCE_TIMEOUT_MS)) setText(value + " (degraded)");
+                    setToolTipText(health.toString());
+                } else {
+                    setToolTipText(null);
+                }
+                return this;
+            }
+        });
+        reloadSources();
         sourcePanel.add(sourceSelector);
         topPanel.add(sourcePanel, BorderLayout.WEST);
         topPanel.add(searchField, BorderLayout.CENTER);
@@ -100,13 +147,20 @@ public class ModsPanel extends JPanel {
                                                           int index, boolean isSelected, boolean cellHasFocus) {
                 JLabel label = (JLabel) super.getListCellRendererComponent(list, value, index, isSelected, cellHasFocus);
                 if (value instanceof RemoteMod) {
-                    label.setText(((RemoteMod) value).name);
+                    RemoteMod mod = (RemoteMod) value;
+                    ModMetadataFetcher.Metadata metadata = metadataFetcher.get(mod);
+                    label.setText(describe(mod, metadata));
+                    label.setIcon(metadata != null && metadata.icon != null ? metadata.icon : BLANK_ICON);
+                    label.setToolTipText(tooltipFor(mod, metadata));
                 }
                 return label;
             }
         });
 
         JScrollPane scrollPane = new JScrollPane(modsList);
+        // Metadata is only fetched for rows that are actually on screen
+        scrollPane.getViewport().addChangeListener(e -> requestVisibleMetadata());
+        metadataFetcher.addListener(mod -> SwingUtilities.invokeLater(() -> repaintRow(mod)));
 
         emptyStatePanel = new JPanel();
         emptyStatePanel.setLayout(new BoxLayout(emptyStatePanel, BoxLayout.Y_AXIS));
@@ -138,8 +192,12 @@ public class ModsPanel extends JPanel {
         downloadSelectedBtn.setEnabled(false);
         downloadSelectedBtn.addActionListener(e -> downloadSelectedMods());
 
+        JButton downloadsBtn = new JButton("Downloads");
+        downloadsBtn.addActionListener(e -> showDownloads());
+
         buttonsPanel.add(fetchModsBtn);
         buttonsPanel.add(downloadSelectedBtn);
+        buttonsPanel.add(downloadsBtn);
 
         bottomPanel.add(buttonsPanel, BorderLayout.NORTH);
 
@@ -160,14 +218,26 @@ public class ModsPanel extends JPanel {
 
         modsList.addListSelectionListener(e -> downloadSelectedBtn.setEnabled(!modsList.isSelectionEmpty()));
 
-        remoteModsModel.addListDataListener(new javax.swing.event.ListDataListener() {
+        remoteModsModel.addListDataListener(new ListDataListener() {
             public void intervalAdded(javax.swing.event.ListDataEvent e) { updateEmptyStateVisibility(); }
             public void intervalRemoved(javax.swing.event.ListDataEvent e) { updateEmptyStateVisibility(); }
-            public void contentsChanged(javax.swing.event.ListDataEvent e) { updateEmptyStateVisibility(); }
+            public void contentsChanged(javax.swing.event.ListDataEvent e) {
+                updateEmptyStateVisibility();
+                // The visible rows change without any scrolling when a search replaces the list
+                SwingUtilities.invokeLater(ModsPanel.this::requestVisibleMetadata);
+            }
         });
         updateEmptyStateVisibility();
 
+        // Pick up whatever was still downloading when the launcher was last closed
+        downloadQueue.addListener(() -> SwingUtilities.invokeLater(this::updateDownloadStatus));
+        downloadQueue.resumePending();
+        LanCache.getDefault().followPreference(prefs);
+
         prefs.addPreferenceChangeListener(evt -> {
+            if (PREF_LOCAL_SOURCES.equals(evt.getKey()) || PREF_MIRROR_SOURCES.equals(evt.getKey())) {
+                SwingUtilities.invokeLater(this::reloadSources);
+            }
             if ("download_dir".equals(evt.getKey())) {
                 SwingUtilities.invokeLater(() -> {
                     String newDir = evt.getNewValue();
@@ -176,94 +246,198 @@ public class ModsPanel extends JPanel {
                         if (!Files.exists(newPath)) {
                             try { Files.createDirectories(newPath); } catch (Exception ignored) {}
                         }
+                        Path oldDir = downloadDir;
                         downloadDir = newPath;
                         downloadDirField.setText(downloadDir.toAbsolutePath().toString());
                         setStatus("Download folder updated to: " + downloadDir.toAbsolutePath());
+                        if (!oldDir.toAbsolutePath().equals(newPath.toAbsolutePath())) {
+                            exportToNewFolder(oldDir, newPath);
+                        }
                     }
                 });
             }
         });
     }
 
+    private void requestVisibleMetadata() {
+        int first = modsList.getFirstVisibleIndex();
+        int last = modsList.getLastVisibleIndex();
+        List<RemoteMod> visible = new ArrayList<>();
+        if (first >= 0) {
+            for (int i = first; i <= last && i < remoteModsModel.getSize(); i++) {
+                visible.add(remoteModsModel.getElementAt(i));
+            }
+        }
+        metadataFetcher.request(visible);
+    }
+
+    // Only repaints the mod's row, and only if it is still on screen
+    private void repaintRow(RemoteMod mod) {
+        int first = modsList.getFirstVisibleIndex();
+        int last = modsList.getLastVisibleIndex();
+        for (int i = Math.max(first, 0); i <= last && i < remoteModsModel.getSize(); i++) {
+            if (remoteModsModel.getElementAt(i) == mod) {
+                Rectangle bounds = modsList.getCellBounds(i, i);
+                if (bounds != null) modsList.repaint(bounds);
+                return;
+            }
+        }
+    }
+
+    private static String describe(RemoteMod mod, ModMetadataFetcher.Metadata metadata) {
+        long size = metadata != null ? metadata.size : mod.size;
+        long lastModified = metadata != null ? metadata.lastModified : mod.getLastModified();
+        StringBuilder text = new StringBuilder(mod.name);
+        if (size >= 0 || lastModified > 0) {
+            text.append("  (");
+            if (size >= 0) text.append(DownloadsDialog.formatBytes(size));
+            if (size >= 0 && lastModified > 0) text.append(", ");
+            if (lastModified > 0) text.append(new SimpleDateFormat("yyyy-MM-dd").format(new Date(lastModified)));
+            text.append(")");
+        }
+        return text.toString();
+    }
+
+    private static String tooltipFor(RemoteMod mod, ModMetadataFetcher.Metadata metadata) {
+        String sources = "Available from: " + String.join(", ", mod.getMirrors().keySet());
+        if (metadata == null || metadata.midletName == null) return sources;
+        StringBuilder tooltip = new StringBuilder(metadata.midletName);
+        if (metadata.version != null) tooltip.append(" ").append(metadata.version);
+        if (metadata.vendor != null) tooltip.append(" by ").append(metadata.vendor);
+        return tooltip.append(" - ").append(sources).toString();
+    }
+
+    /** The built-in catalogs followed by the folders and LAN mirrors configured in Settings. */
+    static List<ModSource> configuredSources(Preferences prefs) {
+        List<ModSource> sources = new ArrayList<>();
+        sources.add(new GitHubCatalogClient("cloudkore", "matrix", "data/MODs"));
+        sources.add(new InternetArchiveSource());
+        for (String dir : prefs.get(PREF_LOCAL_SOURCES, "").split("\\R")) {
+            if (!dir.trim().isEmpty()) sources.add(new LocalDirectorySource(Paths.get(dir.trim())));
+        }
+        for (String url : prefs.get(PREF_MIRROR_SOURCES, "").split("\\s+")) {
+            if (!url.trim().isEmpty()) sources.add(new HttpMirrorSource(url.trim()));
+        }
+        return sources;
+    }
+
+    // Must run on the EDT
+    private void reloadSources() {
+        modSources = configuredSources(prefs);
+        Object selected = sourceSelector.getSelectedItem();
+        sourceSelector.removeAllItems();
+        sourceSelector.addItem(SOURCE_ALL);
+        for (ModSource source : modSources) {
+            sourceSelector.addItem(source.getName());
+            modDownloader.registerSource(source);
+        }
+        sourceSelector.setSelectedItem(selected != null ? selected : SOURCE_ALL);
+    }
+
     private void updateEmptyStateVisibility() {
         emptyStatePanel.setVisible(remoteModsModel.isEmpty());
     }
 
     private void filterMods() {
-        String filter = searchField.getText().trim().toLowerCase();
-        remoteModsModel.clear();
+        final String query = searchField.getText();
+        final long generation = filterGeneration.incrementAndGet();
+        searchExecutor.submit(() -> {
+            if (generation != filterGeneration.get()) return; // superseded by a newer keystroke
+            ModSearchIndex.Result result = searchIndex.search(query, lastSearchResult);
+            lastSearchResult = result;
+            final List<RemoteMod> matches = result.getMods();
+            SwingUtilities.invokeLater(() -> {
+                if (generation == filterGeneration.get()) {
+                    applyFilterResult(matches);
+                }
+            });
+        });
+    }
 
-        if (filter.isEmpty()) {
-            allMods.forEach(remoteModsModel::addElement);
-        } else {
-            allMods.stream()
-                    .filter(mod -> mod.name.toLowerCase().contains(filter))
-                    .forEach(remoteModsModel::addElement);
+    // Swaps the visible list in one model event, keeping whatever the user had selected
+    private void applyFilterResult(List<RemoteMod> matches) {
+        List<RemoteMod> selected = modsList.getSelectedValuesList();
+        remoteModsModel.setMods(matches);
+        if (!selected.isEmpty()) {
+            List<Integer> indices = new ArrayList<>();
+            for (RemoteMod mod : selected) {
+                int index = matches.indexOf(mod);
+                if (index >= 0) indices.add(index);
+            }
+            modsList.setSelectedIndices(indices.stream().mapToInt(Integer::intValue).toArray());
         }
     }
 
     private void fetchMods() {
         setStatus("Fetching mod list...");
-        allMods.clear();
-        remoteModsModel.clear();
+        fetchedSoFar = 0;
+        filterGeneration.incrementAndGet();
+        searchExecutor.submit(() -> {
+            searchIndex.clear();
+            lastSearchResult = null;
+        });
+        remoteModsModel.setMods(new ArrayList<>());
 
-        String source = (String) sourceSelector.getSelectedItem();
-        String apiUrl = "Internet Archive".equals(source) ? INTERNET_ARCHIVE_METADATA_URL : GITHUB_API_URL;
+        String selection = (String) sourceSelector.getSelectedItem();
+        List<ModSource> sources = new ArrayList<>();
+        for (ModSource source : modSources) {
+            if (SOURCE_ALL.equals(selection) || source.getName().equals(selection)) {
+                sources.add(source);
+            }
+        }
 
         fetchModsBtn.setEnabled(false);
+        if (runningFetch != null) runningFetch.cancel(true);
 
-        Executors.newSingleThreadExecutor().submit(() -> {
+        runningFetch = fetchExecutor.submit(() -> {
+            ModPublisher publisher = new ModPublisher();
+            List<String> failures = new ArrayList<>();
+            List<String> degraded = new ArrayList<>();
+            Set<String> servedFromCache = new HashSet<>();
             try {
-                URL url = new URL(apiUrl);
-                HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-                conn.setRequestMethod("GET");
-                conn.setRequestProperty("Accept", "application/vnd.github.v3+json");
-
-                int responseCode = conn.getResponseCode();
-                if (responseCode != 200) {
-                    SwingUtilities.invokeLater(() -> {
-                        setStatus("Failed to fetch mods: HTTP " + responseCode);
-                        fetchModsBtn.setEnabled(true);
-                    });
-                    return;
-                }
+                int total = new ModCatalog(sources, SOURCE_TIMEOUT_MS).fetchAll(new ModCatalog.Listener() {
+                    @Override
+                    public void onMod(RemoteMod mod) {
+                        publisher.accept(mod);
+                    }
 
-                ObjectMapper mapper = new ObjectMapper();
-                List<RemoteMod> fetchedMods = new ArrayList<>();
-
-                try (InputStream is = conn.getInputStream()) {
-                    if ("Internet Archive".equals(source)) {
-                        JsonNode root = mapper.readTree(is);
-                        JsonNode filesArray = root.get("files");
-                        if (filesArray != null && filesArray.isArray()) {
-                            for (JsonNode fileNode : filesArray) {
-                                String name = fileNode.get("name").asText();
-                                if (name.toLowerCase().endsWith(".jar")) {
-                                    String downloadUrl = "https://archive.org/download/nsomtxmods/" + name;
-                                    fetchedMods.add(new RemoteMod(name, downloadUrl));
-                                }
-                            }
+                    @Override
+                    public void onSourceDegraded(String source, long cachedAt, Exception cause) {
+                        System.err.println("[ModsPanel] " + SourceHealth.forSource(source));
+                        if (cachedAt > 0) {
+                            servedFromCache.add(source);
+                            degraded.add(source + " (showing list from "
+                                    + new SimpleDateFormat("yyyy-MM-dd HH:mm").format(new Date(cachedAt)) + ")");
                         }
-                    } else {
-                        JsonNode root = mapper.readTree(is);
-                        for (JsonNode node : root) {
-                            String name = node.get("name").asText();
-                            String downloadUrl = node.get("download_url").asText();
-                            if (name.toLowerCase().endsWith(".jar")) {
-                                fetchedMods.add(new RemoteMod(name, downloadUrl));
-                            }
+                    }
+
+                    @Override
+                    public void onSourceFinished(String source, int count, Exception error) {
+                        publisher.flush();
+                        if (error != null && !(error instanceof ModCatalog.SourceUnavailableException)) {
+                            error.printStackTrace();
+                        }
+                        if (error != null && !servedFromCache.contains(source)) {
+                            failures.add(source + ": " + error.getMessage());
                         }
                     }
-                }
+                });
+                publisher.flush();
 
                 SwingUtilities.invokeLater(() -> {
-                    allMods.clear();
-                    allMods.addAll(fetchedMods);
-                    filterMods();
-                    setStatus("Fetched " + fetchedMods.size() + " mods from " + source);
+                    String degradedNote = degraded.isEmpty() ? "" : " - degraded: " + String.join("; ", degraded);
+                    if (failures.size() == sources.size()) {
+                        setStatus("Error fetching mods: " + String.join("; ", failures));
+                    } else if (!failures.isEmpty()) {
+                        setStatus("Fetched " + total + " mods from " + selection + " (" + String.join("; ", failures) + ")" + degradedNote);
+                    } else {
+                        setStatus("Fetched " + total + " mods from " + selection + degradedNote);
+                    }
+                    sourceSelector.repaint();
                     fetchModsBtn.setEnabled(true);
                 });
-
+            } catch (InterruptedException e) {
+                // Superseded by a newer fetch, which owns the button and status now
             } catch (Exception e) {
                 e.printStackTrace();
                 SwingUtilities.invokeLater(() -> {
@@ -274,40 +448,89 @@ public class ModsPanel extends JPanel {
         });
     }
 
+    // Must run on the EDT: indexes a parsed chunk and refreshes the visible matches
+    private void publishMods(List<RemoteMod> chunk) {
+        fetchedSoFar += chunk.size();
+        searchExecutor.submit(() -> searchIndex.addAll(chunk));
+        filterMods();
+        setStatus("Fetching mod list... " + fetchedSoFar + " found so far");
+    }
+
+    // Collects mods on the fetch threads and hands them to the EDT in batches
+    private class ModPublisher implements Consumer<RemoteMod> {
+        private List<RemoteMod> pending = new ArrayList<>();
+        private long lastFlush = System.currentTimeMillis();
+
+        @Override
+        public synchronized void accept(RemoteMod mod) {
+            pending.add(mod);
+            if (pending.size() >= PUBLISH_BATCH_SIZE || System.currentTimeMillis() - lastFlush >= PUBLISH_INTERVAL_MS) {
+                flush();
+            }
+        }
+
+        synchronized void flush() {
+            if (pending.isEmpty()) return;
+            final List<RemoteMod> chunk = pending;
+            pending = new ArrayList<>();
+            lastFlush = System.currentTimeMillis();
+            SwingUtilities.invokeLater(() -> publishMods(chunk));
+        }
+    }
+
     private void downloadSelectedMods() {
         List<RemoteMod> selectedMods = modsList.getSelectedValuesList();
-        setStatus("Downloading " + selectedMods.size() + " mod(s)...");
+        // A single mod is something the user is waiting on; a multi-selection is a bulk pull
+        BandwidthLimiter.Priority priority = selectedMods.size() == 1
+                ? BandwidthLimiter.Priority.INTERACTIVE
+                : BandwidthLimiter.Priority.BACKGROUND;
+        int queued = 0;
+        for (RemoteMod mod : selectedMods) {
+            if (downloadQueue.enqueue(mod, downloadDir.resolve(mod.name), priority)) {
+                queued++;
+            }
+        }
+        setStatus("Queued " + queued + " mod(s) for download.");
+    }
+
+    private void showDownloads() {
+        new DownloadsDialog(SwingUtilities.getWindowAncestor(this), downloadQueue).setVisible(true);
+    }
+
+    // Must run on the EDT
+    private void updateDownloadStatus() {
+        java.util.Map<DownloadQueue.Status, Integer> counts = downloadQueue.getStatusCounts();
+        int active = counts.getOrDefault(DownloadQueue.Status.DOWNLOADING, 0);
+        int waiting = counts.getOrDefault(DownloadQueue.Status.QUEUED, 0);
+        if (active + waiting > 0) {
+            setStatus("Downloading " + active + " mod(s), " + waiting + " waiting...");
+        } else {
+            int done = counts.getOrDefault(DownloadQueue.Status.COMPLETED, 0) + counts.getOrDefault(DownloadQueue.Status.SKIPPED, 0);
+            int failed = counts.getOrDefault(DownloadQueue.Status.FAILED, 0);
+            setStatus("Downloads finished: " + done + " done" + (failed > 0 ? ", " + failed + " failed" : "") + ".");
+        }
+    }
+
+    // Links the mods downloaded into the old folder into the new one, straight from the local store
+    private void exportToNewFolder(Path oldDir, Path newDir) {
+        new BackgroundTask<Integer, Void>(TaskScheduler.Pool.IO, TaskScheduler.Priority.BACKGROUND, this) {
+            @Override
+            protected Integer doInBackground() {
+                return ModStore.getDefault().exportAll(oldDir, newDir);
+            }
 
-        Executors.newSingleThreadExecutor().submit(() -> {
-            int successCount = 0;
-            for (RemoteMod mod : selectedMods) {
+            @Override
+            protected void done() {
                 try {
-                    Path targetPath = downloadDir.resolve(mod.name);
-                    File targetFile = targetPath.toFile();
-                    if (targetFile.exists()) {
-                        continue;
+                    int exported = get();
+                    if (exported > 0) {
+                        setStatus("Download folder updated to: " + newDir.toAbsolutePath() + " (" + exported + " mod(s) carried over)");
                     }
-                    URL url = new URL(mod.downloadUrl);
-                    HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-                    conn.setRequestMethod("GET");
-                    if (conn.getResponseCode() == 200) {
-                        try (InputStream in = conn.getInputStream();
-                             FileOutputStream fos = new FileOutputStream(targetFile)) {
-                            byte[] buffer = new byte[4096];
-                            int bytesRead;
-                            while ((bytesRead = in.read(buffer)) != -1) {
-                                fos.write(buffer, 0, bytesRead);
-                            }
-                        }
-                        successCount++;
-                    }
-                } catch (Exception ex) {
-                    ex.printStackTrace();
+                } catch (Exception e) {
+                    e.printStackTrace();
                 }
             }
-            final int downloaded = successCount;
-            SwingUtilities.invokeLater(() -> setStatus("Downloaded " + downloaded + " mod(s)."));
-        });
+        }.execute();
     }
 
     private void chooseDownloadDirectory() {
@@ -317,11 +540,8 @@ public class ModsPanel extends JPanel {
         if (res == JFileChooser.APPROVE_OPTION) {
             File dir = chooser.getSelectedFile();
             if (dir.exists() && dir.isDirectory()) {
-                downloadDir = dir.toPath();
-                downloadDirField.setText(downloadDir.toAbsolutePath().toString());
-                setStatus("Download folder set to: " + downloadDir.toAbsolutePath());
-
-                prefs.put("download_dir", downloadDir.toAbsolutePath().toString());
+                // The preference listener switches the folder and carries the downloaded mods over
+                prefs.put("download_dir", dir.getAbsolutePath());
             } else {
                 setStatus("Invalid directory selected.");
             }
@@ -332,18 +552,36 @@ public class ModsPanel extends JPanel {
         statusLabel.setText(message);
     }
 
-    private static class RemoteMod {
-        public final String name;
-        public final String downloadUrl;
+    // List model that replaces its contents in bulk instead of firing one event per element
+    private static class ModListModel extends AbstractListModel<RemoteMod> {
+        private List<RemoteMod> mods = new ArrayList<>();
+
+        void setMods(List<RemoteMod> newMods) {
+            int oldSize = mods.size();
+            int newSize = newMods.size();
+            mods = newMods;
+            if (oldSize > newSize) {
+                fireIntervalRemoved(this, newSize, oldSize - 1);
+            } else if (newSize > oldSize) {
+                fireIntervalAdded(this, oldSize, newSize - 1);
+            }
+            if (Math.min(oldSize, newSize) > 0) {
+                fireContentsChanged(this, 0, Math.min(oldSize, newSize) - 1);
+            }
+        }
+
+        boolean isEmpty() {
+            return mods.isEmpty();
+        }
 
-        public RemoteMod(String name, String downloadUrl) {
-            this.name = name;
-            this.downloadUrl = downloadUrl;
+        @Override
+        public int getSize() {
+            return mods.size();
         }
 
         @Override
-        public String toString() {
-            return name;
+        public RemoteMod getElementAt(int index) {
+            return mods.get(index);
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,200 @@
+package org.nsomatrix;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * Reads single entries out of a remote JAR with HTTP range requests, without downloading the archive.
+ * The tail of the file is fetched first to find the central directory; each entry is then fetched on
+ * its own. Servers that ignore ranges are rejected rather than read in full.
+ */
+public class RemoteJarReader {
+    // Usually enough for a MIDlet's whole central directory; the largest possible comment is the fallback
+    private static final int TAIL_BYTES = 16 * 1024;
+    private static final int MAX_TAIL_BYTES = 22 + 0xFFFF;
+    private static final int EOCD_SIGNATURE = 0x06054b50;
+    private static final int CENTRAL_SIGNATURE = 0x02014b50;
+    private static final int LOCAL_SIGNATURE = 0x04034b50;
+    // Local headers may carry a different extra field than the central directory; fetch a little more
+    private static final int LOCAL_HEADER_SLACK = 256;
+    private static final long MAX_ENTRY_BYTES = 1024 * 1024;
+
+    private final String url;
+    private Map<String, Entry> entries;
+
+    public RemoteJarReader(String url) {
+        this.url = url;
+    }
+
+    /** Returns the uncompressed content of the named entry, or null if the JAR has no such entry. */
+    public byte[] read(String name) throws IOException {
+        Entry entry = getEntries().get(name);
+        if (entry == null) return null;
+        if (entry.compressedSize > MAX_ENTRY_BYTES || entry.size > MAX_ENTRY_BYTES) {
+            throw new IOException("Entry " + name + " is too large to fetch");
+        }
+
+        long length = 30 + entry.nameLength + entry.extraLength + entry.compressedSize + LOCAL_HEADER_SLACK;
+        byte[] local = fetch("bytes=" + entry.localHeaderOffset + "-" + (entry.localHeaderOffset + length - 1)).bytes;
+        if (local.length < 30 || readInt(local, 0) != LOCAL_SIGNATURE) {
+            throw new IOException("Bad local header for " + name);
+        }
+        int dataStart = 30 + readShort(local, 26) + readShort(local, 28);
+        if (local.length < dataStart + entry.compressedSize) {
+            // Unusually large local extra field: fetch exactly what is missing
+            long from = entry.localHeaderOffset + dataStart;
+            local = fetch("bytes=" + from + "-" + (from + entry.compressedSize - 1)).bytes;
+            dataStart = 0;
+            if (local.length < entry.compressedSize) {
+                throw new IOException("Short response for " + name + ": " + local.length + " of " + entry.compressedSize + " bytes");
+            }
+        }
+        return decompress(entry, local, dataStart);
+    }
+
+    private synchronized Map<String, Entry> getEntries() throws IOException {
+        if (entries != null) return entries;
+
+        Range tail = fetch("bytes=-" + TAIL_BYTES);
+        int eocd = findEndOfDirectory(tail.bytes);
+        if (eocd < 0 && tail.start > 0) {
+            // A long archive comment pushed the record further back
+            tail = fetch("bytes=-" + MAX_TAIL_BYTES);
+            eocd = findEndOfDirectory(tail.bytes);
+        }
+        if (eocd < 0) throw new IOException("Not a ZIP archive: " + url);
+        byte[] bytes = tail.bytes;
+
+        int count = readShort(bytes, eocd + 10);
+        long directorySize = readInt(bytes, eocd + 12) & 0xFFFFFFFFL;
+        long directoryOffset = readInt(bytes, eocd + 16) & 0xFFFFFFFFL;
+
+        byte[] directory;
+        int position;
+        if (directoryOffset >= tail.start) {
+            directory = bytes;
+            position = (int) (directoryOffset - tail.start);
+        } else {
+            directory = fetch("bytes=" + directoryOffset + "-" + (directoryOffset + directorySize - 1)).bytes;
+            position = 0;
+        }
+
+        Map<String, Entry> parsed = new HashMap<>();
+        for (int i = 0; i < count && position + 46 <= directory.length; i++) {
+            if (readInt(directory, position) != CENTRAL_SIGNATURE) {
+                throw new IOException("Corrupt central directory in " + url);
+            }
+            Entry entry = new Entry();
+            entry.method = readShort(directory, position + 10);
+            entry.compressedSize = readInt(directory, position + 20) & 0xFFFFFFFFL;
+            entry.size = readInt(directory, position + 24) & 0xFFFFFFFFL;
+            entry.nameLength = readShort(directory, position + 28);
+            entry.extraLength = readShort(directory, position + 30);
+            int commentLength = readShort(directory, position + 32);
+            int recordLength = 46 + entry.nameLength + entry.extraLength + commentLength;
+            if (position + recordLength > directory.length) {
+                throw new ZipException("Truncated central directory in " + url);
+            }
+            entry.localHeaderOffset = readInt(directory, position + 42) & 0xFFFFFFFFL;
+            String name = new String(directory, position + 46, entry.nameLength, StandardCharsets.UTF_8);
+            parsed.put(name, entry);
+            position += recordLength;
+        }
+        entries = parsed;
+        return entries;
+    }
+
+    private static int findEndOfDirectory(byte[] bytes) {
+        for (int i = bytes.length - 22; i >= 0; i--) {
+            if (readInt(bytes, i) == EOCD_SIGNATURE) return i;
+        }
+        return -1;
+    }
+
+    private Range fetch(String range) throws IOException {
+        HttpTransport.Response response = HttpTransport.getDefault().get(url)
+                .gzip(false)
+                .header("Range", range)
+                .execute();
+        if (response.getStatus() != 206) {
+            // A 200 would be the whole JAR; drop the connection rather than reading it
+            response.disconnect();
+            throw new IOException("Server does not support range requests (HTTP " + response.getStatus() + "): " + url);
+        }
+        try {
+            Range result = new Range();
+            String contentRange = response.getHeader("Content-Range");
+            if (contentRange != null && contentRange.startsWith("bytes ")) {
+                int dash = contentRange.indexOf('-');
+                result.start = Long.parseLong(contentRange.substring(6, dash).trim());
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            InputStream in = response.getBody();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            result.bytes = out.toByteArray();
+            return result;
+        } finally {
+            response.close();
+        }
+    }
+
+    private static byte[] decompress(Entry entry, byte[] data, int offset) throws IOException {
+        int compressedSize = (int) entry.compressedSize;
+        if (entry.method == 0) {
+            byte[] stored = new byte[compressedSize];
+            System.arraycopy(data, offset, stored, 0, compressedSize);
+            return stored;
+        }
+        if (entry.method != 8) throw new IOException("Unsupported compression method " + entry.method);
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(data, offset, compressedSize);
+            byte[] result = new byte[(int) entry.size];
+            int total = 0;
+            while (total < result.length && !inflater.finished()) {
+                int n = inflater.inflate(result, total, result.length - total);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) break;
+                total += n;
+            }
+            if (total != result.length) throw new IOException("Truncated entry data");
+            return result;
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt entry data", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static int readShort(byte[] b, int i) {
+        return (b[i] & 0xFF) | (b[i + 1] & 0xFF) << 8;
+    }
+
+    private static int readInt(byte[] b, int i) {
+        return (b[i] & 0xFF) | (b[i + 1] & 0xFF) << 8 | (b[i + 2] & 0xFF) << 16 | (b[i + 3] & 0xFF) << 24;
+    }
+
+    private static class Range {
+        long start;
+        byte[] bytes;
+    }
+
+    private static class Entry {
+        int method;
+        long compressedSize;
+        long size;
+        int nameLength;
+        int extraLength;
+        long localHeaderOffset;
+    }
+}
@@ -0,0 +1,99 @@
+package org.nsomatrix;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class RemoteMod {
+    public final String name;
+    public final String downloadUrl;
+    public final long size;    // bytes, -1 when the source does not report it
+
+    // Expected digests as lowercase hex, null when no source reported them. A duplicate found in another
+    // catalog can fill in the ones this entry lacks, so they are not final.
+    private volatile String sha1;
+    private volatile String md5;
+    private volatile String gitBlobSha; // git object id ("blob <size>\0" + content), as listed by GitHub trees
+    private volatile long lastModified = -1; // epoch millis, -1 when the source does not report it
+
+    // Source name -> download URL for every catalog this mod was found in, in arrival order
+    private final Map<String, String> mirrors = new LinkedHashMap<>();
+
+    public RemoteMod(String name, String downloadUrl) {
+        this(name, downloadUrl, -1, null, null, null);
+    }
+
+    public RemoteMod(String name, String downloadUrl, long size, String sha1) {
+        this(name, downloadUrl, size, sha1, null, null);
+    }
+
+    public RemoteMod(String name, String downloadUrl, long size, String sha1, String md5, String gitBlobSha) {
+        this.name = name;
+        this.downloadUrl = downloadUrl;
+        this.size = size;
+        this.sha1 = normalizeHex(sha1);
+        this.md5 = normalizeHex(md5);
+        this.gitBlobSha = normalizeHex(gitBlobSha);
+    }
+
+    public String getSha1() {
+        return sha1;
+    }
+
+    public String getMd5() {
+        return md5;
+    }
+
+    public String getGitBlobSha() {
+        return gitBlobSha;
+    }
+
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    public void setLastModified(long lastModified) {
+        this.lastModified = lastModified;
+    }
+
+    public boolean hasExpectedDigest() {
+        return sha1 != null || md5 != null || (gitBlobSha != null && size >= 0);
+    }
+
+    /** Copies digests from a duplicate entry for any this entry is missing. */
+    public synchronized void adoptDigests(RemoteMod other) {
+        if (sha1 == null) sha1 = other.sha1;
+        if (md5 == null) md5 = other.md5;
+        if (gitBlobSha == null) gitBlobSha = other.gitBlobSha;
+        if (lastModified < 0) lastModified = other.lastModified;
+    }
+
+    public synchronized void addMirror(String source, String url) {
+        mirrors.putIfAbsent(source, url);
+    }
+
+    public synchronized Map<String, String> getMirrors() {
+        return new LinkedHashMap<>(mirrors);
+    }
+
+    /**
+     * Two catalog entries describe the same file when their hashes match, or when the name and the
+     * size both match.
+     */
+    public boolean isSameContent(RemoteMod other) {
+        String mine = sha1;
+        String theirs = other.sha1;
+        if (mine != null && theirs != null) {
+            return mine.equals(theirs);
+        }
+        return name.equalsIgnoreCase(other.name) && size >= 0 && size == other.size;
+    }
+
+    private static String normalizeHex(String hex) {
+        return hex == null || hex.isEmpty() ? null : hex.toLowerCase();
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,470 @@
+package org.nsomatrix;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.prefs.Preferences;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Two-way sync of emulator record stores (MIDlet save data) with the user's cloud storage folder.
+ *
+ * Each configured save folder is mirrored under saves/&lt;folder name&gt;/ in the cloud. A manifest in
+ * ~/.matrix_launcher_save_sync.json holds the MD5, size and mtime of every file as of its last sync,
+ * plus the server's etag, so a sync hashes only files whose size or mtime moved and transfers only files
+ * that changed on one side. A file changed on both sides is a conflict: the cloud copy is kept under
+ * save-conflicts/ and the local one wins, since it is what the emulator last wrote.
+ *
+ * Deletions are not synced; a file missing on one side is copied from the other, so a lost save can be
+ * restored but never deleted everywhere by accident. Downloads are deferred while an emulator is running
+ * so no record store is replaced under a game that has it open.
+ */
+public class SaveSync {
+    public static final String PREF_FOLDERS = "save_sync_folders";
+    public static final String PREF_INTERVAL_MIN = "save_sync_interval_min";
+    public static final int DEFAULT_INTERVAL_MIN = 15;
+    private static final String REMOTE_FOLDER = "saves";
+    private static final String CONFLICT_FOLDER = "save-conflicts";
+    // Downloads are written here first and moved over the save when complete
+    private static final String PART_SUFFIX = ".sync-part";
+    private static final File STORAGE_FILE = new File(System.getProperty("user.home"), ".matrix_launcher_save_sync.json");
+    private static final SaveSync DEFAULT = new SaveSync(STORAGE_FILE);
+
+    private final File manifestFile;
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final Object syncLock = new Object();
+    private final AtomicBoolean queued = new AtomicBoolean();
+    private SupabaseStorageClient client;
+    private String userId;
+    private ScheduledFuture<?> scheduled;
+
+    public SaveSync(File manifestFile) {
+        this.manifestFile = manifestFile;
+    }
+
+    public static SaveSync getDefault() {
+        return DEFAULT;
+    }
+
+    /** Folders MicroEmulator keeps record stores in, where they exist on this machine. */
+    public static List<File> defaultFolders() {
+        List<File> folders = new ArrayList<>();
+        File microemulator = new File(System.getProperty("user.home"), ".microemulator");
+        if (microemulator.isDirectory()) folders.add(microemulator);
+        return folders;
+    }
+
+    /** The configured save folders, one per line in the preference, or the defaults if it was never set. */
+    public static List<File> folders(Preferences prefs) {
+        String value = prefs.get(PREF_FOLDERS, null);
+        if (value == null) return defaultFolders();
+        List<File> folders = new ArrayList<>();
+        for (String line : value.split("\\R")) {
+            if (!line.trim().isEmpty()) folders.add(new File(line.trim()));
+        }
+        return folders;
+    }
+
+    /** Starts syncing for a signed-in user: on the configured interval and after emulators exit. */
+    public synchronized void attach(SupabaseStorageClient client, String userId) {
+        this.client = client;
+        this.userId = userId;
+        reschedule(Preferences.userNodeForPackage(UI.class));
+    }
+
+    public synchronized void detach() {
+        client = null;
+        userId = null;
+        if (scheduled != null) {
+            scheduled.cancel(false);
+            scheduled = null;
+        }
+    }
+
+    /** Follows changes to the sync interval preference. */
+    public void followPreference(Preferences prefs) {
+        prefs.addPreferenceChangeListener(evt -> {
+            if (PREF_INTERVAL_MIN.equals(evt.getKey())) reschedule(prefs);
+        });
+    }
+
+    private synchronized void reschedule(Preferences prefs) {
+        if (scheduled != null) {
+            scheduled.cancel(false);
+            scheduled = null;
+        }
+        int minutes = prefs.getInt(PREF_INTERVAL_MIN, DEFAULT_INTERVAL_MIN);
+        if (client == null || minutes <= 0) return;
+        long period = TimeUnit.MINUTES.toMillis(minutes);
+        scheduled = TaskScheduler.getDefault().scheduleWithFixedDelay(TaskScheduler.Pool.IO,
+                TaskScheduler.Priority.BACKGROUND, this::requestSync, period, period);
+    }
+
+    /**
+     * Queues a background sync if a user is signed in. Requests made while one is already queued are
+     * folded into it.
+     */
+    public void requestSync() {
+        synchronized (this) {
+            if (client == null) return;
+        }
+        if (!queued.compareAndSet(false, true)) return;
+        TaskScheduler.getDefault().submit(TaskScheduler.Pool.IO, TaskScheduler.Priority.BACKGROUND, () -> {
+            queued.set(false);
+            try {
+                Report report = sync(null);
+                if (report.hasChanges()) System.out.println("[SaveSync] " + report);
+            } catch (Exception e) {
+                System.err.println("[SaveSync] Sync failed: " + e.getMessage());
+            }
+        });
+    }
+
+    /** Runs one sync now on the calling thread. Only one sync runs at a time. */
+    public Report sync(SupabaseStorageClient.BatchProgress progress) throws IOException, InterruptedException {
+        SupabaseStorageClient client;
+        String userId;
+        synchronized (this) {
+            client = this.client;
+            userId = this.userId;
+        }
+        if (client == null) throw new IllegalStateException("Not signed in");
+
+        synchronized (syncLock) {
+            Map<String, Map<String, Entry>> allManifests = loadManifests();
+            Map<String, Entry> manifest = allManifests.computeIfAbsent(userId, k -> new HashMap<>());
+            Map<String, File> roots = labels(folders(Preferences.userNodeForPackage(UI.class)));
+            Map<String, LocalFile> local = scan(roots, manifest);
+            Map<String, StorageObject> remote = new HashMap<>();
+            for (StorageObject object : client.listTree(REMOTE_FOLDER)) remote.put(object.name, object);
+
+            Report report = new Report();
+            boolean emulatorRunning = EmulatorLauncher.isAnyRunning();
+            Map<String, File> uploads = new LinkedHashMap<>();
+            Map<String, File> downloads = new LinkedHashMap<>();
+            Set<String> keys = new HashSet<>(manifest.keySet());
+            keys.addAll(local.keySet());
+            for (String key : remote.keySet()) {
+                // Remote files only sync back if they belong to a configured folder
+                if (targetFor(key, local, roots) != null) keys.add(key);
+            }
+
+            for (String key : keys) {
+                Entry base = manifest.get(key);
+                LocalFile file = local.get(key);
+                StorageObject object = remote.get(key);
+                if (file == null && object == null) {
+                    manifest.remove(key);
+                    continue;
+                }
+                boolean localChanged = file != null && (base == null || !file.md5.equals(base.md5));
+                boolean remoteChanged = object != null && (base == null || !matches(object, base.md5, base.remoteEtag));
+
+                if (file != null && object != null) {
+                    if ((!localChanged && !remoteChanged) || sameContent(client, object, file.md5)) {
+                        manifest.put(key, new Entry(file, object.etag));
+                    } else if (localChanged && !remoteChanged) {
+                        uploads.put(key, file.file);
+                    } else if (!localChanged) {
+                        if (emulatorRunning) report.deferred++;
+                        else downloads.put(key, file.file);
+                    } else {
+                        if (keepConflict(client, key)) {
+                            report.conflicts.add(key);
+                            uploads.put(key, file.file);
+                        } else {
+                            report.failed.put(key, "could not keep the cloud copy of a conflicting change");
+                        }
+                    }
+                } else if (file != null) {
+                    uploads.put(key, file.file);
+                } else if (targetFor(key, local, roots) == null) {
+                    // Its folder is no longer configured; keep the record in case it comes back
+                    continue;
+                } else if (emulatorRunning) {
+                    report.deferred++;
+                } else {
+                    downloads.put(key, targetFor(key, local, roots));
+                }
+            }
+
+            int total = uploads.size() + downloads.size();
+            SupabaseStorageClient.BatchResult uploaded = client.uploadFiles(uploads, scaled(progress, 0, total));
+            for (String key : uploaded.getSucceeded()) {
+                manifest.put(key, new Entry(local.get(key), null));
+                report.uploaded++;
+            }
+            report.failed.putAll(uploaded.getFailed());
+            if (report.uploaded > 0) {
+                // Compressed objects do not carry the file's MD5 as etag; remember the etag they got
+                for (StorageObject object : client.listTree(REMOTE_FOLDER)) {
+                    Entry entry = manifest.get(object.name);
+                    if (entry != null && entry.remoteEtag == null) entry.remoteEtag = object.etag;
+                }
+            }
+
+            Map<String, File> parts = new LinkedHashMap<>();
+            for (Map.Entry<String, File> download : downloads.entrySet()) {
+                File target = download.getValue();
+                if (!target.getParentFile().isDirectory() && !target.getParentFile().mkdirs()) {
+                    report.failed.put(download.getKey(), "could not create " + target.getParent());
+                    continue;
+                }
+                parts.put(download.getKey(), new File(target.getPath() + PART_SUFFIX));
+            }
+            SupabaseStorageClient.BatchResult downloaded = client.downloadFiles(parts, scaled(progress, uploads.size(), total));
+            for (String key : downloaded.getSucceeded()) {
+                Path part = parts.get(key).toPath();
+                File target = downloads.get(key);
+                try {
+                    moveIntoPlace(part, target.toPath());
+                    manifest.put(key, new Entry(hash(target), remote.get(key).etag));
+                    report.downloaded++;
+                } catch (IOException e) {
+                    report.failed.put(key, e.getMessage());
+                }
+            }
+            for (Map.Entry<String, String> failure : downloaded.getFailed().entrySet()) {
+                report.failed.put(failure.getKey(), failure.getValue());
+                parts.get(failure.getKey()).delete();
+            }
+
+            saveManifests(allManifests);
+            return report;
+        }
+    }
+
+    // Hashes local save files, reusing the manifest's MD5 for files whose size and mtime are unchanged
+    private Map<String, LocalFile> scan(Map<String, File> roots, Map<String, Entry> manifest) throws IOException {
+        Map<String, LocalFile> files = new HashMap<>();
+        for (Map.Entry<String, File> folder : roots.entrySet()) {
+            Path root = folder.getValue().toPath();
+            if (!Files.isDirectory(root)) continue;
+            List<Path> paths;
+            try (Stream<Path> walk = Files.walk(root)) {
+                paths = walk.filter(Files::isRegularFile)
+                        .filter(p -> !p.getFileName().toString().endsWith(PART_SUFFIX))
+                        .collect(Collectors.toList());
+            }
+            for (Path path : paths) {
+                String relative = root.relativize(path).toString().replace(File.separatorChar, '/');
+                String key = REMOTE_FOLDER + "/" + folder.getKey() + "/" + relative;
+                File file = path.toFile();
+                Entry base = manifest.get(key);
+                if (base != null && base.size == file.length() && base.mtime == file.lastModified()) {
+                    files.put(key, new LocalFile(file, base));
+                } else {
+                    files.put(key, new LocalFile(file, hash(file)));
+                }
+            }
+        }
+        return files;
+    }
+
+    // The local file a remote key maps to, or null if it lies outside every configured folder
+    private static File targetFor(String key, Map<String, LocalFile> local, Map<String, File> roots) {
+        LocalFile file = local.get(key);
+        if (file != null) return file.file;
+        for (Map.Entry<String, File> folder : roots.entrySet()) {
+            String prefix = REMOTE_FOLDER + "/" + folder.getKey() + "/";
+            if (key.startsWith(prefix)) {
+                return new File(folder.getValue(), key.substring(prefix.length()).replace('/', File.separatorChar));
+            }
+        }
+        return null;
+    }
+
+    // Remote folder name per local folder: its own name, numbered if two folders share one
+    private static Map<String, File> labels(List<File> folders) {
+        Map<String, File> labels = new LinkedHashMap<>();
+        for (File folder : folders) {
+            String label = folder.getName();
+            for (int n = 2; labels.containsKey(label); n++) label = folder.getName() + "-" + n;
+            labels.put(label, folder);
+        }
+        return labels;
+    }
+
+    private boolean keepConflict(SupabaseStorageClient client, String key) {
+        String stamp = new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date());
+        String copy = CONFLICT_FOLDER + key.substring(REMOTE_FOLDER.length()) + "." + stamp;
+        try {
+            client.copyFile(key, copy);
+            System.out.println("[SaveSync] Conflict on " + key + "; cloud copy kept as " + copy);
+            return true;
+        } catch (IOException e) {
+            System.err.println("[SaveSync] Could not keep conflicting " + key + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    // True if the object holds the content with this MD5, or is the object last seen with this etag
+    private static boolean matches(StorageObject object, String md5, String etag) {
+        if (object.etag == null) return false;
+        if (object.etag.equals(etag)) return true;
+        // Objects uploaded in one piece carry their MD5 as etag
+        return object.etag.replace("\"", "").toLowerCase(Locale.ROOT).equals(md5);
+    }
+
+    // Like matches, but for compressed objects, whose etag is not their MD5, also asks for the MD5
+    // recorded at upload. Without a manifest entry that is the only way to tell they are the same file
+    private static boolean sameContent(SupabaseStorageClient client, StorageObject object, String md5) {
+        if (matches(object, md5, null)) return true;
+        try {
+            return md5.equals(client.contentMd5(object.name));
+        } catch (IOException e) {
+            System.err.println("[SaveSync] Could not read the checksum of " + object.name + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    private static void moveIntoPlace(Path part, Path target) throws IOException {
+        try {
+            Files.move(part, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(part, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    // Maps one phase's file counts onto the whole sync
+    private static SupabaseStorageClient.BatchProgress scaled(SupabaseStorageClient.BatchProgress progress,
+                                                              int filesBefore, int filesTotal) {
+        if (progress == null) return null;
+        return (bytesDone, bytesTotal, filesDone, phaseTotal) ->
+                progress.onProgress(bytesDone, bytesTotal, filesBefore + filesDone, filesTotal);
+    }
+
+    // Size and mtime are taken before reading, so a write during hashing shows up as a change next time
+    private static Entry hash(File file) throws IOException {
+        Entry entry = new Entry();
+        entry.size = file.length();
+        entry.mtime = file.lastModified();
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("MD5 not available", e);
+        }
+        try (InputStream in = Files.newInputStream(file.toPath())) {
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        entry.md5 = ModIntegrity.hex(digest.digest());
+        return entry;
+    }
+
+    private Map<String, Map<String, Entry>> loadManifests() {
+        if (!manifestFile.exists()) return new HashMap<>();
+        try {
+            return mapper.readValue(manifestFile, new TypeReference<Map<String, Map<String, Entry>>>() {});
+        } catch (IOException e) {
+            e.printStackTrace();
+            return new HashMap<>();
+        }
+    }
+
+    private void saveManifests(Map<String, Map<String, Entry>> manifests) {
+        File temp = new File(manifestFile.getPath() + ".tmp");
+        try {
+            mapper.writeValue(temp, manifests);
+            Files.move(temp.toPath(), manifestFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // A file with the size and mtime it had when its MD5 was taken, which is what the manifest records:
+    // the file may be written again before it is uploaded, and the next scan must then hash it afresh
+    private static class LocalFile {
+        final File file;
+        final String md5;
+        final long size;
+        final long mtime;
+
+        LocalFile(File file, Entry hashed) {
+            this.file = file;
+            this.md5 = hashed.md5;
+            this.size = hashed.size;
+            this.mtime = hashed.mtime;
+        }
+    }
+
+    /** A file's state as of its last sync. */
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class Entry {
+        public String md5;
+        public long size;
+        public long mtime;
+        /** The cloud copy's etag when last seen, or null right after an upload. */
+        public String remoteEtag;
+
+        public Entry() {
+        }
+
+        Entry(LocalFile file, String remoteEtag) {
+            this.md5 = file.md5;
+            this.size = file.size;
+            this.mtime = file.mtime;
+            this.remoteEtag = remoteEtag;
+        }
+
+        Entry(Entry hashed, String remoteEtag) {
+            this.md5 = hashed.md5;
+            this.size = hashed.size;
+            this.mtime = hashed.mtime;
+            this.remoteEtag = remoteEtag;
+        }
+    }
+
+    /** What one sync did. */
+    public static class Report {
+        public int uploaded;
+        public int downloaded;
+        /** Downloads postponed because an emulator was running. */
+        public int deferred;
+        public final List<String> conflicts = new ArrayList<>();
+        public final Map<String, String> failed = new LinkedHashMap<>();
+
+        public boolean hasChanges() {
+            return uploaded > 0 || downloaded > 0 || !conflicts.isEmpty() || !failed.isEmpty();
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder text = new StringBuilder()
+                    .append(uploaded).append(" uploaded, ")
+                    .append(downloaded).append(" downloaded");
+            if (deferred > 0) text.append(", ").append(deferred).append(" waiting for the emulator to close");
+            if (!conflicts.isEmpty()) text.append(", ").append(conflicts.size()).append(" conflicts");
+            if (!failed.isEmpty()) text.append(", ").append(failed.size()).append(" failed");
+            return text.toString();
+        }
+    }
+}
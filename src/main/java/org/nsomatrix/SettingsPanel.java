@@ -14,6 +14,17 @@ public class SettingsPanel extends JPanel {
     private final JButton chooseDirBtn;
     private final JComboBox<String> themeSelector;
     private final JComboBox<String> emulatorSelector;
+    private final JPasswordField githubTokenField;
+    private final JSpinner bandwidthLimitSpinner;
+    private final JSpinner hostLimitSpinner;
+    private final JTextField bandwidthScheduleField;
+    private final JTextArea localSourcesArea;
+    private final JTextArea mirrorSourcesArea;
+    private final JCheckBox lanCacheCheckBox;
+    private final JSpinner uploadChunkSpinner;
+    private final JTextArea saveFoldersArea;
+    private final JSpinner saveSyncSpinner;
+    private final JCheckBox compressionCheckBox;
     private final UI appUI;  // reference to UI for callbacks
     private final Preferences prefs;
 
@@ -21,6 +32,17 @@ public class SettingsPanel extends JPanel {
     private String originalDownloadDir;
     private String originalTheme;
     private String originalEmulator;
+    private String originalGithubToken;
+    private long originalBandwidthLimit;
+    private long originalHostLimit;
+    private String originalBandwidthSchedule;
+    private String originalLocalSources;
+    private String originalMirrorSources;
+    private boolean originalLanCache;
+    private int originalUploadChunk;
+    private String originalSaveFolders;
+    private int originalSaveSyncInterval;
+    private boolean originalCompression;
 
     public SettingsPanel(UI ui) {
         this.appUI = ui;
@@ -117,6 +139,172 @@ public class SettingsPanel extends JPanel {
             // Can notify appUI or other components here if you want live updates
         });
 
+        // Optional GitHub token, raises the API rate limit used when fetching the mod catalog
+        JLabel githubTokenLabel = new JLabel("GitHub Token (optional):");
+        gbc.gridx = 0;
+        gbc.gridy = 3;
+        gbc.gridwidth = 1;
+        gbc.weightx = 0;
+        gbc.fill = GridBagConstraints.NONE;
+        formPanel.add(githubTokenLabel, gbc);
+
+        githubTokenField = new JPasswordField(30);
+        githubTokenField.setToolTipText("Personal access token used for GitHub API requests");
+        gbc.gridx = 1;
+        gbc.gridwidth = 2;
+        gbc.weightx = 1.0;
+        gbc.fill = GridBagConstraints.HORIZONTAL;
+        formPanel.add(githubTokenField, gbc);
+
+        // Download bandwidth limits, 0 meaning unlimited
+        JLabel bandwidthLimitLabel = new JLabel("Download Limit (KB/s):");
+        gbc.gridx = 0;
+        gbc.gridy = 4;
+        gbc.gridwidth = 1;
+        gbc.weightx = 0;
+        gbc.fill = GridBagConstraints.NONE;
+        formPanel.add(bandwidthLimitLabel, gbc);
+
+        bandwidthLimitSpinner = new JSpinner(new SpinnerNumberModel(0L, 0L, 1024L * 1024L, 64L));
+        bandwidthLimitSpinner.setToolTipText("Total download bandwidth, 0 for unlimited");
+        gbc.gridx = 1;
+        gbc.gridwidth = 2;
+        gbc.weightx = 1.0;
+        gbc.fill = GridBagConstraints.HORIZONTAL;
+        formPanel.add(bandwidthLimitSpinner, gbc);
+
+        JLabel hostLimitLabel = new JLabel("Per-Server Limit (KB/s):");
+        gbc.gridx = 0;
+        gbc.gridy = 5;
+        gbc.gridwidth = 1;
+        gbc.weightx = 0;
+        gbc.fill = GridBagConstraints.NONE;
+        formPanel.add(hostLimitLabel, gbc);
+
+        hostLimitSpinner = new JSpinner(new SpinnerNumberModel(0L, 0L, 1024L * 1024L, 64L));
+        hostLimitSpinner.setToolTipText("Download bandwidth per server, 0 for unlimited");
+        gbc.gridx = 1;
+        gbc.gridwidth = 2;
+        gbc.weightx = 1.0;
+        gbc.fill = GridBagConstraints.HORIZONTAL;
+        formPanel.add(hostLimitSpinner, gbc);
+
+        JLabel bandwidthScheduleLabel = new JLabel("Limit Schedule:");
+        gbc.gridx = 0;
+        gbc.gridy = 6;
+        gbc.gridwidth = 1;
+        gbc.weightx = 0;
+        gbc.fill = GridBagConstraints.NONE;
+        formPanel.add(bandwidthScheduleLabel, gbc);
+
+        bandwidthScheduleField = new JTextField(30);
+        bandwidthScheduleField.setToolTipText("Time-of-day limits overriding the download limit, e.g. 09:00-18:00=256;18:00-09:00=0");
+        gbc.gridx = 1;
+        gbc.gridwidth = 2;
+        gbc.weightx = 1.0;
+        gbc.fill = GridBagConstraints.HORIZONTAL;
+        formPanel.add(bandwidthScheduleField, gbc);
+
+        // Extra mod sources, e.g. a share or cache server on the shop's LAN
+        JLabel localSourcesLabel = new JLabel("Local Mod Folders:");
+        gbc.gridx = 0;
+        gbc.gridy = 7;
+        gbc.gridwidth = 1;
+        gbc.weightx = 0;
+        gbc.fill = GridBagConstraints.NONE;
+        formPanel.add(localSourcesLabel, gbc);
+
+        localSourcesArea = new JTextArea(2, 30);
+        localSourcesArea.setToolTipText("Folders to list mods from, one per line");
+        gbc.gridx = 1;
+        gbc.gridwidth = 2;
+        gbc.weightx = 1.0;
+        gbc.fill = GridBagConstraints.HORIZONTAL;
+        formPanel.add(new JScrollPane(localSourcesArea), gbc);
+
+        JLabel mirrorSourcesLabel = new JLabel("LAN Mirror URLs:");
+        gbc.gridx = 0;
+        gbc.gridy = 8;
+        gbc.gridwidth = 1;
+        gbc.weightx = 0;
+        gbc.fill = GridBagConstraints.NONE;
+        formPanel.add(mirrorSourcesLabel, gbc);
+
+        mirrorSourcesArea = new JTextArea(2, 30);
+        mirrorSourcesArea.setToolTipText("HTTP mirrors serving index.json or a directory listing, one per line");
+        gbc.gridx = 1;
+        gbc.gridwidth = 2;
+        gbc.weightx = 1.0;
+        gbc.fill = GridBagConstraints.HORIZONTAL;
+        formPanel.add(new JScrollPane(mirrorSourcesArea), gbc);
+
+        lanCacheCheckBox = new JCheckBox("Share downloaded mods with launchers on the local network");
+        lanCacheCheckBox.setToolTipText("Other launchers on the LAN download mods from this one, and this one from them");
+        gbc.gridx = 1;
+        gbc.gridy = 9;
+        gbc.gridwidth = 2;
+        gbc.weightx = 1.0;
+        gbc.fill = GridBagConstraints.HORIZONTAL;
+        formPanel.add(lanCacheCheckBox, gbc);
+
+        JLabel uploadChunkLabel = new JLabel("Upload Chunk Size (MB):");
+        gbc.gridx = 0;
+        gbc.gridy = 10;
+        gbc.gridwidth = 1;
+        gbc.weightx = 0;
+        gbc.fill = GridBagConstraints.NONE;
+        formPanel.add(uploadChunkLabel, gbc);
+
+        uploadChunkSpinner = new JSpinner(new SpinnerNumberModel(TusUploader.DEFAULT_CHUNK_SIZE_MB, 1, 64, 1));
+        uploadChunkSpinner.setToolTipText("Cloud uploads larger than this are sent in resumable chunks of this size");
+        gbc.gridx = 1;
+        gbc.gridwidth = 2;
+        gbc.weightx = 1.0;
+        gbc.fill = GridBagConstraints.HORIZONTAL;
+        formPanel.add(uploadChunkSpinner, gbc);
+
+        // Emulator record stores backed up to the account's cloud storage
+        JLabel saveFoldersLabel = new JLabel("Save Data Folders:");
+        gbc.gridx = 0;
+        gbc.gridy = 11;
+        gbc.gridwidth = 1;
+        gbc.weightx = 0;
+        gbc.fill = GridBagConstraints.NONE;
+        formPanel.add(saveFoldersLabel, gbc);
+
+        saveFoldersArea = new JTextArea(2, 30);
+        saveFoldersArea.setToolTipText("Emulator record store folders to sync with your account, one per line");
+        gbc.gridx = 1;
+        gbc.gridwidth = 2;
+        gbc.weightx = 1.0;
+        gbc.fill = GridBagConstraints.HORIZONTAL;
+        formPanel.add(new JScrollPane(saveFoldersArea), gbc);
+
+        JLabel saveSyncLabel = new JLabel("Sync Saves Every (min):");
+        gbc.gridx = 0;
+        gbc.gridy = 12;
+        gbc.gridwidth = 1;
+        gbc.weightx = 0;
+        gbc.fill = GridBagConstraints.NONE;
+        formPanel.add(saveSyncLabel, gbc);
+
+        saveSyncSpinner = new JSpinner(new SpinnerNumberModel(SaveSync.DEFAULT_INTERVAL_MIN, 0, 1440, 5));
+        saveSyncSpinner.setToolTipText("0 syncs only when an emulator closes or on request");
+        gbc.gridx = 1;
+        gbc.gridwidth = 2;
+        gbc.weightx = 1.0;
+        gbc.fill = GridBagConstraints.HORIZONTAL;
+        formPanel.add(saveSyncSpinner, gbc);
+
+        compressionCheckBox = new JCheckBox("Compress cloud uploads");
+        compressionCheckBox.setToolTipText("Saves and configs are stored gzip-compressed; other launchers decompress them on download");
+        gbc.gridx = 1;
+        gbc.gridy = 13;
+        gbc.gridwidth = 2;
+        gbc.weightx = 1.0;
+        gbc.fill = GridBagConstraints.HORIZONTAL;
+        formPanel.add(compressionCheckBox, gbc);
+
         outerContentPanel.add(formPanel, BorderLayout.NORTH);
 
         JPanel buttonsPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
@@ -132,8 +320,9 @@ public class SettingsPanel extends JPanel {
         loadSettingsToUI();
 
         saveBtn.addActionListener(e -> {
-            onSave();
-            loadSettingsToUI(); // refresh originals on save
+            if (onSave()) {
+                loadSettingsToUI(); // refresh originals on save
+            }
         });
         cancelBtn.addActionListener(e -> onCancel());
         checkUpdatesBtn.addActionListener(e -> onCheckForUpdates());
@@ -143,10 +332,37 @@ public class SettingsPanel extends JPanel {
         originalDownloadDir = prefs.get("download_dir", System.getProperty("user.home") + File.separator + "Downloads" + File.separator + "mods");
         originalTheme = prefs.get("app_theme", "Dark");
         originalEmulator = prefs.get("app_emulator", "Microemulator");
+        originalGithubToken = prefs.get("github_token", "");
+        originalBandwidthLimit = prefs.getLong(BandwidthLimiter.PREF_GLOBAL_LIMIT, 0);
+        originalHostLimit = prefs.getLong(BandwidthLimiter.PREF_HOST_LIMIT, 0);
+        originalBandwidthSchedule = prefs.get(BandwidthLimiter.PREF_SCHEDULE, "");
+        originalLocalSources = prefs.get(ModsPanel.PREF_LOCAL_SOURCES, "");
+        originalMirrorSources = prefs.get(ModsPanel.PREF_MIRROR_SOURCES, "");
+        originalLanCache = prefs.getBoolean(LanCache.PREF_ENABLED, false);
+        originalUploadChunk = prefs.getInt(TusUploader.PREF_CHUNK_SIZE_MB, TusUploader.DEFAULT_CHUNK_SIZE_MB);
+        StringBuilder saveFolders = new StringBuilder();
+        for (File folder : SaveSync.folders(prefs)) {
+            if (saveFolders.length() > 0) saveFolders.append('\n');
+            saveFolders.append(folder.getPath());
+        }
+        originalSaveFolders = saveFolders.toString();
+        originalSaveSyncInterval = prefs.getInt(SaveSync.PREF_INTERVAL_MIN, SaveSync.DEFAULT_INTERVAL_MIN);
+        originalCompression = prefs.getBoolean(StorageCompression.PREF_ENABLED, true);
 
         downloadDirField.setText(originalDownloadDir);
         themeSelector.setSelectedItem(originalTheme);
         emulatorSelector.setSelectedItem(originalEmulator);
+        githubTokenField.setText(originalGithubToken);
+        bandwidthLimitSpinner.setValue(originalBandwidthLimit);
+        hostLimitSpinner.setValue(originalHostLimit);
+        bandwidthScheduleField.setText(originalBandwidthSchedule);
+        localSourcesArea.setText(originalLocalSources);
+        mirrorSourcesArea.setText(originalMirrorSources);
+        lanCacheCheckBox.setSelected(originalLanCache);
+        uploadChunkSpinner.setValue(originalUploadChunk);
+        saveFoldersArea.setText(originalSaveFolders);
+        saveSyncSpinner.setValue(originalSaveSyncInterval);
+        compressionCheckBox.setSelected(originalCompression);
     }
 
     private void chooseDownloadDirectory() {
@@ -159,7 +375,22 @@ public class SettingsPanel extends JPanel {
         }
     }
 
-    private void onSave() {
+    private boolean onSave() {
+        String schedule = bandwidthScheduleField.getText().trim();
+        try {
+            BandwidthLimiter.parseSchedule(schedule);
+        } catch (IllegalArgumentException e) {
+            JOptionPane.showMessageDialog(this, e.getMessage(), "Invalid Limit Schedule", JOptionPane.ERROR_MESSAGE);
+            return false;
+        }
+        for (String url : mirrorSourcesArea.getText().trim().split("\\s+")) {
+            if (!url.isEmpty() && !url.startsWith("http://") && !url.startsWith("https://")) {
+                JOptionPane.showMessageDialog(this, "Mirror URLs must start with http:// or https://: " + url,
+                        "Invalid Mirror URL", JOptionPane.ERROR_MESSAGE);
+                return false;
+            }
+        }
+
         prefs.put("download_dir", downloadDirField.getText());
 
         String theme = (String) themeSelector.getSelectedItem();
@@ -176,17 +407,42 @@ public class SettingsPanel extends JPanel {
             // notify appUI or others if needed
         }
 
+        prefs.put("github_token", new String(githubTokenField.getPassword()).trim());
+        prefs.putLong(BandwidthLimiter.PREF_GLOBAL_LIMIT, ((Number) bandwidthLimitSpinner.getValue()).longValue());
+        prefs.putLong(BandwidthLimiter.PREF_HOST_LIMIT, ((Number) hostLimitSpinner.getValue()).longValue());
+        prefs.put(BandwidthLimiter.PREF_SCHEDULE, schedule);
+        prefs.put(ModsPanel.PREF_LOCAL_SOURCES, localSourcesArea.getText().trim());
+        prefs.put(ModsPanel.PREF_MIRROR_SOURCES, mirrorSourcesArea.getText().trim());
+        prefs.putBoolean(LanCache.PREF_ENABLED, lanCacheCheckBox.isSelected());
+        prefs.putInt(TusUploader.PREF_CHUNK_SIZE_MB, ((Number) uploadChunkSpinner.getValue()).intValue());
+        prefs.put(SaveSync.PREF_FOLDERS, saveFoldersArea.getText().trim());
+        prefs.putInt(SaveSync.PREF_INTERVAL_MIN, ((Number) saveSyncSpinner.getValue()).intValue());
+        prefs.putBoolean(StorageCompression.PREF_ENABLED, compressionCheckBox.isSelected());
+
         JOptionPane.showMessageDialog(this, "Settings saved successfully!", "Save", JOptionPane.INFORMATION_MESSAGE);
+        return true;
     }
 
     private void onCancel() {
         downloadDirField.setText(originalDownloadDir);
         themeSelector.setSelectedItem(originalTheme);
         emulatorSelector.setSelectedItem(originalEmulator);
+        githubTokenField.setText(originalGithubToken);
+        bandwidthLimitSpinner.setValue(originalBandwidthLimit);
+        hostLimitSpinner.setValue(originalHostLimit);
+        bandwidthScheduleField.setText(originalBandwidthSchedule);
+        localSourcesArea.setText(originalLocalSources);
+        mirrorSourcesArea.setText(originalMirrorSources);
+        lanCacheCheckBox.setSelected(originalLanCache);
+        uploadChunkSpinner.setValue(originalUploadChunk);
+        saveFoldersArea.setText(originalSaveFolders);
+        saveSyncSpinner.setValue(originalSaveSyncInterval);
+        compressionCheckBox.setSelected(originalCompression);
     }
 
     private void onCheckForUpdates() {
-        SwingWorker<Void, Void> worker = new SwingWorker<Void, Void>() {
+        BackgroundTask<Void, Void> worker = new BackgroundTask<Void, Void>(
+                TaskScheduler.Pool.IO, TaskScheduler.Priority.INTERACTIVE, this) {
             String latestVersion = null;
             boolean updateAvailable = false;
 
@@ -216,7 +472,8 @@ public class SettingsPanel extends JPanel {
                             JOptionPane.YES_NO_OPTION);
 
                     if (dialogResult == JOptionPane.YES_OPTION) {
-                        SwingWorker<Void, Void> downloadWorker = new SwingWorker<Void, Void>() {
+                        BackgroundTask<Void, Void> downloadWorker = new BackgroundTask<Void, Void>(
+                                TaskScheduler.Pool.IO, TaskScheduler.Priority.INTERACTIVE, SettingsPanel.this) {
                             @Override
                             protected Void doInBackground() throws Exception {
                                 File tempDir = new File(System.getProperty("java.io.tmpdir"));
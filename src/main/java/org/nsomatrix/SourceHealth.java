@@ -0,0 +1,164 @@
+package org.nsomatrix;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tracks how each mod source has been answering (recent latencies and error rate) and acts as a circuit
+ * breaker for it. After repeated failures a source is opened and skipped without a network call; once
+ * the cool-down has passed a single half-open probe is let through, which closes the circuit again on
+ * success or re-opens it for longer on failure.
+ */
+public class SourceHealth {
+    public enum State {CLOSED, OPEN, HALF_OPEN}
+
+    private static final int WINDOW = 20;
+    private static final int MIN_CALLS = 4;
+    private static final double FAILURE_RATE_TO_OPEN = 0.5;
+    private static final int CONSECUTIVE_FAILURES_TO_OPEN = 3;
+    private static final long BASE_COOL_DOWN_MS = 30_000;
+    private static final long MAX_COOL_DOWN_MS = 5 * 60_000;
+    // Latencies above this fraction of the timeout count as slow, which alone marks a source degraded
+    private static final double SLOW_FRACTION = 0.5;
+
+    private static final Map<String, SourceHealth> BY_SOURCE = new ConcurrentHashMap<>();
+
+    private final String source;
+    // Ring buffers over the last WINDOW calls
+    private final long[] latencies = new long[WINDOW];
+    private final boolean[] failed = new boolean[WINDOW];
+    private int calls;
+    private int next;
+    private int consecutiveFailures;
+    private State state = State.CLOSED;
+    private long openedAt;
+    private long coolDownMs = BASE_COOL_DOWN_MS;
+    private boolean probeInFlight;
+    private String lastError;
+
+    private SourceHealth(String source) {
+        this.source = source;
+    }
+
+    /** The shared health record for a source, by its display name. */
+    public static SourceHealth forSource(String name) {
+        return BY_SOURCE.computeIfAbsent(name, SourceHealth::new);
+    }
+
+    /**
+     * Whether a request may be sent now. An open circuit refuses until its cool-down is over and then
+     * admits exactly one probe; everything else is refused until that probe has reported back.
+     */
+    public synchronized boolean allowRequest() {
+        if (state == State.CLOSED) return true;
+        if (state == State.OPEN && System.currentTimeMillis() - openedAt >= coolDownMs) {
+            state = State.HALF_OPEN;
+            probeInFlight = false;
+        }
+        if (state == State.HALF_OPEN && !probeInFlight) {
+            probeInFlight = true;
+            System.out.println("[SourceHealth] Probing " + source);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Gives back a probe admitted by {@link #allowRequest()} whose call ended without an outcome, e.g.
+     * because the fetch was cancelled, so the next request may probe instead.
+     */
+    public synchronized void releaseProbe() {
+        probeInFlight = false;
+    }
+
+    public synchronized void recordSuccess(long latencyMs) {
+        record(latencyMs, false);
+        consecutiveFailures = 0;
+        if (state != State.CLOSED) {
+            System.out.println("[SourceHealth] " + source + " recovered, closing circuit");
+            state = State.CLOSED;
+            coolDownMs = BASE_COOL_DOWN_MS;
+            probeInFlight = false;
+        }
+        lastError = null;
+    }
+
+    public synchronized void recordFailure(long latencyMs, Exception error) {
+        record(latencyMs, true);
+        consecutiveFailures++;
+        lastError = error != null ? error.getMessage() : null;
+        if (state == State.HALF_OPEN) {
+            coolDownMs = Math.min(MAX_COOL_DOWN_MS, coolDownMs * 2);
+            open();
+        } else if (state == State.CLOSED && (consecutiveFailures >= CONSECUTIVE_FAILURES_TO_OPEN
+                || (calls >= MIN_CALLS && errorRateLocked() >= FAILURE_RATE_TO_OPEN))) {
+            open();
+        }
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openedAt = System.currentTimeMillis();
+        probeInFlight = false;
+        System.err.println("[SourceHealth] Opening circuit for " + source + " for " + coolDownMs / 1000 + " s"
+                + (lastError != null ? " (" + lastError + ")" : ""));
+    }
+
+    private void record(long latencyMs, boolean failure) {
+        latencies[next] = latencyMs;
+        failed[next] = failure;
+        next = (next + 1) % WINDOW;
+        calls = Math.min(WINDOW, calls + 1);
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    /** Failed share of the recent calls, 0 when there were none. */
+    public synchronized double getErrorRate() {
+        return errorRateLocked();
+    }
+
+    private double errorRateLocked() {
+        if (calls == 0) return 0;
+        int failures = 0;
+        for (int i = 0; i < calls; i++) {
+            if (failed[i]) failures++;
+        }
+        return failures / (double) calls;
+    }
+
+    /** The given percentile (0-100) of recent call latencies in milliseconds, or -1 with no calls yet. */
+    public synchronized long getLatencyPercentile(double percentile) {
+        if (calls == 0) return -1;
+        long[] sorted = Arrays.copyOf(latencies, calls);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile / 100.0 * calls) - 1;
+        return sorted[Math.max(0, Math.min(calls - 1, index))];
+    }
+
+    /**
+     * True when the circuit is not closed, the last call failed, many recent calls failed, or the source
+     * typically takes more than half of {@code timeoutMs} to answer.
+     */
+    public synchronized boolean isDegraded(long timeoutMs) {
+        if (state != State.CLOSED) return true;
+        if (consecutiveFailures > 0) return true;
+        if (calls >= MIN_CALLS && errorRateLocked() >= FAILURE_RATE_TO_OPEN / 2) return true;
+        return getLatencyPercentile(50) > timeoutMs * SLOW_FRACTION;
+    }
+
+    public synchronized String getLastError() {
+        return lastError;
+    }
+
+    @Override
+    public synchronized String toString() {
+        if (calls == 0) return source + ": no requests yet";
+        return String.format("%s: %s, p50 %d ms, p95 %d ms, %.0f%% errors over %d calls",
+                source, state.name().toLowerCase().replace('_', '-'), getLatencyPercentile(50),
+                getLatencyPercentile(95), errorRateLocked() * 100, calls);
+    }
+}
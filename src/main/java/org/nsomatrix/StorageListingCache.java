@@ -0,0 +1,101 @@
+package org.nsomatrix;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The last listing of each user's cloud storage folder, kept in ~/.matrix_launcher_storage_listing.json
+ * so the dashboard can show it before the server answers. Uploads and deletes are applied here as soon
+ * as they succeed; the next full listing replaces the entry.
+ */
+public class StorageListingCache {
+    private static final File STORAGE_FILE = new File(System.getProperty("user.home"), ".matrix_launcher_storage_listing.json");
+    private static final StorageListingCache DEFAULT = new StorageListingCache(STORAGE_FILE);
+
+    private final File file;
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final Map<String, Listing> listings = new HashMap<>();
+    private boolean loaded;
+
+    public StorageListingCache(File file) {
+        this.file = file;
+    }
+
+    public static StorageListingCache getDefault() {
+        return DEFAULT;
+    }
+
+    /** The cached objects of a user sorted by name, or null if the user has never been listed. */
+    public synchronized List<StorageObject> get(String userId) {
+        load();
+        Listing listing = listings.get(userId);
+        if (listing == null) return null;
+        List<StorageObject> objects = new ArrayList<>(listing.objects.values());
+        objects.sort((a, b) -> a.name.compareTo(b.name));
+        return objects;
+    }
+
+    /** Replaces a user's listing after a complete listing from the server. */
+    public synchronized void put(String userId, Collection<StorageObject> objects) {
+        load();
+        Listing listing = new Listing();
+        listing.fetchedAt = System.currentTimeMillis();
+        for (StorageObject object : objects) listing.objects.put(object.name, object);
+        listings.put(userId, listing);
+        save();
+    }
+
+    /** Adds or replaces one object, e.g. after an upload. */
+    public synchronized void update(String userId, StorageObject object) {
+        load();
+        Listing listing = listings.get(userId);
+        if (listing == null) return;
+        listing.objects.put(object.name, object);
+        save();
+    }
+
+    public synchronized void remove(String userId, Collection<String> names) {
+        load();
+        Listing listing = listings.get(userId);
+        if (listing == null) return;
+        if (listing.objects.keySet().removeAll(names)) save();
+    }
+
+    private void load() {
+        if (loaded) return;
+        loaded = true;
+        if (!file.exists()) return;
+        try {
+            listings.putAll(mapper.readValue(file, new TypeReference<Map<String, Listing>>() {}));
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void save() {
+        File temp = new File(file.getPath() + ".tmp");
+        try {
+            mapper.writeValue(temp, listings);
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class Listing {
+        public long fetchedAt;
+        public Map<String, StorageObject> objects = new HashMap<>();
+    }
+}
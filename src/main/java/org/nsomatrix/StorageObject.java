@@ -0,0 +1,38 @@
+package org.nsomatrix;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+/** One file in the user's cloud storage folder, as returned by a listing. */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class StorageObject {
+    /** Name relative to the user's folder. */
+    public String name;
+    public long size = -1;
+    /** Epoch millis, or -1 if unknown. */
+    public long updatedAt = -1;
+    /** Null until the object has been listed by the server, e.g. right after an upload. */
+    public String etag;
+    public String mimeType;
+    public boolean folder;
+
+    public StorageObject() {
+    }
+
+    public StorageObject(String name, long size, long updatedAt, String etag) {
+        this.name = name;
+        this.size = size;
+        this.updatedAt = updatedAt;
+        this.etag = etag;
+    }
+
+    /** True if the server reports the same content and modification time. */
+    public boolean sameAs(StorageObject other) {
+        return other != null && name.equals(other.name) && size == other.size && updatedAt == other.updatedAt
+                && (etag == null ? other.etag == null : etag.equals(other.etag));
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
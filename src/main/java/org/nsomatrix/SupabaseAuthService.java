@@ -5,12 +5,6 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
-import java.net.HttpURLConnection;
-import java.net.URL;
-import java.nio.charset.StandardCharsets;
-import java.time.Duration;
 import java.util.Optional;
 
 public class SupabaseAuthService {
@@ -29,34 +23,59 @@ public class SupabaseAuthService {
         return authRequest("/auth/v1/token?grant_type=password", email, password);
     }
 
+    /**
+     * Exchanges a refresh token for a new session. Empty if the server rejected the refresh token, which
+     * means the user has to sign in again; an IOException means the server could not be reached.
+     */
+    public Optional<AuthResponse> refresh(String refreshToken) throws IOException {
+        ObjectNode body = objectMapper.createObjectNode();
+        body.put("refresh_token", refreshToken);
+        return post("/auth/v1/token?grant_type=refresh_token", body);
+    }
+
+    /** Revokes the session's refresh tokens on the server. */
+    public void signOut(String accessToken) throws IOException {
+        try (HttpTransport.Response response = HttpTransport.getDefault()
+                .request("POST", SupabaseClient.SUPABASE_URL + "/auth/v1/logout")
+                .header("apikey", SupabaseClient.SUPABASE_ANON_KEY)
+                .header("Authorization", "Bearer " + accessToken)
+                .jsonBody("{}")
+                .execute()) {
+            if (response.getStatus() >= 400 && response.getStatus() != 401) {
+                System.err.println("Failed sign out request, status: " + response.getStatus());
+            }
+        }
+    }
+
     private Optional<AuthResponse> authRequest(String endpoint, String email, String password) throws IOException, InterruptedException {
         ObjectNode body = objectMapper.createObjectNode();
         body.put("email", email);
         body.put("password", password);
+        return post(endpoint, body);
+    }
 
-        URL url = new URL(SupabaseClient.SUPABASE_URL + endpoint);
-        HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-        conn.setRequestMethod("POST");
-        conn.setRequestProperty("Content-Type", "application/json");
-        conn.setRequestProperty("apikey", SupabaseClient.SUPABASE_ANON_KEY);
-        conn.setRequestProperty("Authorization", "Bearer " + SupabaseClient.SUPABASE_ANON_KEY);
-        conn.setDoOutput(true);
-
-        try (OutputStream os = conn.getOutputStream()) {
-            byte[] input = body.toString().getBytes(StandardCharsets.UTF_8);
-            os.write(input, 0, input.length);
-        }
-
-        int responseCode = conn.getResponseCode();
+    private Optional<AuthResponse> post(String endpoint, ObjectNode body) throws IOException {
+        try (HttpTransport.Response response = HttpTransport.getDefault()
+                .request("POST", SupabaseClient.SUPABASE_URL + endpoint)
+                .header("apikey", SupabaseClient.SUPABASE_ANON_KEY)
+                .header("Authorization", "Bearer " + SupabaseClient.SUPABASE_ANON_KEY)
+                .jsonBody(body.toString())
+                .execute()) {
+            int responseCode = response.getStatus();
 
-        if (responseCode == 200 || responseCode == 201) {
-            try (InputStream is = conn.getInputStream()) {
-                AuthResponse authResponse = objectMapper.readValue(is, AuthResponse.class);
+            if (responseCode == 200 || responseCode == 201) {
+                AuthResponse authResponse = objectMapper.readValue(response.getBody(), AuthResponse.class);
+                if (authResponse.expires_at <= 0 && authResponse.expires_in > 0) {
+                    authResponse.expires_at = System.currentTimeMillis() / 1000 + authResponse.expires_in;
+                }
                 return Optional.of(authResponse);
+            } else if (responseCode >= 500 || responseCode == 429) {
+                // The server is unavailable, which says nothing about the credentials
+                throw new HttpTransport.HttpStatusException(responseCode, response.getBodyAsString());
+            } else {
+                System.err.println("Failed auth request, status: " + responseCode);
+                return Optional.empty();
             }
-        } else {
-            System.err.println("Failed auth request, status: " + responseCode);
-            return Optional.empty();
         }
     }
 
@@ -64,6 +83,9 @@ public class SupabaseAuthService {
     public static class AuthResponse {
         public String access_token;
         public String refresh_token;
+        // Lifetime of the access token in seconds, and its expiry in seconds since the epoch
+        public long expires_in;
+        public long expires_at;
         public User user;
 
         @JsonIgnoreProperties(ignoreUnknown = true)
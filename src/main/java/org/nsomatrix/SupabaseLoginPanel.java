@@ -50,7 +50,8 @@ public class SupabaseLoginPanel extends JPanel {
         loginButton.setEnabled(false);
         signupButton.setEnabled(false);
 
-        SwingWorker<Void, Void> worker = new SwingWorker<Void, Void>() {
+        BackgroundTask<Void, Void> worker = new BackgroundTask<Void, Void>(
+                TaskScheduler.Pool.IO, TaskScheduler.Priority.INTERACTIVE, this) {
             Optional<SupabaseAuthService.AuthResponse> resp;
 
             @Override
@@ -86,7 +87,8 @@ public class SupabaseLoginPanel extends JPanel {
         loginButton.setEnabled(false);
         signupButton.setEnabled(false);
 
-        SwingWorker<Void, Void> worker = new SwingWorker<Void, Void>() {
+        BackgroundTask<Void, Void> worker = new BackgroundTask<Void, Void>(
+                TaskScheduler.Pool.IO, TaskScheduler.Priority.INTERACTIVE, this) {
             Optional<SupabaseAuthService.AuthResponse> resp;
 
             @Override
@@ -1,39 +1,91 @@
 package org.nsomatrix;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import java.io.File;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
-import java.io.InputStreamReader;
-import java.io.BufferedReader;
-import java.io.FileInputStream;
-import java.net.HttpURLConnection;
-import java.net.URL;
+import java.io.PushbackInputStream;
+import java.net.URLConnection;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.prefs.Preferences;
 
 public class SupabaseStorageClient {
-    private final ObjectMapper mapper;
+    // Requests running at once across all asynchronous calls of one client
+    private static final int MAX_IN_FLIGHT = 4;
+    // Object paths per bulk delete request
+    private static final int DELETE_BATCH_SIZE = 1000;
+    // Lifetime requested for signed download URLs, and how long before expiry they are renewed
+    private static final int SIGNED_URL_TTL_S = 3600;
+    private static final long SIGNED_URL_MARGIN_MS = 5 * 60 * 1000;
+    // Entries per list request
+    private static final int LIST_PAGE_SIZE = 1000;
+
+    public interface Progress {
+        /** Called from the transferring thread; {@code total} is -1 while unknown. */
+        void onProgress(long done, long total);
+    }
+
+    public interface BatchProgress {
+        /** Called from transfer threads; {@code bytesTotal} only counts files whose size is known so far. */
+        void onProgress(long bytesDone, long bytesTotal, int filesDone, int filesTotal);
+    }
 
-    private String accessToken;
+    private final ObjectMapper mapper;
+    private final StorageListingCache listingCache = StorageListingCache.getDefault();
+    private final BlobCache blobCache = BlobCache.getDefault();
+    private final Map<String, SignedUrl> signedUrls = new ConcurrentHashMap<>();
+    private final TaskScheduler.Limiter inFlight = TaskScheduler.getDefault()
+            .limited(TaskScheduler.Pool.IO, TaskScheduler.Priority.INTERACTIVE, MAX_IN_FLIGHT);
+    // The async call running on this thread, so its connection can be aborted on cancel
+    private static final ThreadLocal<StorageFuture<?>> CURRENT_CALL = new ThreadLocal<>();
+
+    private volatile AuthSession session;
     private String userId;
 
     public SupabaseStorageClient() {
         mapper = new ObjectMapper();
     }
 
-    public void setAccessToken(String token) {
-        accessToken = token;
-        System.out.println("[StorageClient] Access Token set: " + (token == null ? "null" : "***"));
+    /** The session whose access token authorizes requests; renewed and retried once if the server rejects it. */
+    public void setSession(AuthSession session) {
+        this.session = session;
+        System.out.println("[StorageClient] Session set: " + (session == null ? "null" : "***"));
+    }
+
+    private String accessToken() {
+        AuthSession current = session;
+        return current != null ? current.getAccessToken() : null;
     }
 
     public void setUserId(String userId) {
         this.userId = userId;
+        signedUrls.clear();
         System.out.println("[StorageClient] User ID set: " + userId);
     }
 
@@ -49,144 +101,784 @@ public class SupabaseStorageClient {
         return userId + "/" + path;
     }
 
-    private HttpURLConnection buildBaseRequest(URL url, String method) throws IOException {
-        HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-        conn.setRequestMethod(method);
-        conn.setConnectTimeout(30000);
-        conn.setReadTimeout(30000);
-        conn.setRequestProperty("apikey", SupabaseClient.SUPABASE_ANON_KEY);
+    private HttpTransport.Request buildBaseRequest(String url, String method) {
+        HttpTransport.Request request = HttpTransport.getDefault().request(method, url)
+                .timeouts(HttpTransport.DEFAULT_CONNECT_TIMEOUT_MS, 30000)
+                .header("apikey", SupabaseClient.SUPABASE_ANON_KEY);
 
+        String accessToken = accessToken();
         if (accessToken != null && !accessToken.isEmpty()) {
-            conn.setRequestProperty("Authorization", "Bearer " + accessToken);
+            request.header("Authorization", "Bearer " + accessToken);
         } else {
             System.out.println("[StorageClient] Warning: no Authorization header (token missing)");
         }
 
-        return conn;
+        return request;
     }
 
-    private void handleError(HttpURLConnection conn) throws IOException {
-        int statusCode = conn.getResponseCode();
+    private void handleError(HttpTransport.Response response) throws IOException {
+        int statusCode = response.getStatus();
         if (statusCode >= 400) {
-            InputStream errorStream = conn.getErrorStream();
-            String body = "Failed to read error stream";
-            if (errorStream != null) {
-                try (InputStreamReader isr = new InputStreamReader(errorStream, StandardCharsets.UTF_8);
-                     BufferedReader br = new BufferedReader(isr)) {
-                    StringBuilder sb = new StringBuilder();
-                    String line;
-                    while ((line = br.readLine()) != null) {
-                        sb.append(line);
-                    }
-                    body = sb.toString();
-                } catch (Exception e) {
-                    // Ignore
-                }
+            String body;
+            try {
+                body = response.getBodyAsString();
+            } catch (IOException e) {
+                body = "Failed to read error stream";
+            } finally {
+                response.close();
             }
             System.err.println("[StorageClient] API error " + statusCode + ": " + body);
-            throw new IOException("API request failed with status " + statusCode + ". Body: " + body);
+            throw new HttpTransport.HttpStatusException(statusCode, body);
         }
     }
 
-    public List<String> listFiles() throws IOException, InterruptedException {
+    /** Names of all files in the user's folder. */
+    public List<String> listFiles() throws IOException {
+        List<String> files = new ArrayList<>();
+        for (StorageObject object : listAllObjects(null)) files.add(object.name);
+        return files;
+    }
+
+    /**
+     * Lists every object in the user's folder page by page, handing each one to the consumer (if any) as
+     * soon as it is parsed, and stores the complete listing in the local cache.
+     */
+    public List<StorageObject> listAllObjects(Consumer<StorageObject> consumer) throws IOException {
         checkUserId();
+        List<StorageObject> objects = new ArrayList<>();
+        int offset = 0;
+        while (true) {
+            int count = listObjects(LIST_PAGE_SIZE, offset, "name", true, object -> {
+                objects.add(object);
+                if (consumer != null) consumer.accept(object);
+            });
+            if (count < LIST_PAGE_SIZE) break;
+            offset += count;
+        }
+        listingCache.put(userId, objects);
+        return objects;
+    }
 
-        String urlStr = SupabaseClient.SUPABASE_URL + "/storage/v1/object/list/" + SupabaseClient.STORAGE_BUCKET;
-        String prefix = userId.endsWith("/") ? userId : userId + "/";
-        String jsonBody = "{\"prefix\":\"" + prefix + "\"}";
+    /**
+     * Streams one page of the listing, sorted by {@code sortColumn} ("name", "updated_at", "created_at" or
+     * "last_accessed_at"). Returns the number of entries on the page, which is less than {@code limit}
+     * on the last page.
+     */
+    public int listObjects(int limit, int offset, String sortColumn, boolean ascending,
+                           Consumer<StorageObject> consumer) throws IOException {
+        return listObjects("", limit, offset, sortColumn, ascending, consumer);
+    }
 
-        HttpURLConnection conn = buildBaseRequest(new URL(urlStr), "POST");
-        conn.setRequestProperty("Content-Type", "application/json");
-        conn.setDoOutput(true);
+    /**
+     * Like {@link #listObjects(int, int, String, boolean, Consumer)} for a folder below the user's folder.
+     * Names passed to the consumer include the folder, e.g. "saves/game.rs".
+     */
+    public int listObjects(String folder, int limit, int offset, String sortColumn, boolean ascending,
+                           Consumer<StorageObject> consumer) throws IOException {
+        checkUserId();
 
-        try (OutputStream os = conn.getOutputStream()) {
-            byte[] input = jsonBody.getBytes(StandardCharsets.UTF_8);
-            os.write(input, 0, input.length);
+        String urlStr = SupabaseClient.SUPABASE_URL + "/storage/v1/object/list/" + SupabaseClient.STORAGE_BUCKET;
+        String prefix = getPrefixedPath(folder.isEmpty() ? "" : folder + "/");
+        String namePrefix = folder.isEmpty() ? "" : folder + "/";
+        Map<String, Object> sortBy = new LinkedHashMap<>();
+        sortBy.put("column", sortColumn);
+        sortBy.put("order", ascending ? "asc" : "desc");
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("prefix", prefix);
+        body.put("limit", limit);
+        body.put("offset", offset);
+        body.put("sortBy", sortBy);
+
+        // Listing is read-only, so it may be retried even though it is a POST
+        try (HttpTransport.Response response = execute(buildBaseRequest(urlStr, "POST")
+                .jsonBody(mapper.writeValueAsString(body))
+                .idempotent(true))) {
+            handleError(response);
+
+            int count = 0;
+            try (JsonParser parser = mapper.getFactory().createParser(response.getBody())) {
+                if (parser.nextToken() != JsonToken.START_ARRAY) {
+                    return 0;
+                }
+                while (parser.nextToken() == JsonToken.START_OBJECT) {
+                    JsonNode node = mapper.readTree(parser);
+                    count++;
+                    String fullName = node.path("name").asText(null);
+                    if (fullName == null) continue;
+                    String name = fullName.startsWith(prefix) ? fullName.substring(prefix.length()) : fullName;
+                    consumer.accept(toStorageObject(namePrefix + name, node));
+                }
+            }
+            return count;
         }
+    }
 
-        handleError(conn);
+    private static StorageObject toStorageObject(String name, JsonNode node) {
+        JsonNode metadata = node.path("metadata");
+        StorageObject object = new StorageObject();
+        object.name = name;
+        object.size = metadata.path("size").asLong(-1);
+        object.etag = metadata.path("eTag").asText(null);
+        object.mimeType = metadata.path("mimetype").asText(null);
+        // Folders are listed without an id
+        object.folder = node.path("id").isNull() || node.path("id").isMissingNode();
+        String updated = node.path("updated_at").asText(null);
+        if (updated != null) {
+            try {
+                object.updatedAt = Instant.parse(updated).toEpochMilli();
+            } catch (DateTimeParseException e) {
+                System.err.println("[StorageClient] Unreadable updated_at for " + name + ": " + updated);
+            }
+        }
+        return object;
+    }
 
-        List<String> files = new ArrayList<>();
-        try (InputStream is = conn.getInputStream()) {
-            JsonNode root = mapper.readTree(is);
-            if (root.isArray()) {
-                for (JsonNode node : root) {
-                    String fullName = node.get("name").asText();
-                    if (fullName.startsWith(prefix)) {
-                        files.add(fullName.substring(prefix.length()));
-                    } else {
-                        files.add(fullName);
-                    }
-                }
+    /**
+     * Lists every file below {@code folder}, descending into subfolders. Listings are one level deep on
+     * the server, so this costs one request per folder (and per 1000 entries).
+     */
+    public List<StorageObject> listTree(String folder) throws IOException {
+        List<StorageObject> files = new ArrayList<>();
+        List<String> pending = new ArrayList<>(Collections.singletonList(folder));
+        while (!pending.isEmpty()) {
+            String current = pending.remove(pending.size() - 1);
+            int offset = 0;
+            while (true) {
+                int count = listObjects(current, LIST_PAGE_SIZE, offset, "name", true, object -> {
+                    if (object.folder) pending.add(object.name);
+                    else files.add(object);
+                });
+                if (count < LIST_PAGE_SIZE) break;
+                offset += count;
             }
         }
-        if (files.isEmpty()) files.add("<no files>");
         return files;
     }
 
-    private static final long MAX_UPLOAD_SIZE_BYTES = 10 * 1024 * 1024; // 10 MB
+    /** The listing cached by the last {@link #listAllObjects} plus later uploads and deletes, or null. */
+    public List<StorageObject> cachedObjects() {
+        checkUserId();
+        return listingCache.get(userId);
+    }
+
+    private static final String RESUMABLE_ENDPOINT = SupabaseClient.SUPABASE_URL + "/storage/v1/upload/resumable";
+
+    public void uploadFile(File file) throws IOException {
+        uploadFile(file, null);
+    }
+
+    /**
+     * Uploads a file, replacing any object of the same name. Files larger than one chunk go through the
+     * resumable endpoint and continue where an earlier failed or interrupted attempt stopped.
+     */
+    public void uploadFile(File file, Progress progress) throws IOException {
+        uploadFile(file, file.getName(), progress);
+    }
 
-    public void uploadFile(File file) throws IOException, InterruptedException {
+    /** Uploads to {@code remoteName} in the user's folder, which may contain subfolders, e.g. "saves/game.rs". */
+    public void uploadFile(File file, String remoteName, Progress progress) throws IOException {
         checkUserId();
 
-        if (file.length() > MAX_UPLOAD_SIZE_BYTES) {
-            throw new IOException("File size exceeds the maximum allowed limit of 10MB.");
+        String path = getPrefixedPath(remoteName);
+        String mime = contentTypeOf(file);
+        int chunkSize = chunkSize();
+        if (file.length() > chunkSize) {
+            Map<String, String> metadata = new LinkedHashMap<>();
+            metadata.put("bucketName", SupabaseClient.STORAGE_BUCKET);
+            metadata.put("objectName", path);
+            metadata.put("contentType", mime);
+            metadata.put("cacheControl", "3600");
+            // Resumable uploads are sent as they are; offsets refer to the file on disk
+            metadata.put("metadata", new String(userMetadata(null, null), StandardCharsets.UTF_8));
+            resumableUploader(chunkSize).upload(path, file, metadata, progress != null ? progress::onProgress : null);
+            recordUploaded(remoteName, file);
+            return;
         }
 
-        String path = getPrefixedPath(file.getName());
-        URL url = new URL(SupabaseClient.SUPABASE_URL + "/storage/v1/object/" + SupabaseClient.STORAGE_BUCKET + "/" + path + "?upsert=true");
+        String url = SupabaseClient.SUPABASE_URL + "/storage/v1/object/" + SupabaseClient.STORAGE_BUCKET + "/" + path + "?upsert=true";
 
-        HttpURLConnection conn = buildBaseRequest(url, "POST");
-        String mime = Files.probeContentType(file.toPath());
-        conn.setRequestProperty("Content-Type", mime);
-        conn.setDoOutput(true);
+        // upsert=true makes the upload safe to repeat; the body is streamed from disk again on each attempt
+        HttpTransport.Request request = buildBaseRequest(url, "POST")
+                .idempotent(true);
+        if (compressionEnabled() && StorageCompression.shouldCompress(mime, file.length())) {
+            String md5 = StorageCompression.md5Of(file);
+            request.header("x-metadata", Base64.getEncoder().encodeToString(userMetadata(StorageCompression.CODEC_GZIP, md5)))
+                    .chunked()
+                    .body(mime, out -> StorageCompression.writeCompressed(file, out, progress));
+        } else {
+            // Sent even when empty so replacing a compressed object clears its codec
+            request.header("x-metadata", Base64.getEncoder().encodeToString(userMetadata(null, null)))
+                    .body(mime, file.toPath(), 0, file.length());
+        }
+
+        if (progress != null) progress.onProgress(0, file.length());
+        try (HttpTransport.Response response = execute(request)) {
+            System.out.println("[StorageClient] UPLOAD response status: " + response.getStatus());
+
+            handleError(response);
+        }
+        recordUploaded(remoteName, file);
+        if (progress != null) progress.onProgress(file.length(), file.length());
+    }
+
+    private byte[] userMetadata(String codec, String md5) throws IOException {
+        Map<String, String> metadata = new LinkedHashMap<>();
+        if (codec != null) metadata.put("codec", codec);
+        if (md5 != null) metadata.put("md5", md5);
+        return mapper.writeValueAsBytes(metadata);
+    }
 
-        try (OutputStream os = conn.getOutputStream(); FileInputStream fis = new FileInputStream(file)) {
-            byte[] buffer = new byte[4096];
-            int bytesRead;
-            while ((bytesRead = fis.read(buffer)) != -1) {
-                os.write(buffer, 0, bytesRead);
+    private static boolean compressionEnabled() {
+        return Preferences.userNodeForPackage(UI.class).getBoolean(StorageCompression.PREF_ENABLED, true);
+    }
+
+    // Shows an upload in the cached listing until the next listing brings the server's metadata
+    private void recordUploaded(String name, File file) {
+        // The cached listing only covers the top level
+        if (name.contains("/")) return;
+        listingCache.update(userId, new StorageObject(name, file.length(), System.currentTimeMillis(), null));
+    }
+
+    /**
+     * Finishes this user's resumable uploads left unfinished by an earlier failure or session. Uploads
+     * whose local file is gone or has changed are dropped. Returns the number of uploads completed.
+     */
+    public int resumePendingUploads(Progress progress) throws IOException {
+        checkUserId();
+        int resumed = 0;
+        for (TusUploader.PendingUpload pending : TusUploader.pendingUploads(userId + "/")) {
+            File file = new File(pending.file);
+            if (!file.isFile() || file.length() != pending.size || file.lastModified() != pending.lastModified) {
+                System.out.println("[StorageClient] Dropping unfinished upload of changed or missing " + pending.file);
+                TusUploader.discard(pending.key);
+                continue;
             }
+            resumableUploader(chunkSize()).upload(pending.key, file, pending.metadata, progress != null ? progress::onProgress : null);
+            recordUploaded(pending.key.substring(userId.length() + 1), file);
+            resumed++;
         }
+        return resumed;
+    }
+
+    // probeContentType depends on the platform and often knows nothing about MIDlet files
+    static String contentTypeOf(File file) throws IOException {
+        String mime = Files.probeContentType(file.toPath());
+        if (mime == null) mime = URLConnection.guessContentTypeFromName(file.getName());
+        if (mime == null) {
+            String name = file.getName().toLowerCase(Locale.ROOT);
+            if (name.endsWith(".jar")) mime = "application/java-archive";
+            else if (name.endsWith(".jad")) mime = "text/vnd.sun.j2me.app-descriptor";
+            else if (name.endsWith(".json")) mime = "application/json";
+            else if (name.endsWith(".zip")) mime = "application/zip";
+        }
+        return mime != null ? mime : "application/octet-stream";
+    }
+
+    // Headers are built per request, so chunks sent after the session was renewed carry the new token
+    private TusUploader resumableUploader(int chunkSize) {
+        return new TusUploader(RESUMABLE_ENDPOINT, () -> {
+            Map<String, String> headers = new LinkedHashMap<>();
+            headers.put("apikey", SupabaseClient.SUPABASE_ANON_KEY);
+            String accessToken = accessToken();
+            if (accessToken != null && !accessToken.isEmpty()) headers.put("Authorization", "Bearer " + accessToken);
+            headers.put("x-upsert", "true");
+            return headers;
+        }, chunkSize);
+    }
 
-        System.out.println("[StorageClient] UPLOAD response status: " + conn.getResponseCode());
+    private static int chunkSize() {
+        int megabytes = Preferences.userNodeForPackage(UI.class)
+                .getInt(TusUploader.PREF_CHUNK_SIZE_MB, TusUploader.DEFAULT_CHUNK_SIZE_MB);
+        return Math.max(1, megabytes) * 1024 * 1024;
+    }
 
-        handleError(conn);
+    public void downloadFile(String remoteFileName, File destination) throws IOException {
+        downloadFile(remoteFileName, destination, null);
     }
 
-    public void downloadFile(String remoteFileName, File destination) throws IOException, InterruptedException {
+    public void downloadFile(String remoteFileName, File destination, Progress progress) throws IOException {
         checkUserId();
 
         String path = getPrefixedPath(remoteFileName);
-        URL url = new URL(SupabaseClient.SUPABASE_URL + "/storage/v1/object/" + SupabaseClient.STORAGE_BUCKET + "/" + path);
+        BlobCache.Entry cached = blobCache.lookup(path);
+
+        try (HttpTransport.Response response = openDownload(path, cached != null ? cached.etag : null)) {
+            if (response.getStatus() == 304 && cached != null) {
+                blobCache.copyTo(cached, destination);
+                if (progress != null) progress.onProgress(cached.size, cached.size);
+                return;
+            }
+            if (response.getStatus() != 200) {
+                handleError(response);
+            }
 
-        HttpURLConnection conn = buildBaseRequest(url, "GET");
+            // Progress counts bytes as stored, so it matches Content-Length for compressed objects too
+            long total = response.getContentLength();
+            long[] done = {0};
+            if (progress != null) progress.onProgress(0, total);
+            InputStream counted = new FilterInputStream(response.getBody()) {
+                @Override
+                public int read(byte[] b, int off, int len) throws IOException {
+                    int read = super.read(b, off, len);
+                    if (read > 0) {
+                        done[0] += read;
+                        if (progress != null) progress.onProgress(done[0], total);
+                    }
+                    return read;
+                }
+            };
+            PushbackInputStream stored = new PushbackInputStream(counted, 2);
+            String codec = null;
+            // Only objects that look compressed cost the extra metadata lookup
+            String contentType = response.getHeader("Content-Type");
+            if (StorageCompression.looksCompressed(stored)
+                    && StorageCompression.shouldCompress(contentType != null ? contentType : "application/octet-stream", Long.MAX_VALUE)) {
+                codec = codecOf(path);
+            }
+            String etag = response.getHeader("ETag");
+            BlobCache.Writer copy = etag != null && blobCache.accepts(total) ? beginCopy() : null;
+            try (InputStream is = StorageCompression.decoding(codec, stored);
+                 OutputStream os = Files.newOutputStream(destination.toPath())) {
+                byte[] buffer = new byte[64 * 1024];
+                int bytesRead;
+                while ((bytesRead = is.read(buffer)) != -1) {
+                    os.write(buffer, 0, bytesRead);
+                    if (copy != null) {
+                        try {
+                            copy.stream().write(buffer, 0, bytesRead);
+                        } catch (IOException e) {
+                            System.err.println("[StorageClient] Not caching " + remoteFileName + ": " + e.getMessage());
+                            copy.abort();
+                            copy = null;
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                if (copy != null) copy.abort();
+                throw e;
+            }
+            if (copy != null) {
+                try {
+                    copy.commit(path, etag);
+                } catch (IOException e) {
+                    copy.abort();
+                    System.err.println("[StorageClient] Not caching " + remoteFileName + ": " + e.getMessage());
+                }
+            }
+        }
+    }
 
-        if (conn.getResponseCode() != 200) {
-            handleError(conn);
+    private BlobCache.Writer beginCopy() {
+        try {
+            return blobCache.begin();
+        } catch (IOException e) {
+            System.err.println("[StorageClient] Blob cache unavailable: " + e.getMessage());
+            return null;
         }
+    }
 
-        try (InputStream is = conn.getInputStream(); OutputStream os = Files.newOutputStream(destination.toPath())) {
-            byte[] buffer = new byte[4096];
-            int bytesRead;
-            while ((bytesRead = is.read(buffer)) != -1) {
-                os.write(buffer, 0, bytesRead);
+    // GETs an object through a signed URL, conditionally if a copy with this etag is cached
+    private HttpTransport.Response openDownload(String path, String etag) throws IOException {
+        for (int attempt = 1; ; attempt++) {
+            String url = signedUrl(path);
+            HttpTransport.Request request = HttpTransport.getDefault().get(url)
+                    .timeouts(HttpTransport.DEFAULT_CONNECT_TIMEOUT_MS, 30000);
+            if (etag != null) request.header("If-None-Match", etag);
+            HttpTransport.Response response = execute(request);
+            int status = response.getStatus();
+            // A cached URL the server no longer accepts (revoked, clock skew): sign once more
+            if (attempt == 1 && (status == 400 || status == 401 || status == 403)) {
+                response.close();
+                signedUrls.remove(path);
+                continue;
             }
+            return response;
+        }
+    }
+
+    // A signed download URL for the object, reused until shortly before it expires
+    private String signedUrl(String path) throws IOException {
+        SignedUrl cached = signedUrls.get(path);
+        if (cached != null && cached.expiresAt - SIGNED_URL_MARGIN_MS > System.currentTimeMillis()) {
+            return cached.url;
+        }
+        String url = SupabaseClient.SUPABASE_URL + "/storage/v1/object/sign/" + SupabaseClient.STORAGE_BUCKET + "/" + path;
+        long requestedAt = System.currentTimeMillis();
+        try (HttpTransport.Response response = execute(buildBaseRequest(url, "POST")
+                .jsonBody("{\"expiresIn\":" + SIGNED_URL_TTL_S + "}")
+                .idempotent(true))) {
+            handleError(response);
+            String signed = mapper.readTree(response.getBody()).path("signedURL").asText(null);
+            if (signed == null) throw new IOException("Storage did not return a signed URL for " + path);
+            SignedUrl fresh = new SignedUrl(SupabaseClient.SUPABASE_URL + "/storage/v1" + signed,
+                    requestedAt + SIGNED_URL_TTL_S * 1000L);
+            signedUrls.put(path, fresh);
+            return fresh.url;
+        }
+    }
+
+    private static class SignedUrl {
+        final String url;
+        final long expiresAt;
+
+        SignedUrl(String url, long expiresAt) {
+            this.url = url;
+            this.expiresAt = expiresAt;
         }
     }
 
-    public void deleteFile(String remoteFileName) throws IOException, InterruptedException {
+    // The codec recorded in an object's user metadata, or null if it is stored raw
+    private String codecOf(String path) throws IOException {
+        JsonNode codec = userMetadataOf(path).path("codec");
+        return codec.isTextual() ? codec.asText() : null;
+    }
+
+    /**
+     * The MD5 of a compressed object's uncompressed content as recorded when it was uploaded, or null
+     * for objects stored raw, whose etag is already their MD5, and for older uploads.
+     */
+    public String contentMd5(String remoteFileName) throws IOException {
+        checkUserId();
+        JsonNode md5 = userMetadataOf(getPrefixedPath(remoteFileName)).path("md5");
+        return md5.isTextual() ? md5.asText().toLowerCase(Locale.ROOT) : null;
+    }
+
+    private JsonNode userMetadataOf(String path) throws IOException {
+        String url = SupabaseClient.SUPABASE_URL + "/storage/v1/object/info/" + SupabaseClient.STORAGE_BUCKET + "/" + path;
+        try (HttpTransport.Response response = execute(buildBaseRequest(url, "GET"))) {
+            handleError(response);
+            JsonNode info = mapper.readTree(response.getBody());
+            JsonNode metadata = info.path("user_metadata");
+            return metadata.isObject() ? metadata : info.path("metadata");
+        }
+    }
+
+    public void deleteFile(String remoteFileName) throws IOException {
         checkUserId();
 
         String path = getPrefixedPath(remoteFileName);
-        URL url = new URL(SupabaseClient.SUPABASE_URL + "/storage/v1/object/" + SupabaseClient.STORAGE_BUCKET + "/" + path);
+        String url = SupabaseClient.SUPABASE_URL + "/storage/v1/object/" + SupabaseClient.STORAGE_BUCKET + "/" + path;
 
-        HttpURLConnection conn = buildBaseRequest(url, "DELETE");
+        try (HttpTransport.Response response = execute(buildBaseRequest(url, "DELETE"))) {
+            System.out.println("[StorageClient] DELETE response status: " + response.getStatus());
 
-        System.out.println("[StorageClient] DELETE response status: " + conn.getResponseCode());
+            if (response.getStatus() != 204 && response.getStatus() != 200) {
+                handleError(response);
+            }
+        }
+        listingCache.remove(userId, Collections.singleton(remoteFileName));
+        blobCache.remove(path);
+    }
+
+    /** Copies an object on the server, e.g. to keep the other side of a sync conflict. */
+    public void copyFile(String fromName, String toName) throws IOException {
+        checkUserId();
+
+        Map<String, String> body = new LinkedHashMap<>();
+        body.put("bucketId", SupabaseClient.STORAGE_BUCKET);
+        body.put("sourceKey", getPrefixedPath(fromName));
+        body.put("destinationKey", getPrefixedPath(toName));
+        String url = SupabaseClient.SUPABASE_URL + "/storage/v1/object/copy";
+        try (HttpTransport.Response response = execute(buildBaseRequest(url, "POST")
+                .jsonBody(mapper.writeValueAsString(body)))) {
+            handleError(response);
+        }
+    }
+
+    /** Uploads several files and waits for all of them; see {@link #uploadFilesAsync}. */
+    public BatchResult uploadFiles(List<File> files, BatchProgress progress) throws InterruptedException {
+        Map<String, File> uploads = new LinkedHashMap<>();
+        for (File file : files) uploads.put(file.getName(), file);
+        return uploadFiles(uploads, progress);
+    }
+
+    public BatchResult uploadFiles(Map<String, File> uploads, BatchProgress progress) throws InterruptedException {
+        return await(uploadFilesAsync(uploads, progress));
+    }
+
+    /** Downloads several files into {@code directory} under their own names and waits for all of them. */
+    public BatchResult downloadFiles(List<String> remoteFileNames, File directory, BatchProgress progress) throws InterruptedException {
+        return await(downloadFilesAsync(remoteFileNames, directory, progress));
+    }
+
+    public BatchResult downloadFiles(Map<String, File> destinations, BatchProgress progress) throws InterruptedException {
+        return await(downloadFilesAsync(destinations, progress));
+    }
+
+    /**
+     * Deletes several files with the storage API's bulk delete, up to {@link #DELETE_BATCH_SIZE} per
+     * request. Files the server did not report as deleted are listed as failed.
+     */
+    public BatchResult deleteFiles(List<String> remoteFileNames, BatchProgress progress) throws IOException {
+        checkUserId();
+        BatchResult result = new BatchResult(remoteFileNames.size());
+        String url = SupabaseClient.SUPABASE_URL + "/storage/v1/object/" + SupabaseClient.STORAGE_BUCKET;
+        String prefix = userId + "/";
+        for (int start = 0; start < remoteFileNames.size(); start += DELETE_BATCH_SIZE) {
+            if (Thread.currentThread().isInterrupted()) throw new InterruptedIOException("Delete cancelled");
+            List<String> slice = remoteFileNames.subList(start, Math.min(remoteFileNames.size(), start + DELETE_BATCH_SIZE));
+            List<String> paths = new ArrayList<>();
+            for (String name : slice) paths.add(getPrefixedPath(name));
+            try (HttpTransport.Response response = execute(buildBaseRequest(url, "DELETE")
+                    .jsonBody(mapper.writeValueAsString(Collections.singletonMap("prefixes", paths))))) {
+                handleError(response);
+                Set<String> deleted = new HashSet<>();
+                for (JsonNode object : mapper.readTree(response.getBody())) {
+                    String name = object.path("name").asText();
+                    deleted.add(name.startsWith(prefix) ? name.substring(prefix.length()) : name);
+                }
+                for (String name : slice) {
+                    if (deleted.contains(name)) result.success(name);
+                    else result.failure(name, "not found");
+                }
+            } catch (IOException e) {
+                if (Thread.currentThread().isInterrupted()) throw e;
+                for (String name : slice) result.failure(name, e.getMessage());
+            }
+            if (progress != null) {
+                progress.onProgress(0, -1, start + slice.size(), remoteFileNames.size());
+            }
+        }
+        listingCache.remove(userId, result.getSucceeded());
+        for (String name : result.getSucceeded()) blobCache.remove(getPrefixedPath(name));
+        System.out.println("[StorageClient] Bulk delete: " + result.summary("Deleted"));
+        return result;
+    }
+
+    // Asynchronous API. Every call runs on a slice of the scheduler's IO pool that admits MAX_IN_FLIGHT
+    // requests at a time; further calls wait in its queue without holding a thread. Progress callbacks
+    // run on the transferring thread.
+
+    public StorageFuture<List<StorageObject>> listAllObjectsAsync(Consumer<StorageObject> consumer) {
+        return async(() -> listAllObjects(consumer));
+    }
+
+    public StorageFuture<Void> uploadFileAsync(File file, String remoteName, Progress progress) {
+        return async(() -> {
+            uploadFile(file, remoteName, progress);
+            return null;
+        });
+    }
+
+    public StorageFuture<Void> downloadFileAsync(String remoteFileName, File destination, Progress progress) {
+        return async(() -> {
+            downloadFile(remoteFileName, destination, progress);
+            return null;
+        });
+    }
+
+    public StorageFuture<BatchResult> deleteFilesAsync(List<String> remoteFileNames, BatchProgress progress) {
+        return async(() -> deleteFiles(remoteFileNames, progress));
+    }
+
+    public StorageFuture<Integer> resumePendingUploadsAsync(Progress progress) {
+        return async(() -> resumePendingUploads(progress));
+    }
+
+    /** Uploads each file to its remote name. Failures are collected in the result, not thrown. */
+    public StorageFuture<BatchResult> uploadFilesAsync(Map<String, File> uploads, BatchProgress progress) {
+        checkUserId();
+        BatchTracker tracker = new BatchTracker(uploads.size(), progress);
+        for (File file : uploads.values()) tracker.addBytesTotal(file.length());
+        Map<String, StorageFuture<Void>> parts = new LinkedHashMap<>();
+        for (Map.Entry<String, File> upload : uploads.entrySet()) {
+            parts.put(upload.getKey(), uploadFileAsync(upload.getValue(), upload.getKey(), tracker.forFile(upload.getKey())));
+        }
+        return gather(parts, tracker);
+    }
+
+    public StorageFuture<BatchResult> downloadFilesAsync(List<String> remoteFileNames, File directory, BatchProgress progress) {
+        Map<String, File> targets = new LinkedHashMap<>();
+        for (String name : remoteFileNames) targets.put(name, new File(directory, new File(name).getName()));
+        return downloadFilesAsync(targets, progress);
+    }
+
+    /** Downloads each remote file to its destination. Failures are collected in the result, not thrown. */
+    public StorageFuture<BatchResult> downloadFilesAsync(Map<String, File> destinations, BatchProgress progress) {
+        checkUserId();
+        BatchTracker tracker = new BatchTracker(destinations.size(), progress);
+        Map<String, StorageFuture<Void>> parts = new LinkedHashMap<>();
+        for (Map.Entry<String, File> download : destinations.entrySet()) {
+            parts.put(download.getKey(), downloadFileAsync(download.getKey(), download.getValue(), tracker.forFile(download.getKey())));
+        }
+        return gather(parts, tracker);
+    }
+
+    private interface Call<T> {
+        T run() throws IOException;
+    }
+
+    private <T> StorageFuture<T> async(Call<T> call) {
+        StorageFuture<T> future = new StorageFuture<>();
+        future.task = inFlight.submit(() -> {
+            if (future.isDone()) return;
+            CURRENT_CALL.set(future);
+            try {
+                future.complete(call.run());
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            } finally {
+                CURRENT_CALL.remove();
+            }
+        });
+        return future;
+    }
+
+    // Executes a request so that cancelling the async call running on this thread, if any, aborts it.
+    // A request whose access token is rejected is sent once more after the session was renewed.
+    private HttpTransport.Response execute(HttpTransport.Request request) throws IOException {
+        StorageFuture<?> call = CURRENT_CALL.get();
+        if (call != null && call.isCancelled()) throw new InterruptedIOException("Cancelled");
+        HttpTransport.Response response = request.execute();
+        String authorization = request.getHeader("Authorization");
+        AuthSession current = session;
+        if (response.getStatus() == 401 && authorization != null && current != null) {
+            String renewed = current.renew(authorization.substring("Bearer ".length()));
+            if (renewed != null) {
+                response.close();
+                if (call != null && call.isCancelled()) throw new InterruptedIOException("Cancelled");
+                response = request.header("Authorization", "Bearer " + renewed).execute();
+            }
+        }
+        if (call != null) {
+            call.response = response;
+            if (call.isCancelled()) response.disconnect();
+        }
+        return response;
+    }
+
+    // Completes with a result once every part has finished; cancelling it cancels the parts
+    private static StorageFuture<BatchResult> gather(Map<String, StorageFuture<Void>> parts, BatchTracker tracker) {
+        BatchResult result = new BatchResult(parts.size());
+        StorageFuture<BatchResult> batch = new StorageFuture<>();
+        batch.parts.addAll(parts.values());
+        // The batch waits on the recording stages, not the parts, so every part is in the result first
+        List<CompletableFuture<Void>> recorded = new ArrayList<>(parts.size());
+        for (Map.Entry<String, StorageFuture<Void>> part : parts.entrySet()) {
+            recorded.add(part.getValue().whenComplete((ignored, error) -> {
+                if (error == null) {
+                    result.success(part.getKey());
+                } else if (error instanceof CancellationException) {
+                    result.failure(part.getKey(), "cancelled");
+                } else {
+                    System.err.println("[StorageClient] " + part.getKey() + " failed: " + error.getMessage());
+                    result.failure(part.getKey(), error.getMessage());
+                }
+                tracker.fileDone();
+            }));
+        }
+        CompletableFuture.allOf(recorded.toArray(new CompletableFuture<?>[0]))
+                .whenComplete((ignored, error) -> batch.complete(result));
+        return batch;
+    }
+
+    // Waits for an async call on behalf of a blocking method, cancelling it if the wait is interrupted
+    private static <T> T await(StorageFuture<T> future) throws InterruptedException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            throw e;
+        } catch (ExecutionException e) {
+            // Batch futures record failures in their result and never fail themselves
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * The result of an asynchronous storage call. Cancelling it aborts the work: a queued call never
+     * starts, and a running one is interrupted and its open connection closed.
+     */
+    public static class StorageFuture<T> extends CompletableFuture<T> {
+        private volatile TaskScheduler.Task<?> task;
+        private volatile HttpTransport.Response response;
+        private final List<StorageFuture<?>> parts = new ArrayList<>();
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean cancelled = super.cancel(mayInterruptIfRunning);
+            if (cancelled) {
+                TaskScheduler.Task<?> running = task;
+                if (running != null) running.cancel(true);
+                HttpTransport.Response open = response;
+                if (open != null) open.disconnect();
+                for (StorageFuture<?> part : parts) part.cancel(true);
+            }
+            return cancelled;
+        }
+    }
+
+    /** Per-file outcome of a batch operation. */
+    public static class BatchResult {
+        private final int total;
+        private final List<String> succeeded = new ArrayList<>();
+        private final Map<String, String> failed = new LinkedHashMap<>();
+
+        BatchResult(int total) {
+            this.total = total;
+        }
+
+        synchronized void success(String name) {
+            succeeded.add(name);
+        }
+
+        synchronized void failure(String name, String reason) {
+            failed.put(name, reason);
+        }
+
+        public synchronized List<String> getSucceeded() {
+            return new ArrayList<>(succeeded);
+        }
+
+        /** File name -> reason, in the order the failures happened. */
+        public synchronized Map<String, String> getFailed() {
+            return new LinkedHashMap<>(failed);
+        }
+
+        /** E.g. "Uploaded 298 of 300 files." */
+        public synchronized String summary(String verb) {
+            return verb + " " + succeeded.size() + " of " + total + " file" + (total == 1 ? "" : "s") + ".";
+        }
+    }
+
+    // Adds up per-file progress into one running total for the whole batch
+    private static class BatchTracker {
+        private final int filesTotal;
+        private final BatchProgress progress;
+        private final AtomicLong bytesDone = new AtomicLong();
+        private final AtomicLong bytesTotal = new AtomicLong();
+        private final AtomicInteger filesDone = new AtomicInteger();
+
+        BatchTracker(int filesTotal, BatchProgress progress) {
+            this.filesTotal = filesTotal;
+            this.progress = progress;
+        }
+
+        void addBytesTotal(long bytes) {
+            bytesTotal.addAndGet(bytes);
+        }
+
+        Progress forFile(String name) {
+            long[] last = {0};
+            boolean[] sized = {bytesTotal.get() > 0};
+            return (done, total) -> {
+                if (!sized[0] && total > 0) {
+                    sized[0] = true;
+                    bytesTotal.addAndGet(total);
+                }
+                bytesDone.addAndGet(done - last[0]);
+                last[0] = done;
+                report();
+            };
+        }
+
+        void fileDone() {
+            filesDone.incrementAndGet();
+            report();
+        }
 
-        if (conn.getResponseCode() != 204 && conn.getResponseCode() != 200) {
-            handleError(conn);
+        private void report() {
+            if (progress != null) progress.onProgress(bytesDone.get(), bytesTotal.get(), filesDone.get(), filesTotal);
         }
     }
 }
@@ -0,0 +1,513 @@
+package org.nsomatrix;
+
+import java.awt.*;
+import java.awt.event.HierarchyEvent;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The application's background threads. Work is submitted to one of three named pools: IO for network
+ * and disk, CPU for indexing and hashing, and PROCESS for waiting on emulator processes. Each pool has a
+ * fixed number of threads, a bounded queue that refuses work once full, and runs queued tasks by priority
+ * and then in submission order.
+ *
+ * Tasks can be tied to a component so that they are cancelled when its window goes away. Per-pool
+ * counters (active, queued, completed, failed, rejected, wait and run times) are kept for diagnostics.
+ *
+ * A task that blocks on other tasks in the same pool holds one of its threads while it waits; such
+ * coordinators are kept few (one catalog fetch, a handful of downloads) so the pool cannot be exhausted.
+ */
+public class TaskScheduler {
+    public enum Pool {
+        IO(16, 512),
+        CPU(Math.max(2, Runtime.getRuntime().availableProcessors()), 256),
+        // Launches wait for their process to exit, so they are refused rather than queued behind one another
+        PROCESS(8, 0);
+
+        final int threads;
+        final int queueCapacity;
+
+        Pool(int threads, int queueCapacity) {
+            this.threads = threads;
+            this.queueCapacity = queueCapacity;
+        }
+    }
+
+    public enum Priority {INTERACTIVE, NORMAL, BACKGROUND}
+
+    private static final long KEEP_ALIVE_SECONDS = 30;
+    private static final TaskScheduler DEFAULT = new TaskScheduler();
+
+    private final Map<Pool, PoolExecutor> pools = new EnumMap<>(Pool.class);
+    private final AtomicLong sequence = new AtomicLong();
+    // Only fires timers; the scheduled work itself runs in a pool
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "task-timer");
+        t.setDaemon(true);
+        return t;
+    });
+    private final Map<Component, Set<Future<?>>> owned = new WeakHashMap<>();
+
+    public TaskScheduler() {
+        for (Pool pool : Pool.values()) {
+            pools.put(pool, new PoolExecutor(pool));
+        }
+    }
+
+    public static TaskScheduler getDefault() {
+        return DEFAULT;
+    }
+
+    /** Queues a task. Throws RejectedExecutionException when the pool's queue is full. */
+    public <T> Task<T> submit(Pool pool, Priority priority, Callable<T> callable) {
+        Task<T> task = new Task<>(callable, priority, sequence.getAndIncrement());
+        pools.get(pool).enqueue(task);
+        return task;
+    }
+
+    public Task<Void> submit(Pool pool, Priority priority, Runnable runnable) {
+        return submit(pool, priority, Executors.callable(runnable, null));
+    }
+
+    /** An Executor view of a pool at a fixed priority, for APIs that take one. */
+    public Executor executor(Pool pool, Priority priority) {
+        return command -> submit(pool, priority, command);
+    }
+
+    /**
+     * An executor that runs at most {@code maxConcurrent} of its tasks at a time on the given pool, the
+     * rest waiting in its own unbounded backlog by priority. With a limit of one it runs tasks strictly
+     * one after another, for work that owns unsynchronized state.
+     */
+    public Limiter limited(Pool pool, Priority priority, int maxConcurrent) {
+        return new Limiter(pool, priority, maxConcurrent);
+    }
+
+    /**
+     * Runs {@code runnable} in a pool after {@code initialDelay} and then {@code delay} ms after each run
+     * finishes, until cancelled. The next run is only scheduled once the previous one is done, so runs
+     * never overlap and a slow run holds up only its own job, not the timer.
+     */
+    public ScheduledFuture<?> scheduleWithFixedDelay(Pool pool, Priority priority, Runnable runnable,
+                                                     long initialDelay, long delay) {
+        Repeating repeating = new Repeating(pool, priority, runnable, delay);
+        repeating.schedule(initialDelay);
+        return repeating;
+    }
+
+    /**
+     * Cancels {@code task} (interrupting it if running) as soon as {@code owner} stops being displayable,
+     * i.e. when its window is disposed.
+     */
+    public void cancelWith(Component owner, Future<?> task) {
+        synchronized (owned) {
+            Set<Future<?>> tasks = owned.get(owner);
+            if (tasks == null) {
+                tasks = Collections.newSetFromMap(new ConcurrentHashMap<>());
+                owned.put(owner, tasks);
+                owner.addHierarchyListener(e -> {
+                    if ((e.getChangeFlags() & HierarchyEvent.DISPLAYABILITY_CHANGED) != 0 && !owner.isDisplayable()) {
+                        cancelOwnedBy(owner);
+                    }
+                });
+            }
+            tasks.add(task);
+        }
+        if (task instanceof Task) {
+            ((Task<?>) task).onDone(() -> {
+                synchronized (owned) {
+                    Set<Future<?>> tasks = owned.get(owner);
+                    if (tasks != null) tasks.remove(task);
+                }
+            });
+        }
+    }
+
+    private void cancelOwnedBy(Component owner) {
+        List<Future<?>> tasks;
+        synchronized (owned) {
+            Set<Future<?>> set = owned.get(owner);
+            if (set == null || set.isEmpty()) return;
+            tasks = new ArrayList<>(set);
+            set.clear();
+        }
+        System.out.println("[TaskScheduler] Cancelling " + tasks.size() + " task(s) of a closed " + owner.getClass().getSimpleName());
+        for (Future<?> task : tasks) task.cancel(true);
+    }
+
+    /** A snapshot of the per-pool counters. */
+    public Map<Pool, PoolMetrics> getMetrics() {
+        Map<Pool, PoolMetrics> snapshot = new EnumMap<>(Pool.class);
+        for (Map.Entry<Pool, PoolExecutor> entry : pools.entrySet()) {
+            snapshot.put(entry.getKey(), entry.getValue().snapshot());
+        }
+        return snapshot;
+    }
+
+    /** A queued unit of work. Callbacks added with {@link #onDone} run once it completes, fails or is cancelled. */
+    public static class Task<T> extends FutureTask<T> implements Comparable<Task<?>> {
+        final Priority priority;
+        final long sequence;
+        volatile long queuedAt;
+        volatile long startedAt;
+        volatile boolean failed;
+        private List<Runnable> callbacks = new ArrayList<>();
+
+        Task(Callable<T> callable, Priority priority, long sequence) {
+            super(callable);
+            this.priority = priority;
+            this.sequence = sequence;
+        }
+
+        /** Runs {@code callback} on the completing thread, or right away if the task is already done. */
+        public void onDone(Runnable callback) {
+            synchronized (this) {
+                if (callbacks != null) {
+                    callbacks.add(callback);
+                    return;
+                }
+            }
+            callback.run();
+        }
+
+        @Override
+        protected void setException(Throwable t) {
+            if (!isCancelled()) failed = true;
+            super.setException(t);
+        }
+
+        @Override
+        protected void done() {
+            List<Runnable> toRun;
+            synchronized (this) {
+                toRun = callbacks;
+                callbacks = null;
+            }
+            for (Runnable callback : toRun) {
+                try {
+                    callback.run();
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+
+        @Override
+        public int compareTo(Task<?> other) {
+            int byPriority = priority.compareTo(other.priority);
+            return byPriority != 0 ? byPriority : Long.compare(sequence, other.sequence);
+        }
+    }
+
+    /** See {@link #scheduleWithFixedDelay}. Like a periodic ScheduledFuture, it only completes when cancelled. */
+    private class Repeating implements ScheduledFuture<Void> {
+        private final Pool pool;
+        private final Priority priority;
+        private final Runnable runnable;
+        private final long delay;
+        private boolean cancelled;
+        private ScheduledFuture<?> timerRun;
+        private Task<Void> poolRun;
+
+        Repeating(Pool pool, Priority priority, Runnable runnable, long delay) {
+            this.pool = pool;
+            this.priority = priority;
+            this.runnable = runnable;
+            this.delay = delay;
+        }
+
+        synchronized void schedule(long delayMs) {
+            if (cancelled) return;
+            timerRun = timer.schedule(this::fire, delayMs, TimeUnit.MILLISECONDS);
+        }
+
+        // On the timer thread: hands the run to its pool and returns at once
+        private void fire() {
+            Task<Void> task;
+            synchronized (this) {
+                if (cancelled) return;
+                try {
+                    task = submit(pool, priority, runnable);
+                } catch (RejectedExecutionException e) {
+                    System.err.println("[TaskScheduler] Scheduled task skipped: " + e.getMessage());
+                    schedule(delay);
+                    return;
+                }
+                poolRun = task;
+            }
+            task.onDone(() -> {
+                if (task.failed) {
+                    try {
+                        task.get();
+                    } catch (Exception e) {
+                        System.err.println("[TaskScheduler] Scheduled task failed: "
+                                + (e.getCause() != null ? e.getCause().getMessage() : e.getMessage()));
+                    }
+                }
+                schedule(delay);
+            });
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            synchronized (this) {
+                if (cancelled) return false;
+                cancelled = true;
+                if (timerRun != null) timerRun.cancel(false);
+                if (poolRun != null) poolRun.cancel(mayInterruptIfRunning);
+                notifyAll();
+            }
+            return true;
+        }
+
+        @Override
+        public synchronized boolean isCancelled() {
+            return cancelled;
+        }
+
+        @Override
+        public synchronized boolean isDone() {
+            return cancelled;
+        }
+
+        @Override
+        public synchronized Void get() throws InterruptedException {
+            while (!cancelled) wait();
+            throw new CancellationException();
+        }
+
+        @Override
+        public synchronized Void get(long timeout, TimeUnit unit) throws InterruptedException, TimeoutException {
+            long deadline = System.nanoTime() + unit.toNanos(timeout);
+            while (!cancelled) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) throw new TimeoutException();
+                TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            }
+            throw new CancellationException();
+        }
+
+        @Override
+        public synchronized long getDelay(TimeUnit unit) {
+            return timerRun != null ? timerRun.getDelay(unit) : 0;
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(getDelay(TimeUnit.NANOSECONDS), other.getDelay(TimeUnit.NANOSECONDS));
+        }
+    }
+
+    /** See {@link #limited}. */
+    public class Limiter implements Executor {
+        private final Pool pool;
+        private final Priority defaultPriority;
+        private final int maxConcurrent;
+        private final PriorityQueue<Task<?>> backlog = new PriorityQueue<>();
+        private int running;
+
+        Limiter(Pool pool, Priority priority, int maxConcurrent) {
+            this.pool = pool;
+            this.defaultPriority = priority;
+            this.maxConcurrent = Math.max(1, maxConcurrent);
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            submit(defaultPriority, command);
+        }
+
+        public Task<Void> submit(Runnable runnable) {
+            return submit(defaultPriority, runnable);
+        }
+
+        public Task<Void> submit(Priority priority, Runnable runnable) {
+            Task<Void> task = new Task<>(Executors.callable(runnable, null), priority, sequence.getAndIncrement());
+            synchronized (this) {
+                backlog.add(task);
+            }
+            drain();
+            return task;
+        }
+
+        private void drain() {
+            while (true) {
+                Task<?> next;
+                synchronized (this) {
+                    if (running >= maxConcurrent) return;
+                    next = backlog.poll();
+                    if (next == null) return;
+                    if (next.isDone()) continue; // cancelled while waiting
+                    running++;
+                }
+                try {
+                    TaskScheduler.this.submit(pool, next.priority, () -> {
+                        try {
+                            next.run();
+                        } finally {
+                            synchronized (Limiter.this) {
+                                running--;
+                            }
+                            drain();
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    synchronized (this) {
+                        running--;
+                    }
+                    next.setException(e);
+                }
+            }
+        }
+    }
+
+    private class PoolExecutor extends ThreadPoolExecutor {
+        final Pool pool;
+        final AtomicLong completed = new AtomicLong();
+        final AtomicLong failures = new AtomicLong();
+        final AtomicLong rejected = new AtomicLong();
+        final AtomicLong waitMillisTotal = new AtomicLong();
+        final AtomicLong runMillisTotal = new AtomicLong();
+        final AtomicInteger active = new AtomicInteger();
+
+        PoolExecutor(Pool pool) {
+            super(pool.threads, pool.threads, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new PriorityBlockingQueue<>(),
+                    new NamedThreads(pool.name().toLowerCase()));
+            this.pool = pool;
+            allowCoreThreadTimeOut(true);
+        }
+
+        void enqueue(Task<?> task) {
+            // PriorityBlockingQueue is unbounded; the capacity is enforced here
+            if (getQueue().size() >= pool.queueCapacity && active.get() >= pool.threads) {
+                rejected.incrementAndGet();
+                System.err.println("[TaskScheduler] " + pool + " pool is at capacity, rejecting task");
+                throw new RejectedExecutionException(pool + " pool is at capacity (" + pool.threads + " running, "
+                        + pool.queueCapacity + " queued)");
+            }
+            task.queuedAt = System.currentTimeMillis();
+            execute(task);
+        }
+
+        @Override
+        protected void beforeExecute(Thread t, Runnable r) {
+            active.incrementAndGet();
+            Task<?> task = (Task<?>) r;
+            task.startedAt = System.currentTimeMillis();
+            waitMillisTotal.addAndGet(task.startedAt - task.queuedAt);
+        }
+
+        @Override
+        protected void afterExecute(Runnable r, Throwable t) {
+            active.decrementAndGet();
+            Task<?> task = (Task<?>) r;
+            runMillisTotal.addAndGet(System.currentTimeMillis() - task.startedAt);
+            completed.incrementAndGet();
+            if (task.failed) failures.incrementAndGet();
+            // A cancelled task keeps an interrupt meant for it from leaking into the next one on this thread
+            Thread.interrupted();
+        }
+
+        PoolMetrics snapshot() {
+            PoolMetrics metrics = new PoolMetrics();
+            metrics.threads = getPoolSize();
+            metrics.active = active.get();
+            metrics.queued = getQueue().size();
+            metrics.completed = completed.get();
+            metrics.failed = failures.get();
+            metrics.rejected = rejected.get();
+            metrics.averageWaitMs = metrics.completed == 0 ? 0 : waitMillisTotal.get() / (double) metrics.completed;
+            metrics.averageRunMs = metrics.completed == 0 ? 0 : runMillisTotal.get() / (double) metrics.completed;
+            return metrics;
+        }
+    }
+
+    public static class PoolMetrics {
+        int threads;
+        int active;
+        int queued;
+        long completed;
+        long failed;
+        long rejected;
+        double averageWaitMs;
+        double averageRunMs;
+
+        public int getThreads() {
+            return threads;
+        }
+
+        public int getActive() {
+            return active;
+        }
+
+        public int getQueued() {
+            return queued;
+        }
+
+        public long getCompleted() {
+            return completed;
+        }
+
+        public long getFailed() {
+            return failed;
+        }
+
+        public long getRejected() {
+            return rejected;
+        }
+
+        /** Mean time tasks spent queued before a thread picked them up. */
+        public double getAverageWaitMs() {
+            return averageWaitMs;
+        }
+
+        public double getAverageRunMs() {
+            return averageRunMs;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("threads=%d active=%d queued=%d completed=%d failed=%d rejected=%d avgWait=%.1fms avgRun=%.1fms",
+                    threads, active, queued, completed, failed, rejected, averageWaitMs, averageRunMs);
+        }
+    }
+
+    private static class NamedThreads implements java.util.concurrent.ThreadFactory {
+        private final String prefix;
+        private final AtomicInteger count = new AtomicInteger();
+
+        NamedThreads(String prefix) {
+            this.prefix = prefix;
+        }
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, prefix + "-" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }
+    }
+}
@@ -0,0 +1,272 @@
+package org.nsomatrix;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Uploads files in chunks with the tus 1.0 resumable upload protocol, which Supabase Storage serves at
+ * /storage/v1/upload/resumable. Each upload's server URL and confirmed offset are written to
+ * ~/.matrix_launcher_uploads.json after every chunk, so an upload that fails, or is interrupted by a
+ * restart, continues from the last confirmed byte instead of starting over.
+ *
+ * Chunks are sent as POST with X-HTTP-Method-Override: PATCH, which tus servers accept for clients
+ * that cannot send PATCH (HttpURLConnection is one of them).
+ */
+public class TusUploader {
+    public static final String PREF_CHUNK_SIZE_MB = "upload_chunk_size_mb";
+    // Supabase requires every chunk but the last to be exactly 6 MB
+    public static final int DEFAULT_CHUNK_SIZE_MB = 6;
+    private static final String TUS_VERSION = "1.0.0";
+    private static final int MAX_CONSECUTIVE_FAILURES = 5;
+    private static final long RETRY_DELAY_MS = 1000;
+    private static final File STORAGE_FILE = new File(System.getProperty("user.home"), ".matrix_launcher_uploads.json");
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    public interface Progress {
+        /** Called from the uploading thread after each confirmed chunk, and once before the first. */
+        void onProgress(long uploaded, long total);
+    }
+
+    private final String endpoint;
+    private final Supplier<Map<String, String>> headers;
+    private final int chunkSize;
+
+    /**
+     * @param endpoint  the tus creation URL
+     * @param headers   sent with every request, e.g. authorization
+     * @param chunkSize bytes per PATCH request
+     */
+    public TusUploader(String endpoint, Map<String, String> headers, int chunkSize) {
+        this(endpoint, fixed(new LinkedHashMap<>(headers)), chunkSize);
+    }
+
+    /** Like the above, with headers asked for anew for every request, e.g. to pick up a renewed token. */
+    public TusUploader(String endpoint, Supplier<Map<String, String>> headers, int chunkSize) {
+        this.endpoint = endpoint;
+        this.headers = headers;
+        this.chunkSize = chunkSize;
+    }
+
+    private static Supplier<Map<String, String>> fixed(Map<String, String> headers) {
+        return () -> headers;
+    }
+
+    /**
+     * Uploads {@code file}, resuming an earlier attempt recorded under the same key if the file has not
+     * changed since. {@code metadata} is sent as Upload-Metadata when a new upload is created.
+     */
+    public void upload(String key, File file, Map<String, String> metadata, Progress progress) throws IOException {
+        long size = file.length();
+        PendingUpload pending = load().get(key);
+        long offset = -1;
+        if (pending != null && pending.size == size && pending.lastModified == file.lastModified()
+                && file.getAbsolutePath().equals(pending.file) && endpoint.equals(pending.endpoint)) {
+            offset = fetchOffset(pending.uploadUrl);
+            if (offset >= 0) {
+                System.out.println("[TusUploader] Resuming " + file.getName() + " at " + offset + " of " + size + " bytes");
+            }
+        }
+        if (offset < 0) {
+            pending = create(key, file, metadata);
+            offset = 0;
+        }
+        if (progress != null) progress.onProgress(offset, size);
+
+        int failures = 0;
+        IOException lastFailure = null;
+        boolean expired = false;
+        while (offset < size) {
+            if (Thread.currentThread().isInterrupted()) {
+                throw new InterruptedIOException("Upload of " + file.getName() + " interrupted at " + offset + " bytes");
+            }
+            try {
+                if (lastFailure != null) {
+                    // The server may have stored part or all of the chunk; continue from what it confirms.
+                    // Asked here so that a failed query counts against the retries like a failed chunk
+                    long confirmed = fetchOffset(pending.uploadUrl);
+                    if (confirmed < 0) {
+                        expired = true;
+                        break;
+                    }
+                    offset = confirmed;
+                    lastFailure = null;
+                    continue;
+                }
+                offset = sendChunk(pending.uploadUrl, file, offset, (int) Math.min(chunkSize, size - offset));
+                failures = 0;
+                pending.offset = offset;
+                pending.updatedAt = System.currentTimeMillis();
+                save(key, pending);
+                if (progress != null) progress.onProgress(offset, size);
+            } catch (IOException e) {
+                if (Thread.currentThread().isInterrupted() || ++failures >= MAX_CONSECUTIVE_FAILURES) throw e;
+                String failed = lastFailure != null ? "Offset query" : "Chunk at " + offset;
+                System.err.println("[TusUploader] " + failed + " failed (" + e.getMessage() + "), retry "
+                        + failures + "/" + (MAX_CONSECUTIVE_FAILURES - 1));
+                sleep(RETRY_DELAY_MS * failures);
+                lastFailure = e;
+            }
+        }
+        if (expired) throw new IOException("Upload of " + file.getName() + " expired on the server", lastFailure);
+        remove(key);
+        System.out.println("[TusUploader] Uploaded " + file.getName() + " (" + size + " bytes)");
+    }
+
+    /** Uploads recorded as unfinished whose key starts with {@code keyPrefix}, oldest first. */
+    public static List<PendingUpload> pendingUploads(String keyPrefix) {
+        List<PendingUpload> result = new ArrayList<>();
+        for (Map.Entry<String, PendingUpload> entry : load().entrySet()) {
+            if (entry.getKey().startsWith(keyPrefix)) {
+                entry.getValue().key = entry.getKey();
+                result.add(entry.getValue());
+            }
+        }
+        result.sort((a, b) -> Long.compare(a.updatedAt, b.updatedAt));
+        return result;
+    }
+
+    /** Forgets an unfinished upload, e.g. because its file is gone. */
+    public static void discard(String key) {
+        remove(key);
+    }
+
+    private PendingUpload create(String key, File file, Map<String, String> metadata) throws IOException {
+        StringBuilder encoded = new StringBuilder();
+        for (Map.Entry<String, String> entry : metadata.entrySet()) {
+            if (encoded.length() > 0) encoded.append(',');
+            encoded.append(entry.getKey()).append(' ')
+                    .append(Base64.getEncoder().encodeToString(entry.getValue().getBytes(StandardCharsets.UTF_8)));
+        }
+        HttpTransport.Request request = HttpTransport.getDefault().request("POST", endpoint)
+                .header("Tus-Resumable", TUS_VERSION)
+                .header("Upload-Length", String.valueOf(file.length()))
+                .header("Upload-Metadata", encoded.toString())
+                .body("application/octet-stream", new byte[0])
+                .idempotent(false);
+        for (Map.Entry<String, String> header : headers.get().entrySet()) request.header(header.getKey(), header.getValue());
+
+        String location;
+        try (HttpTransport.Response response = request.execute()) {
+            response.requireSuccess();
+            location = response.getHeader("Location");
+        }
+        if (location == null) throw new IOException("Upload server did not return a Location");
+
+        PendingUpload pending = new PendingUpload();
+        pending.endpoint = endpoint;
+        pending.uploadUrl = URI.create(endpoint).resolve(location).toString();
+        pending.file = file.getAbsolutePath();
+        pending.size = file.length();
+        pending.lastModified = file.lastModified();
+        pending.metadata = new LinkedHashMap<>(metadata);
+        pending.updatedAt = System.currentTimeMillis();
+        save(key, pending);
+        return pending;
+    }
+
+    // Returns the offset the server confirmed after the chunk
+    private long sendChunk(String uploadUrl, File file, long offset, int length) throws IOException {
+        HttpTransport.Request request = HttpTransport.getDefault().request("POST", uploadUrl)
+                .header("X-HTTP-Method-Override", "PATCH")
+                .header("Tus-Resumable", TUS_VERSION)
+                .header("Upload-Offset", String.valueOf(offset))
+                .gzip(false)
+                .attempts(1)
+                .idempotent(false)
+                .body("application/offset+octet-stream", file.toPath(), offset, length);
+        for (Map.Entry<String, String> header : headers.get().entrySet()) request.header(header.getKey(), header.getValue());
+
+        try (HttpTransport.Response response = request.execute()) {
+            response.requireSuccess();
+            long confirmed = response.getHeaderLong("Upload-Offset", -1);
+            if (confirmed < offset) throw new IOException("Upload server did not confirm the chunk at " + offset);
+            return confirmed;
+        }
+    }
+
+    // The server's offset for an upload, or -1 if it no longer knows the upload
+    private long fetchOffset(String uploadUrl) throws IOException {
+        HttpTransport.Request request = HttpTransport.getDefault().request("HEAD", uploadUrl)
+                .header("Tus-Resumable", TUS_VERSION)
+                .gzip(false);
+        for (Map.Entry<String, String> header : headers.get().entrySet()) request.header(header.getKey(), header.getValue());
+        try (HttpTransport.Response response = request.execute()) {
+            int status = response.getStatus();
+            if (status == 404 || status == 410 || status == 403) return -1;
+            response.requireSuccess();
+            return response.getHeaderLong("Upload-Offset", -1);
+        }
+    }
+
+    private static void sleep(long millis) throws InterruptedIOException {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting to retry");
+        }
+    }
+
+    private static synchronized Map<String, PendingUpload> load() {
+        if (!STORAGE_FILE.exists()) return new HashMap<>();
+        try {
+            return MAPPER.readValue(STORAGE_FILE, new TypeReference<Map<String, PendingUpload>>() {});
+        } catch (IOException e) {
+            e.printStackTrace();
+            return new HashMap<>();
+        }
+    }
+
+    private static synchronized void save(String key, PendingUpload pending) {
+        Map<String, PendingUpload> all = load();
+        all.put(key, pending);
+        write(all);
+    }
+
+    private static synchronized void remove(String key) {
+        Map<String, PendingUpload> all = load();
+        if (all.remove(key) != null) write(all);
+    }
+
+    private static void write(Map<String, PendingUpload> all) {
+        File temp = new File(STORAGE_FILE.getPath() + ".tmp");
+        try {
+            MAPPER.writeValue(temp, all);
+            Files.move(temp.toPath(), STORAGE_FILE.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class PendingUpload {
+        public String endpoint;
+        public String uploadUrl;
+        public String file;
+        public long size;
+        public long lastModified;
+        public long offset;
+        public long updatedAt;
+        public Map<String, String> metadata = new LinkedHashMap<>();
+        // Filled in by pendingUploads(), not stored
+        @JsonIgnore
+        public String key;
+    }
+}
@@ -2,32 +2,30 @@ package org.nsomatrix;
 
 import java.io.*;
 import java.net.HttpURLConnection;
-import java.net.URL;
 import java.nio.file.Files;
 import java.nio.file.StandardCopyOption;
 
 public class UpdateChecker {
 
-    private static final String UPDATE_URL = "https://raw.githubusercontent.com/corestorage/NSOMatrix/refs/heads/master/version.txt";
-    private static final String DOWNLOAD_BASE_URL = "https://github.com/corestorage/NSOMatrix/releases/download/";
+    private static final String UPDATE_URL = System.getProperty("nsomatrix.github.raw", "https://raw.githubusercontent.com")
+            + "/corestorage/NSOMatrix/refs/heads/master/version.txt";
+    private static final String DOWNLOAD_BASE_URL = System.getProperty("nsomatrix.github.web", "https://github.com")
+            + "/corestorage/NSOMatrix/releases/download/";
 
     public static String getLatestVersion() throws Exception {
-        URL url = new URL(UPDATE_URL);
-        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-        connection.setRequestMethod("GET");
-
-        int responseCode = connection.getResponseCode();
-        if (responseCode == HttpURLConnection.HTTP_OK) {
-            BufferedReader in = new BufferedReader(new InputStreamReader(connection.getInputStream()));
-            String inputLine;
-            StringBuilder content = new StringBuilder();
-            while ((inputLine = in.readLine()) != null) {
-                content.append(inputLine);
+        try (HttpTransport.Response response = HttpTransport.getDefault().get(UPDATE_URL).execute()) {
+            int responseCode = response.getStatus();
+            if (responseCode == HttpURLConnection.HTTP_OK) {
+                BufferedReader in = new BufferedReader(new InputStreamReader(response.getBody()));
+                String inputLine;
+                StringBuilder content = new StringBuilder();
+                while ((inputLine = in.readLine()) != null) {
+                    content.append(inputLine);
+                }
+                return content.toString().trim();
+            } else {
+                throw new RuntimeException("Failed to fetch update information. HTTP error code: " + responseCode);
             }
-            in.close();
-            return content.toString().trim();
-        } else {
-            throw new RuntimeException("Failed to fetch update information. HTTP error code: " + responseCode);
         }
     }
 
@@ -37,9 +35,10 @@ public class UpdateChecker {
 
     public static void downloadUpdate(String version, File destinationFile) throws IOException {
         String downloadUrl = DOWNLOAD_BASE_URL + "v" + version + "/NSOMatrixLauncher-" + version + ".jar";
-        URL url = new URL(downloadUrl);
-        try (InputStream in = url.openStream()) {
-            Files.copy(in, destinationFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        try (HttpTransport.Response response = HttpTransport.getDefault().get(downloadUrl).gzip(false).execute()) {
+            response.requireSuccess();
+            InputStream body = BandwidthLimiter.getDefault().throttle(response.getBody(), downloadUrl, BandwidthLimiter.Priority.NORMAL);
+            Files.copy(body, destinationFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
         }
     }
 
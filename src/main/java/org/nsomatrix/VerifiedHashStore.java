@@ -0,0 +1,99 @@
+package org.nsomatrix;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Remembers the SHA-1 of files that have been verified, together with their size and modification
+ * time. As long as a file still has the recorded size and timestamp its hash is trusted without
+ * reading the file again.
+ */
+public class VerifiedHashStore {
+    private static final File STORAGE_FILE = new File(System.getProperty("user.home"), ".matrix_launcher_verified.json");
+    private static final VerifiedHashStore DEFAULT = new VerifiedHashStore(STORAGE_FILE);
+
+    private final File storageFile;
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final Map<String, Entry> entries = new HashMap<>();
+    private boolean loaded;
+
+    public VerifiedHashStore(File storageFile) {
+        this.storageFile = storageFile;
+    }
+
+    public static VerifiedHashStore getDefault() {
+        return DEFAULT;
+    }
+
+    /** Returns the recorded SHA-1 if the file is unchanged since it was verified, otherwise null. */
+    public synchronized String getTrustedSha1(Path file) {
+        load();
+        Entry entry = entries.get(key(file));
+        if (entry == null) return null;
+        try {
+            if (Files.size(file) == entry.size && Files.getLastModifiedTime(file).toMillis() == entry.modified) {
+                return entry.sha1;
+            }
+        } catch (IOException ignored) {
+        }
+        return null;
+    }
+
+    public synchronized void record(Path file, String sha1) {
+        load();
+        try {
+            Entry entry = new Entry();
+            entry.sha1 = sha1;
+            entry.size = Files.size(file);
+            entry.modified = Files.getLastModifiedTime(file).toMillis();
+            entries.put(key(file), entry);
+            save();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    public synchronized void forget(Path file) {
+        load();
+        if (entries.remove(key(file)) != null) save();
+    }
+
+    private void load() {
+        if (loaded) return;
+        loaded = true;
+        if (!storageFile.exists()) return;
+        try {
+            Map<String, Entry> stored = mapper.readValue(storageFile, new TypeReference<Map<String, Entry>>() {});
+            entries.putAll(stored);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void save() {
+        File temp = new File(storageFile.getPath() + ".tmp");
+        try {
+            mapper.writeValue(temp, entries);
+            Files.move(temp.toPath(), storageFile.toPath(), java.nio.file.StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static String key(Path file) {
+        return file.toAbsolutePath().normalize().toString();
+    }
+
+    public static class Entry {
+        public String sha1;
+        public long size;
+        public long modified;
+    }
+}